@@ -8,14 +8,71 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.IntFunction;
 
+/**
+ * Classe de base des mappers JDBC
+ *
+ * Chaque mapper dispose d'un cache d'identité : un seul objet par identifiant pour toute l'application
+ * Les sous-classes implémentent findById, findAll, create, update, delete et deleteById et s'appuient sur les helpers
+ * - findById : getFromCache, puis cacheOrExisting sur l'objet lu en base, voir findCachedOrLoad
+ * - findAll : cacheOrExisting sur chaque objet lu, voir cacheAll
+ * - create et update : addToCache une fois la requête exécutée, removeFromCache si la mise à jour échoue
+ * - delete et deleteById : removeFromCache une fois la requête exécutée
+ *
+ * Le cache est borné, l'objet le moins récemment utilisé est évincé lorsque la taille maximale est atteinte
+ * Il ne voit pas les modifications faites hors de l'application, ni les rollbacks : appeler resetCache dans ces cas
+ */
 public abstract class AbstractMapper<T extends IBusinessObject> {
 
     protected static final Logger logger = LogManager.getLogger();
 
+    /**
+     * Nombre maximal d'objets conservés par défaut dans le cache d'un mapper
+     */
+    public static final int DEFAULT_CACHE_SIZE = 1000;
+
+    /**
+     * Cache d'identité, indexé par identifiant
+     * LinkedHashMap en ordre d'accès : chaque lecture place l'objet en fin de liste, l'éviction retire le premier
+     * Les accès sont synchronisés sur le cache
+     */
+    private final Map<Integer, T> cache;
+    private final int maxCacheSize;
+
+    private long cacheHits;
+    private long cacheMisses;
+    private long cacheEvictions;
+
+    protected AbstractMapper() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param maxCacheSize nombre maximal d'objets conservés dans le cache
+     */
+    protected AbstractMapper(int maxCacheSize) {
+        if (maxCacheSize < 1) {
+            throw new IllegalArgumentException("Taille de cache invalide : " + maxCacheSize);
+        }
+        this.maxCacheSize = maxCacheSize;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, T> eldest) {
+                if (size() > AbstractMapper.this.maxCacheSize) {
+                    cacheEvictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
     public abstract T findById(int id);
     public abstract Set<T> findAll();
     public abstract T create(T object);
@@ -92,25 +149,32 @@ public abstract class AbstractMapper<T extends IBusinessObject> {
      * @return true si le cache ne contient aucun objet, false sinon
      */
     protected boolean isCacheEmpty() {
-        // TODO à implémenter par vos soins
-        throw new UnsupportedOperationException("Vous devez implémenter votre cache vous-même !");
+        synchronized (cache) {
+            return cache.isEmpty();
+        }
     }
 
     /**
      * Vide le cache
      */
     protected void resetCache() {
-        // TODO à implémenter par vos soins
-        throw new UnsupportedOperationException("Vous devez implémenter votre cache vous-même !");
+        synchronized (cache) {
+            cache.clear();
+        }
     }
 
     /**
-     * Ajoute un objet au cache
+     * Ajoute un objet au cache, en remplaçant l'objet de même identifiant
+     * Un objet sans identifiant n'est pas mis en cache
      * @param objet l'objet à ajouter
      */
     protected void addToCache(T objet) {
-        // TODO à implémenter par vos soins
-        throw new UnsupportedOperationException("Vous devez implémenter votre cache vous-même !");
+        if (objet.getId() == null) {
+            return;
+        }
+        synchronized (cache) {
+            cache.put(objet.getId(), objet);
+        }
     }
 
     /**
@@ -118,7 +182,93 @@ public abstract class AbstractMapper<T extends IBusinessObject> {
      * @param id l'ID de l'objet à retirer du cache
      */
     protected void removeFromCache(Integer id) {
-        // TODO à implémenter par vos soins
-        throw new UnsupportedOperationException("Vous devez implémenter votre cache vous-même !");
+        synchronized (cache) {
+            cache.remove(id);
+        }
+    }
+
+    /**
+     * Lit un objet dans le cache en comptant un succès ou un échec
+     * @param id l'ID de l'objet recherché
+     * @return l'objet en cache, null s'il n'y est pas
+     */
+    protected T getFromCache(Integer id) {
+        synchronized (cache) {
+            T cached = cache.get(id);
+            if (cached != null) {
+                cacheHits++;
+            } else {
+                cacheMisses++;
+            }
+            return cached;
+        }
+    }
+
+    /**
+     * Retourne l'objet d'identifiant donné, lu dans le cache ou chargé par loader puis mis en cache
+     * @param id l'identifiant recherché
+     * @param loader lecture en base, retourne null si l'objet n'existe pas
+     * @return l'objet trouvé, null s'il n'existe pas
+     */
+    protected T findCachedOrLoad(int id, IntFunction<T> loader) {
+        T cached = getFromCache(id);
+        if (cached != null) {
+            return cached;
+        }
+        T loaded = loader.apply(id);
+        return loaded != null ? cacheOrExisting(loaded) : null;
+    }
+
+    /**
+     * Remplace les objets qui viennent d'être lus par les instances déjà en cache, et met les autres en cache
+     * @param loaded les objets lus en base
+     * @return les objets à utiliser, dans l'ordre de loaded
+     */
+    protected Set<T> cacheAll(Collection<T> loaded) {
+        Set<T> result = new LinkedHashSet<>();
+        for (T object : loaded) {
+            result.add(cacheOrExisting(object));
+        }
+        return result;
+    }
+
+    /**
+     * Retourne l'instance en cache pour l'identifiant de l'objet, ou met l'objet en cache s'il n'y en a pas
+     * @param objet l'objet qui vient d'être lu en base
+     * @return l'instance à utiliser
+     */
+    protected T cacheOrExisting(T objet) {
+        if (objet.getId() == null) {
+            return objet;
+        }
+        synchronized (cache) {
+            T existing = cache.putIfAbsent(objet.getId(), objet);
+            return existing != null ? existing : objet;
+        }
+    }
+
+    /**
+     * Retourne un instantané des statistiques du cache
+     * @return taille, succès, échecs et évictions depuis la création du mapper
+     */
+    public CacheStats getCacheStats() {
+        synchronized (cache) {
+            return new CacheStats(cache.size(), maxCacheSize, cacheHits, cacheMisses, cacheEvictions);
+        }
+    }
+
+    /**
+     * Statistiques du cache d'un mapper
+     * Seules les lectures par identifiant comptent comme succès ou échec
+     */
+    public record CacheStats(int size, int maxSize, long hits, long misses, long evictions) {
+
+        /**
+         * Part des lectures par identifiant servies par le cache, entre 0 et 1
+         */
+        public double hitRatio() {
+            long reads = hits + misses;
+            return reads == 0 ? 0.0 : (double) hits / reads;
+        }
     }
 }
@@ -4,6 +4,8 @@ import ch.hearc.ig.guideresto.persistence.jpa.BooleanConverter;
 import jakarta.persistence.Column;
 import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
+import jakarta.persistence.NamedQueries;
+import jakarta.persistence.NamedQuery;
 import jakarta.persistence.Table;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
@@ -18,6 +20,23 @@ import java.util.Date;
  */
 @Entity
 @Table(name = "LIKES")
+@NamedQueries({
+        @NamedQuery(
+                name = "BasicEvaluation.findAll",
+                query = "select b from BasicEvaluation b order by b.visitDate desc, b.id desc"
+        ),
+        @NamedQuery(
+                name = "BasicEvaluation.countByRestaurant",
+                query = """
+                select b.restaurant.id,
+                       sum(case when b.likeRestaurant = :liked then 1 else 0 end),
+                       count(b)
+                from BasicEvaluation b
+                where b.restaurant.id in :restaurantIds
+                group by b.restaurant.id
+                """
+        )
+})
 public class BasicEvaluation extends Evaluation {
 
     /**
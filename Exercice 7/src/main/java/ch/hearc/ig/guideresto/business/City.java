@@ -1,6 +1,9 @@
 package ch.hearc.ig.guideresto.business;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.jpa.HibernateHints;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -10,13 +13,22 @@ import java.util.Set;
  *
  * Cette entité est référencée par {@link Restaurant} via une clé étrangère
  * Les requêtes nommées facilitent les recherches courantes sans dupliquer le JPQL
+ *
+ * Les villes sont conservées dans le cache de second niveau, ainsi que le résultat de City.findAll
+ * Les régions et leurs limites sont déclarées dans ehcache.xml
  */
 @Entity
 @Table(name = "VILLES")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @NamedQueries({
         @NamedQuery(
                 name = "City.findAll",
-                query = "select c from City c order by c.zipCode, c.cityName"
+                query = "select c from City c order by c.zipCode, c.cityName",
+                hints = {
+                        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+                        @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = City.FIND_ALL_CACHE_REGION)
+                }
         ),
         @NamedQuery(
                 name = "City.findByZipCode",
@@ -34,6 +46,11 @@ import java.util.Set;
 })
 public class City implements IBusinessObject {
 
+    /**
+     * Région du cache de requêtes réservée au résultat de City.findAll
+     */
+    public static final String FIND_ALL_CACHE_REGION = "query.City.findAll";
+
     /**
      * Identifiant technique
      * Généré via une séquence Oracle alignée sur le schéma
@@ -43,7 +60,7 @@ public class City implements IBusinessObject {
     @SequenceGenerator(
             name = "SEQ_VILLES_GEN",
             sequenceName = "SEQ_VILLES",
-            allocationSize = 1
+            allocationSize = 50
     )
     @Column(name = "NUMERO", nullable = false)
     private Integer id;
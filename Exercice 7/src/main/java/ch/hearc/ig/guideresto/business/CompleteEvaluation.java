@@ -1,6 +1,7 @@
 package ch.hearc.ig.guideresto.business;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
 
 import java.util.Date;
 import java.util.HashSet;
@@ -16,8 +17,28 @@ import java.util.Set;
  */
 @Entity
 @Table(name = "COMMENTAIRES")
+@NamedQueries({
+        @NamedQuery(
+                name = "CompleteEvaluation.findAll",
+                query = "select c from CompleteEvaluation c order by c.visitDate desc, c.id desc"
+        ),
+        @NamedQuery(
+                name = "CompleteEvaluation.countByRestaurant",
+                query = """
+                select c.restaurant.id, count(c)
+                from CompleteEvaluation c
+                where c.restaurant.id in :restaurantIds
+                group by c.restaurant.id
+                """
+        )
+})
 public class CompleteEvaluation extends Evaluation {
 
+    /**
+     * Nombre d'évaluations dont les notes sont chargées par une même requête
+     */
+    public static final int BATCH_SIZE = 100;
+
     /**
      * Commentaire textuel associé à l'évaluation
      * Stocké en CLOB côté base
@@ -40,6 +61,7 @@ public class CompleteEvaluation extends Evaluation {
      * orphanRemoval supprime les notes retirées de la collection côté modèle
      *
      * Chargement lazy pour éviter de charger toutes les notes lors d'une simple consultation
+     * Le premier accès charge les notes de BATCH_SIZE évaluations du contexte à la fois
      */
     @OneToMany(
             mappedBy = "evaluation",
@@ -47,6 +69,7 @@ public class CompleteEvaluation extends Evaluation {
             cascade = CascadeType.ALL,
             orphanRemoval = true
     )
+    @BatchSize(size = BATCH_SIZE)
     private Set<Grade> grades = new HashSet<>();
 
     /**
@@ -31,7 +31,7 @@ public abstract class Evaluation implements IBusinessObject {
     @SequenceGenerator(
             name = "SEQ_EVAL_GEN",
             sequenceName = "SEQ_EVAL",
-            allocationSize = 1
+            allocationSize = 50
     )
     @Column(name = "NUMERO", nullable = false)
     private Integer id;
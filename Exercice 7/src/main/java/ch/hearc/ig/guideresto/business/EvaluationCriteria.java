@@ -1,6 +1,10 @@
 package ch.hearc.ig.guideresto.business;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.jpa.HibernateHints;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -9,11 +13,30 @@ import java.util.Set;
  *
  * Un critère est identifié fonctionnellement par son nom, contraint unique en base
  * Les notes associées à un critère sont représentées par {@link Grade}
+ *
+ * Les critères sont conservés dans le cache de second niveau, un find par identifiant ne sollicite donc la base qu'une fois
+ * Les références non encore en cache, par exemple Grade.criteria, sont chargées par lots
  */
 @Entity
 @Table(name = "CRITERES_EVALUATION")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@BatchSize(size = 100)
+@NamedQuery(
+        name = "EvaluationCriteria.findAll",
+        query = "select c from EvaluationCriteria c order by c.name",
+        hints = {
+                @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+                @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = EvaluationCriteria.FIND_ALL_CACHE_REGION)
+        }
+)
 public class EvaluationCriteria implements IBusinessObject {
 
+    /**
+     * Région du cache de requêtes réservée au résultat de EvaluationCriteria.findAll
+     */
+    public static final String FIND_ALL_CACHE_REGION = "query.EvaluationCriteria.findAll";
+
     /**
      * Identifiant technique
      * Généré via la séquence SEQ_CRITERES_EVALUATION alignée sur le schéma
@@ -23,7 +46,7 @@ public class EvaluationCriteria implements IBusinessObject {
     @SequenceGenerator(
             name = "SEQ_CRITERES_EVAL_GEN",
             sequenceName = "SEQ_CRITERES_EVALUATION",
-            allocationSize = 1
+            allocationSize = 50
     )
     @Column(name = "NUMERO", nullable = false)
     private Integer id;
@@ -12,6 +12,30 @@ import jakarta.persistence.*;
  */
 @Entity
 @Table(name = "NOTES")
+@NamedQueries({
+        @NamedQuery(
+                name = "Grade.averageByRestaurantAndCriteria",
+                query = """
+                select e.restaurant.id, k.id, k.name, avg(g.grade), count(g)
+                from Grade g
+                join g.evaluation e
+                join g.criteria k
+                where e.restaurant.id in :restaurantIds
+                group by e.restaurant.id, k.id, k.name
+                order by k.name
+                """
+        ),
+        @NamedQuery(
+                name = "Grade.sumByRestaurant",
+                query = """
+                select e.restaurant.id, count(g), sum(g.grade)
+                from Grade g
+                join g.evaluation e
+                where e.restaurant.id in :restaurantIds
+                group by e.restaurant.id
+                """
+        )
+})
 public class Grade implements IBusinessObject {
 
     /**
@@ -23,7 +47,7 @@ public class Grade implements IBusinessObject {
     @SequenceGenerator(
             name = "SEQ_NOTES_GEN",
             sequenceName = "SEQ_NOTES",
-            allocationSize = 1
+            allocationSize = 50
     )
     @Column(name = "NUMERO", nullable = false)
     private Integer id;
@@ -2,6 +2,8 @@ package ch.hearc.ig.guideresto.business;
 
 import jakarta.persistence.*;
 import org.apache.commons.collections4.CollectionUtils;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 
 import java.util.AbstractSet;
 import java.util.HashSet;
@@ -18,6 +20,7 @@ import java.util.Set;
  * - CompleteEvaluation pour les commentaires notés
  *
  * Des requêtes nommées sont définies afin de centraliser les recherches principales
+ * Le graphe GRAPH_WITH_REFS charge la ville et le type avec le restaurant, voir {@link ch.hearc.ig.guideresto.persistence.jpa.FetchPlan}
  */
 @Entity
 @Table(name = "RESTAURANTS")
@@ -43,30 +46,58 @@ import java.util.Set;
                 """
         ),
         @NamedQuery(
-                name = "Restaurant.findByCityName",
+                name = "Restaurant.findIdsAfter",
+                query = "select r.id from Restaurant r where r.id > :after order by r.id"
+        ),
+        @NamedQuery(
+                name = "Restaurant.findSearchDocuments",
                 query = """
-                select distinct r
+                select r.id, r.name, r.description, c.cityName
                 from Restaurant r
-                join fetch r.city c
-                join fetch r.restaurantType
-                where upper(c.cityName) like upper(:cityName)
-                order by r.name
+                join r.city c
                 """
         ),
         @NamedQuery(
-                name = "Restaurant.findByTypeId",
+                name = "Restaurant.findSearchDocumentsByIds",
                 query = """
-                select distinct r
+                select r.id, r.name, r.description, c.cityName
                 from Restaurant r
-                join fetch r.city
-                join fetch r.restaurantType t
-                where t.id = :typeId
-                order by r.name
+                join r.city c
+                where r.id in :restaurantIds
+                """
+        ),
+        @NamedQuery(
+                name = "Restaurant.findCompletions",
+                query = """
+                select r.id, r.name, c.zipCode, c.cityName
+                from Restaurant r
+                join r.city c
+                """
+        ),
+        @NamedQuery(
+                name = "Restaurant.findCompletionsByIds",
+                query = """
+                select r.id, r.name, c.zipCode, c.cityName
+                from Restaurant r
+                join r.city c
+                where r.id in :restaurantIds
                 """
         )
 })
+@NamedEntityGraph(
+        name = Restaurant.GRAPH_WITH_REFS,
+        attributeNodes = {
+                @NamedAttributeNode("city"),
+                @NamedAttributeNode("restaurantType")
+        }
+)
 public class Restaurant implements IBusinessObject {
 
+    /**
+     * Graphe d'entité chargeant la ville et le type par jointure
+     */
+    public static final String GRAPH_WITH_REFS = "Restaurant.withRefs";
+
     /**
      * Identifiant technique
      * Généré via la séquence SEQ_RESTAURANTS alignée sur le schéma
@@ -76,7 +107,7 @@ public class Restaurant implements IBusinessObject {
     @SequenceGenerator(
             name = "SEQ_RESTAURANTS_GEN",
             sequenceName = "SEQ_RESTAURANTS",
-            allocationSize = 1
+            allocationSize = 50
     )
     @Column(name = "NUMERO", nullable = false)
     private Integer id;
@@ -143,8 +174,10 @@ public class Restaurant implements IBusinessObject {
      *
      * Cascade ALL permet de persister/supprimer les évaluations via le restaurant
      * orphanRemoval supprime les évaluations retirées de la collection lors du flush
+     * SUBSELECT charge la collection de tous les restaurants lus par la même requête en une seule requête
      */
     @OneToMany(mappedBy = "restaurant", fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
+    @Fetch(FetchMode.SUBSELECT)
     private Set<BasicEvaluation> basicEvaluations = new HashSet<>();
 
     /**
@@ -152,8 +185,10 @@ public class Restaurant implements IBusinessObject {
      *
      * Cascade ALL permet de persister/supprimer les évaluations via le restaurant
      * orphanRemoval supprime les évaluations retirées de la collection lors du flush
+     * SUBSELECT charge la collection de tous les restaurants lus par la même requête en une seule requête
      */
     @OneToMany(mappedBy = "restaurant", fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
+    @Fetch(FetchMode.SUBSELECT)
     private Set<CompleteEvaluation> completeEvaluations = new HashSet<>();
 
     /**
@@ -0,0 +1,145 @@
+package ch.hearc.ig.guideresto.business;
+
+import jakarta.persistence.*;
+
+/**
+ * Entité JPA représentant les compteurs d'évaluations d'un restaurant, persistés dans la table RESTAURANT_STATS
+ *
+ * La ligne est créée à zéro avec le restaurant, puis tenue à jour de manière incrémentale dans la transaction qui ajoute l'évaluation
+ * Les compteurs sont modifiés par un UPDATE relatif en base, jamais par lecture puis écriture : deux incréments
+ * concurrents s'attendent sur le verrou de la ligne, voir {@link ch.hearc.ig.guideresto.persistence.jpa.RestaurantStatsMapper#increment}
+ *
+ * La ligne est séparée de RESTAURANTS afin qu'une évaluation ne modifie pas la version du restaurant
+ * et n'entre pas en conflit avec une édition concurrente de sa fiche
+ */
+@Entity
+@Table(name = "RESTAURANT_STATS")
+@NamedQueries({
+        @NamedQuery(
+                name = "RestaurantStats.findAll",
+                query = "select s from RestaurantStats s order by s.restaurantId"
+        ),
+        @NamedQuery(
+                name = "RestaurantStats.findByRestaurantIds",
+                query = "select s from RestaurantStats s where s.restaurantId in :restaurantIds"
+        )
+})
+public class RestaurantStats implements IBusinessObject {
+
+    /**
+     * Identifiant du restaurant, clé primaire et clé étrangère vers RESTAURANTS
+     */
+    @Id
+    @Column(name = "FK_REST", nullable = false)
+    private Integer restaurantId;
+
+    @Column(name = "NB_LIKES", nullable = false)
+    private long likes;
+
+    @Column(name = "NB_DISLIKES", nullable = false)
+    private long dislikes;
+
+    /**
+     * Nombre d'évaluations complètes
+     */
+    @Column(name = "NB_EVALUATIONS", nullable = false)
+    private long reviews;
+
+    /**
+     * Nombre de notes, tous critères confondus, et somme de leurs valeurs
+     */
+    @Column(name = "NB_NOTES", nullable = false)
+    private long grades;
+
+    @Column(name = "SOMME_NOTES", nullable = false)
+    private long gradeSum;
+
+    /**
+     * Constructeur par défaut requis par JPA
+     */
+    public RestaurantStats() {
+    }
+
+    /**
+     * Constructeur complet
+     */
+    public RestaurantStats(Integer restaurantId, long likes, long dislikes, long reviews, long grades, long gradeSum) {
+        this.restaurantId = restaurantId;
+        this.likes = likes;
+        this.dislikes = dislikes;
+        this.reviews = reviews;
+        this.grades = grades;
+        this.gradeSum = gradeSum;
+    }
+
+    /**
+     * L'identifiant est celui du restaurant
+     */
+    @Override
+    public Integer getId() {
+        return restaurantId;
+    }
+
+    public Integer getRestaurantId() {
+        return restaurantId;
+    }
+
+    public long getLikes() {
+        return likes;
+    }
+
+    public void setLikes(long likes) {
+        this.likes = likes;
+    }
+
+    public long getDislikes() {
+        return dislikes;
+    }
+
+    public void setDislikes(long dislikes) {
+        this.dislikes = dislikes;
+    }
+
+    public long getReviews() {
+        return reviews;
+    }
+
+    public void setReviews(long reviews) {
+        this.reviews = reviews;
+    }
+
+    public long getGrades() {
+        return grades;
+    }
+
+    public void setGrades(long grades) {
+        this.grades = grades;
+    }
+
+    public long getGradeSum() {
+        return gradeSum;
+    }
+
+    public void setGradeSum(long gradeSum) {
+        this.gradeSum = gradeSum;
+    }
+
+    /**
+     * Moyenne de toutes les notes reçues, 0 si le restaurant n'a aucune note
+     */
+    public double getAverageGrade() {
+        return grades == 0 ? 0.0 : (double) gradeSum / grades;
+    }
+
+    @Override
+    public String toString() {
+        return "RestaurantStats{" +
+                "restaurantId=" + restaurantId +
+                ", likes=" + likes +
+                ", dislikes=" + dislikes +
+                ", reviews=" + reviews +
+                ", grades=" + grades +
+                ", gradeSum=" + gradeSum +
+                '}';
+    }
+}
@@ -1,6 +1,9 @@
 package ch.hearc.ig.guideresto.business;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.jpa.HibernateHints;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -12,13 +15,21 @@ import java.util.Set;
  * La relation inverse vers les restaurants est exposée à titre de navigation, le propriétaire étant {@link Restaurant#restaurantType}
  *
  * Des requêtes nommées sont définies afin de centraliser les accès usuels
+ *
+ * Les types sont conservés dans le cache de second niveau, ainsi que le résultat de RestaurantType.findAll
  */
 @Entity
 @Table(name = "TYPES_GASTRONOMIQUES")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @NamedQueries({
         @NamedQuery(
                 name = "RestaurantType.findAll",
-                query = "select t from RestaurantType t order by t.label"
+                query = "select t from RestaurantType t order by t.label",
+                hints = {
+                        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+                        @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = RestaurantType.FIND_ALL_CACHE_REGION)
+                }
         ),
         @NamedQuery(
                 name = "RestaurantType.findByLabel",
@@ -27,6 +38,11 @@ import java.util.Set;
 })
 public class RestaurantType implements IBusinessObject {
 
+    /**
+     * Région du cache de requêtes réservée au résultat de RestaurantType.findAll
+     */
+    public static final String FIND_ALL_CACHE_REGION = "query.RestaurantType.findAll";
+
     /**
      * Identifiant technique
      * Généré via la séquence SEQ_TYPES_GASTRONOMIQUES alignée sur le schéma
@@ -36,7 +52,7 @@ public class RestaurantType implements IBusinessObject {
     @SequenceGenerator(
             name = "SEQ_TYPES_GASTRO_GEN",
             sequenceName = "SEQ_TYPES_GASTRONOMIQUES",
-            allocationSize = 1
+            allocationSize = 50
     )
     @Column(name = "NUMERO", nullable = false)
     private Integer id;
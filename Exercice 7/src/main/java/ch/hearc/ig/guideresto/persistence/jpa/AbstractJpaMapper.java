@@ -1,20 +1,57 @@
 package ch.hearc.ig.guideresto.persistence.jpa;
 
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.query.Query;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Mapper JPA générique fournissant des opérations CRUD de base pour une entité donnée
  *
  * Deux styles d'utilisation sont proposés
- * - Méthodes autonomes qui ouvrent et gèrent leur propre transaction via JpaUtils
+ * - Méthodes autonomes qui ouvrent et gèrent leur propre transaction via {@link TransactionManager},
+ *   en lecture seule pour findById et findAll, et qui rejoignent la transaction courante du thread si elle existe
  * - Méthodes qui reçoivent un EntityManager afin d'être utilisées dans une transaction gérée à un niveau supérieur
  *
  * Les implémentations concrètes doivent fournir la requête nommée utilisée pour findAll
+ *
+ * Les insertions en masse passent par persistAll, qui vide et libère le contexte de persistance par paquets
+ * afin que les INSERT partent en lots JDBC (hibernate.jdbc.batch_size) et que la mémoire reste bornée
+ *
+ * Les lectures en masse passent par stream, qui parcourt un curseur JDBC en avant uniquement
+ * au lieu de charger tout le résultat en mémoire comme findAll
+ *
+ * Les listes affichées page par page passent par findPage, une pagination par clé (keyset) réservée aux mappers
+ * qui implémentent {@link KeysetPageable} : chaque page reprend strictement après la clé du dernier élément
+ * de la page précédente, son coût ne dépend donc pas de son rang, contrairement à une pagination par OFFSET
+ *
+ * Les associations à charger avec une entité sont décrites par un {@link FetchPlan} plutôt que par des jointures
+ * écrites au cas par cas
  */
 public abstract class AbstractJpaMapper<T> {
 
+    /**
+     * Taille de paquet par défaut de persistAll, alignée sur hibernate.jdbc.batch_size
+     */
+    public static final int DEFAULT_FLUSH_INTERVAL = 50;
+
+    /**
+     * Nombre de lignes ramenées par aller-retour JDBC par défaut lors d'un parcours par curseur
+     * Le pilote Oracle n'en ramène que 10 si rien n'est précisé
+     */
+    public static final int DEFAULT_FETCH_SIZE = 500;
+
     /**
      * Type de l'entité gérée par le mapper
      */
@@ -37,14 +74,14 @@ public abstract class AbstractJpaMapper<T> {
      * Recherche une entité par identifiant en gérant transaction et EntityManager
      */
     public T findById(int id) {
-        return JpaUtils.inTransactionResult(em -> em.find(entityClass, id));
+        return TransactionManager.execute(TransactionDefinition.READ_ONLY, em -> em.find(entityClass, id));
     }
 
     /**
      * Charge toutes les entités via une requête nommée en gérant transaction et EntityManager
      */
     public List<T> findAll() {
-        return JpaUtils.inTransactionResult(em ->
+        return TransactionManager.execute(TransactionDefinition.READ_ONLY, em ->
                 em.createNamedQuery(getFindAllNamedQuery(), entityClass).getResultList()
         );
     }
@@ -53,7 +90,7 @@ public abstract class AbstractJpaMapper<T> {
      * Persiste une entité en gérant transaction et EntityManager
      */
     public T create(T entity) {
-        return JpaUtils.inTransactionResult(em -> {
+        return TransactionManager.execute(TransactionDefinition.DEFAULT, em -> {
             em.persist(entity);
             return entity;
         });
@@ -63,7 +100,7 @@ public abstract class AbstractJpaMapper<T> {
      * Met à jour une entité via merge en gérant transaction et EntityManager
      */
     public T update(T entity) {
-        return JpaUtils.inTransactionResult(em -> em.merge(entity));
+        return TransactionManager.execute(TransactionDefinition.DEFAULT, em -> em.merge(entity));
     }
 
     /**
@@ -72,7 +109,7 @@ public abstract class AbstractJpaMapper<T> {
      * L'entité est rattachée au contexte de persistance si nécessaire afin de permettre remove
      */
     public boolean delete(T entity) {
-        return JpaUtils.inTransactionResult(em -> {
+        return TransactionManager.execute(TransactionDefinition.DEFAULT, em -> {
             T managed = attachIfNeeded(em, entity);
             if (managed == null) return false;
             em.remove(managed);
@@ -84,7 +121,7 @@ public abstract class AbstractJpaMapper<T> {
      * Supprime une entité par identifiant en gérant transaction et EntityManager
      */
     public boolean deleteById(int id) {
-        return JpaUtils.inTransactionResult(em -> {
+        return TransactionManager.execute(TransactionDefinition.DEFAULT, em -> {
             T managed = em.find(entityClass, id);
             if (managed == null) return false;
             em.remove(managed);
@@ -110,6 +147,18 @@ public abstract class AbstractJpaMapper<T> {
         return em.find(entityClass, id);
     }
 
+    /**
+     * Recherche une entité par identifiant et charge ses associations selon le plan fourni, voir {@link FetchPlan}
+     * Retourne null si l'entité n'existe pas
+     */
+    public T findById(EntityManager em, int id, FetchPlan plan) {
+        T entity = em.find(entityClass, id, plan.hints(em));
+        if (entity != null) {
+            plan.loadPaths(em, List.of(entity));
+        }
+        return entity;
+    }
+
     /**
      * Charge toutes les entités via une requête nommée en utilisant l'EntityManager fourni
      * À utiliser dans le cadre d'une transaction gérée à un niveau supérieur
@@ -118,6 +167,113 @@ public abstract class AbstractJpaMapper<T> {
         return em.createNamedQuery(getFindAllNamedQuery(), entityClass).getResultList();
     }
 
+    /**
+     * Parcourt toutes les entités de la requête findAll via un curseur, voir {@link #stream(EntityManager, String, Map, int)}
+     */
+    public Stream<T> stream(EntityManager em) {
+        return stream(em, getFindAllNamedQuery(), Map.of(), DEFAULT_FETCH_SIZE);
+    }
+
+    /**
+     * Parcourt toutes les entités de la requête findAll avec une taille de fetch JDBC explicite
+     */
+    public Stream<T> stream(EntityManager em, int fetchSize) {
+        return stream(em, getFindAllNamedQuery(), Map.of(), fetchSize);
+    }
+
+    /**
+     * Parcourt le résultat d'une requête nommée via un curseur JDBC en avant uniquement
+     *
+     * Les lignes sont ramenées par paquets de fetchSize et les entités sont chargées en lecture seule
+     * Le contexte de persistance est vidé (clear) toutes les fetchSize entités, y compris des entités associées
+     * chargées par le consommateur, ce qui garde une mémoire constante quel que soit le nombre de lignes
+     *
+     * Conséquences pour l'appelant
+     * - Le parcours doit avoir lieu dans une transaction dédiée, le clear détachant aussi les autres entités managées
+     * - Une entité ne doit pas être conservée au-delà de son traitement si elle doit rester managée
+     * - Le flux doit être fermé (try-with-resources) afin de libérer le curseur, et parcouru pendant la transaction
+     */
+    public Stream<T> stream(EntityManager em, String namedQuery, Map<String, ?> parameters, int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("fetchSize doit être positif : " + fetchSize);
+        }
+        @SuppressWarnings("unchecked")
+        Query<T> query = em.createNamedQuery(namedQuery, entityClass).unwrap(Query.class);
+        parameters.forEach(query::setParameter);
+        query.setFetchSize(fetchSize);
+        query.setReadOnly(true);
+
+        ScrollableResults<T> results = query.scroll(ScrollMode.FORWARD_ONLY);
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            private long count;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                if (!results.next()) {
+                    return false;
+                }
+                action.accept(results.get());
+                if (++count % fetchSize == 0) {
+                    em.clear();
+                }
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(results::close);
+    }
+
+    /**
+     * Retourne la page de size entités qui suit la clé fournie dans l'ordre du keyset, ou la première page si after est null
+     * Utilisée par les mappers qui implémentent {@link KeysetPageable}, filter vaut null pour une page non filtrée
+     *
+     * Le filtre est un prédicat JPQL exprimé sur les alias de la requête du {@link Keyset}, ses paramètres sont fournis dans parameters
+     * Les noms de paramètres k0, k1, ... sont réservés aux valeurs de clé
+     */
+    protected Page<T> findPage(EntityManager em, Keyset<T> keyset, String filter, Map<String, ?> parameters, List<?> after, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Taille de page invalide : " + size);
+        }
+
+        List<String> conditions = new ArrayList<>(2);
+        if (filter != null) {
+            conditions.add("(" + filter + ")");
+        }
+        if (after != null) {
+            conditions.add(keyset.afterCondition());
+        }
+        String jpql = keyset.select()
+                + (conditions.isEmpty() ? "" : " where " + String.join(" and ", conditions))
+                + keyset.orderBy();
+
+        TypedQuery<T> query = em.createQuery(jpql, entityClass);
+        parameters.forEach(query::setParameter);
+        if (after != null) {
+            for (int i = 0; i < after.size(); i++) {
+                query.setParameter("k" + i, after.get(i));
+            }
+        }
+
+        // Une ligne de plus que la taille de page indique s'il existe une page suivante
+        List<T> rows = query.setMaxResults(size + 1).getResultList();
+        if (rows.size() <= size) {
+            return new Page<>(rows, null);
+        }
+        List<T> items = new ArrayList<>(rows.subList(0, size));
+        return new Page<>(items, keyset.keyOf(items.getLast()));
+    }
+
+    /**
+     * Construit le motif d'une recherche "contient" insensible à la casse, à utiliser avec like ... escape '!'
+     * Les caractères % et _ saisis sont échappés afin d'être recherchés littéralement
+     */
+    protected static String containsPattern(String part) {
+        String escaped = part.trim().toUpperCase(Locale.ROOT)
+                .replace("!", "!!")
+                .replace("%", "!%")
+                .replace("_", "!_");
+        return "%" + escaped + "%";
+    }
+
     /**
      * Persiste une entité en utilisant l'EntityManager fourni
      * À utiliser dans le cadre d'une transaction gérée à un niveau supérieur
@@ -127,6 +283,44 @@ public abstract class AbstractJpaMapper<T> {
         return entity;
     }
 
+    /**
+     * Persiste une collection d'entités en utilisant l'EntityManager fourni
+     *
+     * Le contexte de persistance est synchronisé (flush) puis vidé (clear) toutes les flushEvery entités
+     * Chaque flush envoie les INSERT accumulés en lots JDBC, le clear évite que le contexte grossisse indéfiniment
+     * Pour des lots complets, flushEvery doit être un multiple de hibernate.jdbc.batch_size
+     *
+     * Le clear détache toutes les entités managées, y compris celles chargées avant l'appel dans la même transaction
+     * Les entités persistées sont donc détachées au retour, leurs identifiants restent renseignés
+     *
+     * @return nombre d'entités persistées
+     */
+    public int persistAll(EntityManager em, Iterable<? extends T> entities, int flushEvery) {
+        if (flushEvery < 1) {
+            throw new IllegalArgumentException("flushEvery doit être positif : " + flushEvery);
+        }
+        int count = 0;
+        for (T entity : entities) {
+            em.persist(entity);
+            if (++count % flushEvery == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        if (count % flushEvery != 0) {
+            em.flush();
+            em.clear();
+        }
+        return count;
+    }
+
+    /**
+     * Persiste une collection d'entités par paquets de {@link #DEFAULT_FLUSH_INTERVAL}
+     */
+    public int persistAll(EntityManager em, Iterable<? extends T> entities) {
+        return persistAll(em, entities, DEFAULT_FLUSH_INTERVAL);
+    }
+
     /**
      * Met à jour une entité via merge en utilisant l'EntityManager fourni
      * À utiliser dans le cadre d'une transaction gérée à un niveau supérieur
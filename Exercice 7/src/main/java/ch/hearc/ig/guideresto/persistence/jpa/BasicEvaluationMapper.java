@@ -0,0 +1,63 @@
+package ch.hearc.ig.guideresto.persistence.jpa;
+
+import ch.hearc.ig.guideresto.business.BasicEvaluation;
+import jakarta.persistence.EntityManager;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mapper JPA dédié à l'entité BasicEvaluation
+ *
+ * Cette classe spécialise AbstractJpaMapper en fournissant la requête findAll
+ * Elle sert principalement à l'insertion en masse des likes via persistAll
+ * et à la lecture des likes les plus récents, page par page
+ */
+public class BasicEvaluationMapper extends AbstractJpaMapper<BasicEvaluation> implements KeysetPageable<BasicEvaluation> {
+
+    /**
+     * Ordre de parcours utilisé par la pagination, le plus récent d'abord, avec le restaurant évalué
+     * Même ordre que {@link CompleteEvaluationMapper}, les deux tables partageant la séquence SEQ_EVAL
+     */
+    private static final Keyset<BasicEvaluation> KEYSET = new Keyset<>(
+            "select b from BasicEvaluation b join fetch b.restaurant r",
+            "b",
+            List.of(
+                    Keyset.Column.descending("visitDate", BasicEvaluation::getVisitDate),
+                    Keyset.Column.descending("id", BasicEvaluation::getId)
+            )
+    );
+
+    public BasicEvaluationMapper() {
+        super(BasicEvaluation.class);
+    }
+
+    /**
+     * Nom de la requête nommée utilisée pour charger toutes les évaluations simples
+     */
+    @Override
+    protected String getFindAllNamedQuery() {
+        return "BasicEvaluation.findAll";
+    }
+
+    /**
+     * Pagination par (date, numéro) décroissants
+     */
+    @Override
+    public Keyset<BasicEvaluation> getKeyset() {
+        return KEYSET;
+    }
+
+    @Override
+    public Page<BasicEvaluation> findPage(EntityManager em, List<?> after, int size) {
+        return findPage(em, KEYSET, null, Map.of(), after, size);
+    }
+
+    /**
+     * Page des likes et dislikes les plus récents du périmètre
+     * Index associé : IX_LIKES_DATE, parcouru dans l'ordre et filtré sur le restaurant
+     */
+    public Page<BasicEvaluation> findLatestPage(EntityManager em, EvaluationScope scope, List<?> after, int size) {
+        return findPage(em, KEYSET, scope.predicate("r"), scope.parameters(), after, size);
+    }
+}
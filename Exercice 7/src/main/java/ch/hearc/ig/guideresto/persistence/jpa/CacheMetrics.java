@@ -0,0 +1,90 @@
+package ch.hearc.ig.guideresto.persistence.jpa;
+
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Métriques du cache de second niveau, lues sur les statistiques Hibernate (hibernate.generate_statistics)
+ *
+ * - hits : lectures servies par le cache
+ * - misses : lectures absentes du cache, suivies d'une requête en base
+ * - puts : entrées placées dans le cache après une lecture en base ou une écriture
+ *
+ * Les compteurs sont cumulés depuis la construction de l'EntityManagerFactory
+ */
+public final class CacheMetrics {
+
+    private CacheMetrics() {
+    }
+
+    /**
+     * Construit un instantané immuable à partir des statistiques de la factory
+     */
+    static Snapshot snapshot(Statistics statistics) {
+        String[] names = statistics.getSecondLevelCacheRegionNames();
+        Arrays.sort(names);
+
+        List<Region> regions = new ArrayList<>(names.length);
+        for (String name : names) {
+            CacheRegionStatistics region = statistics.getCacheRegionStatistics(name);
+            if (region != null) {
+                regions.add(new Region(name, region.getHitCount(), region.getMissCount(), region.getPutCount()));
+            }
+        }
+        return new Snapshot(
+                statistics.getSecondLevelCacheHitCount(),
+                statistics.getSecondLevelCacheMissCount(),
+                statistics.getQueryCacheHitCount(),
+                statistics.getQueryCacheMissCount(),
+                List.copyOf(regions)
+        );
+    }
+
+    /**
+     * Compteurs d'une région du cache
+     */
+    public record Region(String name, long hits, long misses, long puts) {
+
+        /**
+         * Part des lectures servies par le cache, entre 0 et 1
+         */
+        public double hitRatio() {
+            long reads = hits + misses;
+            return reads == 0 ? 0.0 : (double) hits / reads;
+        }
+
+        @Override
+        public String toString() {
+            return name + "[hits=" + hits
+                    + ", misses=" + misses
+                    + ", puts=" + puts
+                    + ", hitRatio=" + String.format("%.2f", hitRatio()) + "]";
+        }
+    }
+
+    /**
+     * Instantané des métriques du cache de second niveau
+     * Les totaux entity* portent sur les régions d'entités, les totaux query* sur le cache de requêtes
+     */
+    public record Snapshot(
+            long entityHits,
+            long entityMisses,
+            long queryHits,
+            long queryMisses,
+            List<Region> regions
+    ) {
+
+        @Override
+        public String toString() {
+            return "entityHits=" + entityHits
+                    + ", entityMisses=" + entityMisses
+                    + ", queryHits=" + queryHits
+                    + ", queryMisses=" + queryMisses
+                    + ", regions=" + regions;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import ch.hearc.ig.guideresto.business.City;
 import jakarta.persistence.EntityManager;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Mapper JPA dédié à l'entité City
@@ -15,7 +16,20 @@ import java.util.List;
  * - Méthodes autonomes qui gèrent leur propre transaction via JpaUtils
  * - Méthodes prenant un EntityManager pour être utilisées dans une transaction déjà ouverte
  */
-public class CityMapper extends AbstractJpaMapper<City> {
+public class CityMapper extends AbstractJpaMapper<City> implements KeysetPageable<City> {
+
+    /**
+     * Ordre de parcours utilisé par la pagination
+     */
+    private static final Keyset<City> KEYSET = new Keyset<>(
+            "select c from City c",
+            "c",
+            List.of(
+                    new Keyset.Column<>("zipCode", City::getZipCode),
+                    new Keyset.Column<>("cityName", City::getCityName),
+                    new Keyset.Column<>("id", City::getId)
+            )
+    );
 
     public CityMapper() {
         super(City.class);
@@ -29,6 +43,20 @@ public class CityMapper extends AbstractJpaMapper<City> {
         return "City.findAll";
     }
 
+    /**
+     * Pagination par (NPA, nom, numéro), identique à l'ordre de City.findAll
+     * Index associé : IX_VILLES_CP_NOM_NUMERO
+     */
+    @Override
+    public Keyset<City> getKeyset() {
+        return KEYSET;
+    }
+
+    @Override
+    public Page<City> findPage(EntityManager em, List<?> after, int size) {
+        return findPage(em, KEYSET, null, Map.of(), after, size);
+    }
+
     /**
      * Recherche la première ville correspondant à un code postal
      * Retourne null si aucun résultat n'est trouvé
@@ -42,6 +70,19 @@ public class CityMapper extends AbstractJpaMapper<City> {
         return res.isEmpty() ? null : res.get(0);
     }
 
+    /**
+     * Recherche la première ville correspondant à un code postal
+     * Utilise l'EntityManager fourni afin de rester dans une transaction appelante
+     * Retourne null si aucun résultat n'est trouvé
+     */
+    public City findByZipCode(EntityManager em, String zipCode) {
+        List<City> res = em.createNamedQuery("City.findByZipCode", City.class)
+                .setParameter("zipCode", zipCode)
+                .setMaxResults(1)
+                .getResultList();
+        return res.isEmpty() ? null : res.get(0);
+    }
+
     /**
      * Recherche la première ville correspondant à un couple (code postal, nom)
      * Utilise l'EntityManager fourni afin de rester dans une transaction appelante
@@ -0,0 +1,77 @@
+package ch.hearc.ig.guideresto.persistence.jpa;
+
+import ch.hearc.ig.guideresto.business.CompleteEvaluation;
+import jakarta.persistence.EntityManager;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mapper JPA dédié à l'entité CompleteEvaluation
+ *
+ * Les évaluations d'un restaurant sont lues page par page, des plus récentes aux plus anciennes
+ * Chaque page est complétée par ses notes et leurs critères selon {@link #PAGE_PLAN}, pour un nombre de requêtes
+ * qui ne dépend ni du rang de la page ni du nombre total d'évaluations du restaurant
+ */
+public class CompleteEvaluationMapper extends AbstractJpaMapper<CompleteEvaluation> implements KeysetPageable<CompleteEvaluation> {
+
+    /**
+     * Associations chargées pour chaque page : les notes par lots (@BatchSize), les critères depuis le cache
+     */
+    public static final FetchPlan PAGE_PLAN = FetchPlan.none().thenLoad("grades.criteria");
+
+    /**
+     * Ordre de parcours utilisé par la pagination, la plus récente d'abord, avec le restaurant évalué
+     */
+    private static final Keyset<CompleteEvaluation> KEYSET = new Keyset<>(
+            "select e from CompleteEvaluation e join fetch e.restaurant r",
+            "e",
+            List.of(
+                    Keyset.Column.descending("visitDate", CompleteEvaluation::getVisitDate),
+                    Keyset.Column.descending("id", CompleteEvaluation::getId)
+            )
+    );
+
+    public CompleteEvaluationMapper() {
+        super(CompleteEvaluation.class);
+    }
+
+    /**
+     * Nom de la requête nommée utilisée pour charger toutes les évaluations complètes
+     */
+    @Override
+    protected String getFindAllNamedQuery() {
+        return "CompleteEvaluation.findAll";
+    }
+
+    /**
+     * Pagination par (date, numéro) décroissants
+     */
+    @Override
+    public Keyset<CompleteEvaluation> getKeyset() {
+        return KEYSET;
+    }
+
+    @Override
+    public Page<CompleteEvaluation> findPage(EntityManager em, List<?> after, int size) {
+        return findPage(em, KEYSET, null, Map.of(), after, size);
+    }
+
+    /**
+     * Page des évaluations complètes d'un restaurant, avec leurs notes et critères
+     * Index associé : IX_COMMENTAIRES_REST_DATE, chaque page est lue par un parcours d'index borné
+     */
+    public Page<CompleteEvaluation> findPageByRestaurant(EntityManager em, int restaurantId, List<?> after, int size) {
+        Page<CompleteEvaluation> page = findPage(em, KEYSET, "r.id = :restaurantId", Map.of("restaurantId", restaurantId), after, size);
+        PAGE_PLAN.loadPaths(em, page.items());
+        return page;
+    }
+
+    /**
+     * Page des évaluations complètes les plus récentes du périmètre, sans leurs notes
+     * Index associé : IX_COMMENTAIRES_DATE, parcouru dans l'ordre et filtré sur le restaurant
+     */
+    public Page<CompleteEvaluation> findLatestPage(EntityManager em, EvaluationScope scope, List<?> after, int size) {
+        return findPage(em, KEYSET, scope.predicate("r"), scope.parameters(), after, size);
+    }
+}
@@ -0,0 +1,259 @@
+package ch.hearc.ig.guideresto.persistence.jpa;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.jdbc.connections.internal.DatabaseConnectionInfoImpl;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.jdbc.connections.spi.DatabaseConnectionInfo;
+
+import javax.sql.DataSource;
+import java.io.Serial;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Pool de connexions JDBC utilisé par l'unité de persistance guideRestoJPA
+ *
+ * Le pool est construit à partir des paramètres de connexion jakarta.persistence.jdbc.* et des réglages guideresto.pool.*
+ * Il est ensuite fourni à Hibernate comme ConnectionProvider, ce qui remplace le fournisseur de connexions par défaut
+ *
+ * Réglages disponibles (valeurs par défaut entre parenthèses)
+ * - guideresto.pool.enabled (true)
+ * - guideresto.pool.minSize (2) et guideresto.pool.maxSize (10)
+ * - guideresto.pool.prefill (true) pour ouvrir minSize connexions dès le démarrage
+ * - guideresto.pool.connectionTimeoutMs (30000) attente maximale d'une connexion libre
+ * - guideresto.pool.validationTimeoutMs (5000) et guideresto.pool.validationQuery (validation JDBC4 si absent)
+ * - guideresto.pool.leakDetectionMs (60000, 0 pour désactiver)
+ *
+ * La détection de fuite signale toute connexion empruntée plus longtemps que le seuil
+ * En pratique, il s'agit d'un EntityManager resté ouvert avec une transaction active, la connexion n'étant
+ * rendue au pool qu'à la fin de la transaction
+ *
+ * Sérialisable par contrat de ConnectionProvider seulement : le pool et ses métriques ne sont pas sérialisés
+ */
+public final class ConnectionPool implements ConnectionProvider, AutoCloseable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger logger = LogManager.getLogger(ConnectionPool.class);
+
+    static final String PREFIX = "guideresto.pool.";
+
+    private static final String JDBC_URL = "jakarta.persistence.jdbc.url";
+    private static final String JDBC_USER = "jakarta.persistence.jdbc.user";
+    private static final String JDBC_PASSWORD = "jakarta.persistence.jdbc.password";
+    private static final String JDBC_DRIVER = "jakarta.persistence.jdbc.driver";
+
+    private final transient HikariDataSource dataSource;
+    private final transient PoolMetrics metrics;
+    private final int minSize;
+
+    private ConnectionPool(HikariDataSource dataSource, PoolMetrics metrics, int minSize) {
+        this.dataSource = dataSource;
+        this.metrics = metrics;
+        this.minSize = minSize;
+    }
+
+    /**
+     * Indique si un pool doit être construit pour les réglages fournis
+     * Le pool nécessite au minimum une URL JDBC, sinon la configuration Hibernate d'origine est conservée
+     */
+    static boolean isEnabled(Properties settings) {
+        return Boolean.parseBoolean(settings.getProperty(PREFIX + "enabled", "true"))
+                && settings.getProperty(JDBC_URL) != null;
+    }
+
+    /**
+     * Construit et démarre le pool à partir des réglages fournis
+     */
+    static ConnectionPool create(Properties settings) {
+        int minSize = intSetting(settings, "minSize", 2);
+        int maxSize = configuredMaxSize(settings);
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Taille de pool invalide : minSize=" + minSize + ", maxSize=" + maxSize);
+        }
+
+        PoolMetrics metrics = new PoolMetrics();
+
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("guideresto");
+        config.setJdbcUrl(settings.getProperty(JDBC_URL));
+        config.setUsername(settings.getProperty(JDBC_USER));
+        config.setPassword(settings.getProperty(JDBC_PASSWORD));
+        if (settings.getProperty(JDBC_DRIVER) != null) {
+            config.setDriverClassName(settings.getProperty(JDBC_DRIVER));
+        }
+
+        config.setMinimumIdle(minSize);
+        config.setMaximumPoolSize(maxSize);
+        config.setConnectionTimeout(intSetting(settings, "connectionTimeoutMs", 30_000));
+        config.setValidationTimeout(intSetting(settings, "validationTimeoutMs", 5_000));
+        config.setLeakDetectionThreshold(intSetting(settings, "leakDetectionMs", 60_000));
+
+        String validationQuery = settings.getProperty(PREFIX + "validationQuery");
+        if (validationQuery != null && !validationQuery.isBlank()) {
+            config.setConnectionTestQuery(validationQuery);
+        }
+
+        // Hibernate travaille toujours en transaction, l'autocommit est donc désactivé une fois pour toutes au niveau du pool
+        config.setAutoCommit(false);
+        config.setMetricsTrackerFactory(metrics);
+
+        ConnectionPool pool = new ConnectionPool(new HikariDataSource(config), metrics, minSize);
+        logger.info("Pool de connexions démarré. minSize={}, maxSize={}", minSize, maxSize);
+
+        if (Boolean.parseBoolean(settings.getProperty(PREFIX + "prefill", "true"))) {
+            pool.prefill();
+        }
+        return pool;
+    }
+
+    /**
+     * Taille maximale du pool selon les réglages fournis, sans construire le pool
+     */
+    static int configuredMaxSize(Properties settings) {
+        return intSetting(settings, "maxSize", 10);
+    }
+
+    private static int intSetting(Properties settings, String key, int defaultValue) {
+        String value = settings.getProperty(PREFIX + key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Valeur entière attendue pour " + PREFIX + key + " : " + value, ex);
+        }
+    }
+
+    /**
+     * Ouvre minSize connexions simultanément puis les rend au pool
+     * Les premières requêtes utilisateur ne paient ainsi pas l'établissement des sessions Oracle
+     */
+    void prefill() {
+        long start = System.nanoTime();
+        List<Connection> borrowed = new ArrayList<>(minSize);
+        try {
+            for (int i = 0; i < minSize; i++) {
+                borrowed.add(dataSource.getConnection());
+            }
+        } catch (SQLException ex) {
+            logger.warn("Préchargement du pool interrompu : {}", ex.getMessage());
+        } finally {
+            for (Connection c : borrowed) {
+                try {
+                    c.close();
+                } catch (SQLException ex) {
+                    logger.warn("Restitution d'une connexion préchargée impossible : {}", ex.getMessage());
+                }
+            }
+        }
+        logger.info("Pool préchargé avec {} connexion(s) en {} ms", borrowed.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Emprunte une connexion au pool pour le compte d'Hibernate
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        return dataSource.getConnection();
+    }
+
+    /**
+     * Rend une connexion au pool, son état (autocommit, isolation, lecture seule) est réinitialisé par HikariCP
+     */
+    @Override
+    public void closeConnection(Connection connection) throws SQLException {
+        connection.close();
+    }
+
+    @Override
+    public boolean supportsAggressiveRelease() {
+        return false;
+    }
+
+    /**
+     * Informations affichées par Hibernate au démarrage (URL, bornes du pool)
+     */
+    @Override
+    public DatabaseConnectionInfo getDatabaseConnectionInfo(Dialect dialect) {
+        return new DatabaseConnectionInfoImpl(
+                ConnectionPool.class,
+                dataSource.getJdbcUrl(),
+                dataSource.getDriverClassName(),
+                dialect.getVersion(),
+                String.valueOf(dataSource.isAutoCommit()),
+                dataSource.getTransactionIsolation(),
+                dataSource.getMinimumIdle(),
+                dataSource.getMaximumPoolSize()
+        );
+    }
+
+    @Override
+    public boolean isUnwrappableAs(Class<?> unwrapType) {
+        return unwrapType.isAssignableFrom(ConnectionPool.class) || unwrapType.isAssignableFrom(HikariDataSource.class);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> unwrapType) {
+        if (unwrapType.isAssignableFrom(ConnectionPool.class)) {
+            return (T) this;
+        }
+        if (unwrapType.isAssignableFrom(HikariDataSource.class)) {
+            return (T) dataSource;
+        }
+        throw new IllegalArgumentException("Type non supporté : " + unwrapType.getName());
+    }
+
+    /**
+     * DataSource sous-jacente, utile pour les accès JDBC hors Hibernate
+     */
+    DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * Taille maximale configurée du pool
+     */
+    public int getMaxSize() {
+        return dataSource.getMaximumPoolSize();
+    }
+
+    /**
+     * Instantané des métriques courantes du pool
+     */
+    public PoolMetrics.Snapshot snapshot() {
+        HikariPoolMXBean bean = dataSource.getHikariPoolMXBean();
+        if (bean == null) {
+            return metrics.snapshot(0, 0, 0, 0, getMaxSize());
+        }
+        return metrics.snapshot(
+                bean.getActiveConnections(),
+                bean.getIdleConnections(),
+                bean.getTotalConnections(),
+                bean.getThreadsAwaitingConnection(),
+                getMaxSize()
+        );
+    }
+
+    /**
+     * Ferme toutes les connexions du pool
+     */
+    @Override
+    public void close() {
+        if (!dataSource.isClosed()) {
+            logger.info("Fermeture du pool de connexions. {}", snapshot());
+            dataSource.close();
+        }
+    }
+}
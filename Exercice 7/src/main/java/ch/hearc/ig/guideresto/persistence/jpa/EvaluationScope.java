@@ -0,0 +1,54 @@
+package ch.hearc.ig.guideresto.persistence.jpa;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Périmètre d'une lecture d'évaluations : tous les restaurants, ceux d'une ville ou ceux d'un type
+ *
+ * Le filtre porte sur les clés étrangères du restaurant évalué, il est donc exprimé sans jointure supplémentaire
+ */
+public record EvaluationScope(Integer cityId, Integer typeId) {
+
+    public static EvaluationScope all() {
+        return new EvaluationScope(null, null);
+    }
+
+    public static EvaluationScope city(int cityId) {
+        return new EvaluationScope(cityId, null);
+    }
+
+    public static EvaluationScope type(int typeId) {
+        return new EvaluationScope(null, typeId);
+    }
+
+    /**
+     * Prédicat JPQL sur l'alias du restaurant évalué, null si le périmètre couvre tous les restaurants
+     */
+    String predicate(String restaurantAlias) {
+        if (cityId != null && typeId != null) {
+            return restaurantAlias + ".city.id = :cityId and " + restaurantAlias + ".restaurantType.id = :typeId";
+        }
+        if (cityId != null) {
+            return restaurantAlias + ".city.id = :cityId";
+        }
+        if (typeId != null) {
+            return restaurantAlias + ".restaurantType.id = :typeId";
+        }
+        return null;
+    }
+
+    /**
+     * Paramètres du prédicat
+     */
+    Map<String, Object> parameters() {
+        Map<String, Object> parameters = new HashMap<>();
+        if (cityId != null) {
+            parameters.put("cityId", cityId);
+        }
+        if (typeId != null) {
+            parameters.put("typeId", typeId);
+        }
+        return parameters;
+    }
+}
@@ -0,0 +1,96 @@
+package ch.hearc.ig.guideresto.persistence.jpa;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.jpa.SpecHints;
+import org.hibernate.metamodel.MappingMetamodel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plan de chargement d'une entité et de ses associations
+ *
+ * - graphe : graphe d'entité nommé (@NamedEntityGraph) appliqué à la requête principale comme fetch graph,
+ *   réservé aux associations ManyToOne chargées par jointure sans multiplier les lignes
+ * - chemins : associations chargées après l'entité, par des requêtes séparées, par exemple "completeEvaluations.grades.criteria"
+ *
+ * Les collections ne sont jamais jointes à la requête principale : deux collections jointes ramènent leur produit cartésien
+ * Chaque segment d'un chemin est chargé pour toutes les entités du niveau précédent à la fois, le nombre de requêtes
+ * dépend donc des réglages @Fetch(SUBSELECT) et @BatchSize des associations et non du nombre d'éléments
+ */
+public final class FetchPlan {
+
+    private final String graphName;
+    private final List<String> paths;
+
+    private FetchPlan(String graphName, List<String> paths) {
+        this.graphName = graphName;
+        this.paths = paths;
+    }
+
+    /**
+     * Plan appliquant le graphe d'entité nommé à la requête principale
+     */
+    public static FetchPlan graph(String graphName) {
+        return new FetchPlan(graphName, List.of());
+    }
+
+    /**
+     * Plan sans graphe, seules les associations EAGER sont chargées avec l'entité
+     */
+    public static FetchPlan none() {
+        return new FetchPlan(null, List.of());
+    }
+
+    /**
+     * Retourne un nouveau plan qui charge en plus le chemin d'associations fourni, segments séparés par des points
+     */
+    public FetchPlan thenLoad(String path) {
+        List<String> extended = new ArrayList<>(paths);
+        extended.add(path);
+        return new FetchPlan(graphName, List.copyOf(extended));
+    }
+
+    /**
+     * Indications à passer à EntityManager.find ou à une requête
+     */
+    Map<String, Object> hints(EntityManager em) {
+        return graphName == null ? Map.of() : Map.of(SpecHints.HINT_SPEC_FETCH_GRAPH, em.getEntityGraph(graphName));
+    }
+
+    /**
+     * Charge les chemins du plan pour les entités racines fournies
+     * Doit être appelé dans la transaction qui a chargé les racines
+     */
+    void loadPaths(EntityManager em, Collection<?> roots) {
+        if (paths.isEmpty() || roots.isEmpty()) {
+            return;
+        }
+        MappingMetamodel metamodel = em.getEntityManagerFactory()
+                .unwrap(SessionFactoryImplementor.class)
+                .getMappingMetamodel();
+
+        for (String path : paths) {
+            Collection<?> level = roots;
+            for (String attribute : path.split("\\.")) {
+                List<Object> next = new ArrayList<>();
+                for (Object owner : level) {
+                    Object entity = Hibernate.unproxy(owner);
+                    Object value = metamodel.getEntityDescriptor(entity.getClass()).getPropertyValue(entity, attribute);
+                    // Le premier élément non initialisé déclenche le chargement de ses voisins (sous-requête ou lot)
+                    Hibernate.initialize(value);
+                    if (value instanceof Collection<?> values) {
+                        next.addAll(values);
+                    } else if (value != null) {
+                        next.add(value);
+                    }
+                }
+                level = next;
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package ch.hearc.ig.guideresto.persistence.jpa;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.NamedQuery;
+import jakarta.persistence.Parameter;
+import jakarta.persistence.Query;
+import jakarta.persistence.metamodel.EntityType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.Generator;
+import org.hibernate.id.IdentifierGenerator;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Étapes de démarrage exécutées après la construction de l'EntityManagerFactory
+ *
+ * Le préchauffage évite que la première action utilisateur paie des coûts uniquement liés au démarrage
+ * - Compilation et première exécution de chaque requête nommée déclarée sur les entités
+ * - Initialisation des générateurs d'identifiants basés sur les séquences
+ *
+ * Chaque phase est chronométrée et journalisée
+ * Un échec de préchauffage n'est pas bloquant, l'application reste utilisable
+ */
+final class JpaStartup {
+
+    private static final Logger logger = LogManager.getLogger(JpaStartup.class);
+
+    private JpaStartup() {
+    }
+
+    /**
+     * Exécute une phase de démarrage en journalisant sa durée
+     */
+    static <T> T phase(String name, Supplier<T> work) {
+        long start = System.nanoTime();
+        T result = work.get();
+        logger.info("Démarrage JPA - {} : {} ms", name, (System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+
+    /**
+     * Préchauffe la factory fournie
+     */
+    static void warmUp(EntityManagerFactory emf) {
+        long start = System.nanoTime();
+        int queries = phase("précompilation des requêtes nommées", () -> inTransaction(emf, em -> precompileNamedQueries(emf, em)));
+        int sequences = phase("initialisation des séquences", () -> inTransaction(emf, em -> touchSequences(emf, em)));
+        logger.info("Démarrage JPA - préchauffage terminé en {} ms ({} requête(s) nommée(s), {} séquence(s))",
+                (System.nanoTime() - start) / 1_000_000, queries, sequences);
+    }
+
+    /**
+     * Exécute une phase dans une transaction dédiée, annulée en cas d'erreur
+     * Une erreur est journalisée et la phase est considérée comme n'ayant rien traité
+     */
+    private static int inTransaction(EntityManagerFactory emf, Function<EntityManager, Integer> work) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            int count = work.apply(em);
+            em.getTransaction().commit();
+            return count;
+        } catch (RuntimeException ex) {
+            logger.warn("Préchauffage JPA interrompu : {}", ex.getMessage());
+            if (em.getTransaction().isActive()) em.getTransaction().rollback();
+            return 0;
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Crée puis exécute une fois chaque requête nommée des entités gérées
+     *
+     * L'exécution avec une seule ligne et des paramètres neutres force la traduction HQL vers SQL
+     * et la préparation du curseur côté base, sans dépendre des données présentes
+     * Le cache de second niveau est ignoré afin de ne pas y placer ces résultats partiels
+     */
+    private static int precompileNamedQueries(EntityManagerFactory emf, EntityManager em) {
+        Session session = em.unwrap(Session.class);
+        session.setDefaultReadOnly(true);
+        session.setCacheMode(CacheMode.IGNORE);
+
+        int count = 0;
+        for (EntityType<?> type : emf.getMetamodel().getEntities()) {
+            for (NamedQuery namedQuery : type.getJavaType().getAnnotationsByType(NamedQuery.class)) {
+                try {
+                    Query query = em.createNamedQuery(namedQuery.name());
+                    if (bindNeutralParameters(query)) {
+                        query.setMaxResults(1).getResultList();
+                    }
+                    count++;
+                } catch (RuntimeException ex) {
+                    logger.warn("Précompilation de la requête {} impossible : {}", namedQuery.name(), ex.getMessage());
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Lie une valeur neutre à chaque paramètre de la requête
+     * Retourne false si un type de paramètre n'est pas pris en charge, la requête est alors seulement compilée
+     */
+    private static boolean bindNeutralParameters(Query query) {
+        for (Parameter<?> parameter : query.getParameters()) {
+            Class<?> type = parameter.getParameterType();
+            Object value;
+            if (type == String.class) {
+                value = "";
+            } else if (type == Integer.class || type == int.class) {
+                value = 0;
+            } else if (type == Long.class || type == long.class) {
+                value = 0L;
+            } else {
+                return false;
+            }
+            query.setParameter(parameter.getName(), value);
+        }
+        return true;
+    }
+
+    /**
+     * Sollicite une fois chaque générateur d'identifiant des entités gérées
+     *
+     * L'appel valide l'accès à chaque séquence et réserve un premier bloc d'identifiants hors du chemin utilisateur
+     * La valeur obtenue est perdue mais le reste du bloc est utilisé par les insertions suivantes
+     * Les générateurs partagés entre plusieurs entités ne sont sollicités qu'une seule fois
+     */
+    private static int touchSequences(EntityManagerFactory emf, EntityManager em) {
+        SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        SharedSessionContractImplementor session = em.unwrap(SharedSessionContractImplementor.class);
+        Set<Generator> touched = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (EntityType<?> type : emf.getMetamodel().getEntities()) {
+            Generator generator = sessionFactory.getMappingMetamodel()
+                    .getEntityDescriptor(type.getJavaType())
+                    .getGenerator();
+
+            if (generator instanceof IdentifierGenerator identifierGenerator && touched.add(generator)) {
+                identifierGenerator.generate(session, null);
+            }
+        }
+        return touched.size();
+    }
+}
@@ -2,17 +2,32 @@ package ch.hearc.ig.guideresto.persistence.jpa;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
-import jakarta.persistence.EntityTransaction;
 import jakarta.persistence.Persistence;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.cfg.AvailableSettings;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
 /**
  * Utilitaire centralisant la gestion de l'EntityManagerFactory et l'exécution de blocs transactionnels
  *
- * L'EntityManagerFactory est initialisé à la demande à partir de l'unité de persistance guideRestoJPA
- * Chaque appel transactionnel crée un EntityManager dédié, démarre une transaction, puis commit ou rollback
+ * L'EntityManagerFactory est construit une seule fois à partir de l'unité de persistance guideRestoJPA
+ * La construction a lieu sur un thread dédié, soit dès l'appel à {@link #startAsync()}, soit lors du premier accès
+ * Les connexions JDBC sont fournies par un {@link ConnectionPool} construit à partir de hibernate.properties
+ * Les appels transactionnels sont délégués à {@link TransactionManager}, qui ouvre un EntityManager dédié
+ * ou rejoint la transaction déjà ouverte sur le thread courant
  *
  * Cette approche garantit
  * - Une fermeture systématique de l'EntityManager
@@ -20,24 +35,207 @@ import java.util.function.Function;
  */
 public final class JpaUtils {
 
+    private static final Logger logger = LogManager.getLogger(JpaUtils.class);
+
+    private static final String PERSISTENCE_UNIT = "guideRestoJPA";
+
     /**
      * Factory partagée au niveau applicatif
-     * Initialisée paresseusement lors du premier accès
+     * Publiée par le thread de démarrage une fois construite, lue sans verrou ensuite
      */
-    private static EntityManagerFactory emf;
+    private static volatile EntityManagerFactory emf;
+
+    /**
+     * Démarrage en cours ou terminé, protégé par le verrou de la classe
+     * Remis à null en cas d'échec afin qu'un accès ultérieur puisse retenter la construction
+     */
+    private static CompletableFuture<EntityManagerFactory> startup;
+
+    /**
+     * Thread de démarrage, attendu lors de la fermeture afin de ne pas fermer la factory pendant son préchauffage
+     */
+    private static Thread startupThread;
+
+    /**
+     * Pool de connexions associé à la factory, null si la configuration ne permet pas d'en construire un
+     */
+    private static volatile ConnectionPool pool;
+
+    /**
+     * Réglages prioritaires sur hibernate.properties, par exemple pour pointer sur une base embarquée
+     * Lus par le thread de démarrage et par getMaxConnections pendant qu'un autre thread peut encore les compléter
+     */
+    private static final Map<String, Object> overrides = new ConcurrentHashMap<>();
 
     private JpaUtils() {
     }
 
+    /**
+     * Ajoute des réglages prioritaires sur hibernate.properties et les propriétés système
+     * Doit être appelé avant le premier accès à un EntityManager pour être pris en compte
+     */
+    public static void configure(Map<String, ?> settings) {
+        overrides.putAll(settings);
+    }
+
+    /**
+     * Lance la construction et le préchauffage de l'EntityManagerFactory sur un thread d'arrière-plan
+     *
+     * L'appel est idempotent, les appels suivants retournent le démarrage déjà en cours
+     * Le futur est complété dès que la factory est utilisable, le préchauffage se poursuit ensuite en arrière-plan
+     */
+    public static CompletableFuture<EntityManagerFactory> startAsync() {
+        synchronized (JpaUtils.class) {
+            if (startup == null) {
+                CompletableFuture<EntityManagerFactory> future = new CompletableFuture<>();
+                startup = future;
+                startupThread = Thread.ofPlatform()
+                        .name("jpa-startup")
+                        .daemon()
+                        .start(() -> runStartup(future));
+            }
+            return startup;
+        }
+    }
+
+    /**
+     * Pipeline de démarrage exécuté sur le thread dédié
+     * Construction de la factory, publication, puis préchauffage
+     */
+    private static void runStartup(CompletableFuture<EntityManagerFactory> future) {
+        long start = System.nanoTime();
+        EntityManagerFactory factory;
+        try {
+            factory = JpaStartup.phase("construction de l'EntityManagerFactory", JpaUtils::createEntityManagerFactory);
+        } catch (RuntimeException | Error ex) {
+            logger.error("Démarrage JPA en échec : {}", ex.getMessage());
+            synchronized (JpaUtils.class) {
+                if (startup == future) {
+                    startup = null;
+                }
+            }
+            future.completeExceptionally(ex);
+            return;
+        }
+
+        emf = factory;
+        future.complete(factory);
+
+        JpaStartup.warmUp(factory);
+        logger.info("Démarrage JPA terminé en {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
     /**
      * Crée un EntityManager à partir de l'EntityManagerFactory
-     * Initialise la factory si nécessaire
+     * Démarre la construction de la factory si nécessaire et attend qu'elle soit disponible
      */
     public static EntityManager getEntityManager() {
-        if (emf == null) {
-            emf = Persistence.createEntityManagerFactory("guideRestoJPA");
+        EntityManagerFactory factory = emf;
+        if (factory == null) {
+            factory = awaitStartup();
+        }
+        return factory.createEntityManager();
+    }
+
+    /**
+     * Ouvre une session sans état pour les traitements en masse
+     *
+     * La session n'a ni contexte de persistance ni cascade, chaque insert est une requête
+     * Elle n'est pas gérée par {@link TransactionManager}, l'appelant gère sa transaction et sa fermeture
+     */
+    public static StatelessSession openStatelessSession() {
+        EntityManagerFactory factory = emf;
+        if (factory == null) {
+            factory = awaitStartup();
+        }
+        return factory.unwrap(SessionFactory.class).openStatelessSession();
+    }
+
+    /**
+     * Attend la fin de la construction de la factory en propageant l'erreur d'origine en cas d'échec
+     */
+    private static EntityManagerFactory awaitStartup() {
+        try {
+            return startAsync().join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Construit la factory en lui fournissant le pool de connexions lorsque la configuration le permet
+     */
+    private static EntityManagerFactory createEntityManagerFactory() {
+        Properties settings = loadSettings();
+        Map<String, Object> properties = new HashMap<>(overrides);
+
+        if (ConnectionPool.isEnabled(settings)) {
+            pool = ConnectionPool.create(settings);
+            properties.put(AvailableSettings.CONNECTION_PROVIDER, pool);
+            // Le pool livre des connexions déjà en autocommit=false, Hibernate peut éviter de le redemander à chaque transaction
+            properties.put("hibernate.connection.provider_disables_autocommit", "true");
+        } else {
+            logger.warn("Pool de connexions désactivé, utilisation du fournisseur de connexions Hibernate par défaut");
         }
-        return emf.createEntityManager();
+
+        try {
+            return Persistence.createEntityManagerFactory(PERSISTENCE_UNIT, properties);
+        } catch (RuntimeException ex) {
+            closePool();
+            throw ex;
+        }
+    }
+
+    /**
+     * Fusionne les réglages dans l'ordre de priorité croissante
+     * hibernate.properties du classpath, propriétés système, puis réglages fournis via configure
+     */
+    private static Properties loadSettings() {
+        Properties settings = new Properties();
+        try (InputStream in = JpaUtils.class.getClassLoader().getResourceAsStream("hibernate.properties")) {
+            if (in != null) {
+                settings.load(in);
+            }
+        } catch (IOException ex) {
+            logger.warn("Lecture de hibernate.properties impossible : {}", ex.getMessage());
+        }
+        settings.putAll(System.getProperties());
+        overrides.forEach((key, value) -> {
+            if (value instanceof String str) {
+                settings.setProperty(key, str);
+            }
+        });
+        return settings;
+    }
+
+    /**
+     * Retourne un instantané des métriques du pool de connexions
+     * Retourne null si la factory n'est pas encore construite ou si le pool est désactivé
+     */
+    public static PoolMetrics.Snapshot getPoolMetrics() {
+        ConnectionPool current = pool;
+        return current != null ? current.snapshot() : null;
+    }
+
+    /**
+     * Retourne un instantané des métriques du cache de second niveau
+     * Retourne null si la factory n'est pas encore construite
+     */
+    public static CacheMetrics.Snapshot getCacheMetrics() {
+        EntityManagerFactory factory = emf;
+        return factory != null ? CacheMetrics.snapshot(factory.unwrap(SessionFactory.class).getStatistics()) : null;
+    }
+
+    /**
+     * Nombre maximal de connexions JDBC simultanées dont dispose l'application
+     * Lu sur le pool s'il est déjà construit, sinon sur la configuration, sans attendre le démarrage de JPA
+     */
+    public static int getMaxConnections() {
+        ConnectionPool current = pool;
+        return current != null ? current.getMaxSize() : ConnectionPool.configuredMaxSize(loadSettings());
     }
 
     /**
@@ -45,9 +243,34 @@ public final class JpaUtils {
      * À appeler en fin d'application pour libérer les ressources JDBC et caches associés
      */
     public static void close() {
-        if (emf != null) {
-            emf.close();
-            emf = null;
+        Thread pending;
+        synchronized (JpaUtils.class) {
+            pending = startupThread;
+            startup = null;
+            startupThread = null;
+        }
+
+        if (pending != null) {
+            try {
+                pending.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        EntityManagerFactory factory = emf;
+        emf = null;
+        if (factory != null) {
+            logger.info("Fermeture du cache de second niveau. {}", CacheMetrics.snapshot(factory.unwrap(SessionFactory.class).getStatistics()));
+            factory.close();
+        }
+        closePool();
+    }
+
+    private static void closePool() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
         }
     }
 
@@ -55,49 +278,23 @@ public final class JpaUtils {
      * Exécute un traitement dans une transaction
      *
      * Le bloc reçoit un EntityManager utilisable pour effectuer des opérations JPA
-     * La transaction est validée si aucune exception n'est levée, sinon elle est annulée
+     * La transaction courante du thread est rejointe si elle existe, voir {@link TransactionManager}
      */
     public static void inTransaction(Consumer<EntityManager> consumer) {
-        EntityManager em = getEntityManager();
-        EntityTransaction tx = em.getTransaction();
-
-        try {
-            tx.begin();
+        inTransactionResult(em -> {
             consumer.accept(em);
-            tx.commit();
-        } catch (RuntimeException ex) {
-            if (tx.isActive()) {
-                tx.rollback();
-            }
-            throw ex;
-        } finally {
-            em.close();
-        }
+            return null;
+        });
     }
 
     /**
      * Exécute un traitement dans une transaction et retourne un résultat
      *
      * Le bloc reçoit un EntityManager utilisable pour effectuer des opérations JPA
-     * La transaction est validée si aucune exception n'est levée, sinon elle est annulée
+     * La transaction courante du thread est rejointe si elle existe, voir {@link TransactionManager}
      */
     public static <R> R inTransactionResult(Function<EntityManager, R> function) {
-        EntityManager em = getEntityManager();
-        EntityTransaction tx = em.getTransaction();
-
-        try {
-            tx.begin();
-            R result = function.apply(em);
-            tx.commit();
-            return result;
-        } catch (RuntimeException ex) {
-            if (tx.isActive()) {
-                tx.rollback();
-            }
-            throw ex;
-        } finally {
-            em.close();
-        }
+        return TransactionManager.execute(TransactionDefinition.DEFAULT, function);
     }
 
     /**
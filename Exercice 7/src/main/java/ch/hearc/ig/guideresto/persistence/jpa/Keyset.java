@@ -0,0 +1,84 @@
+package ch.hearc.ig.guideresto.persistence.jpa;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Description d'un ordre de parcours par clé (keyset) pour une entité
+ *
+ * - select : requête de base sans clause where ni order by, jointures fetch comprises
+ * - alias : alias de l'entité dans la requête de base
+ * - columns : colonnes de tri, la dernière doit garantir l'unicité (typiquement l'identifiant)
+ *   chaque colonne est croissante ou décroissante, "après" s'entend dans le sens du tri
+ *
+ * L'index composite correspondant doit exister en base pour que chaque page soit lue par un parcours d'index borné
+ */
+public record Keyset<T>(String select, String alias, List<Column<T>> columns) {
+
+    /**
+     * Colonne de tri : chemin JPQL relatif à l'alias, lecture de la valeur sur une entité et sens du tri
+     */
+    public record Column<T>(String path, Function<T, Object> value, boolean descending) {
+
+        /**
+         * Colonne triée par ordre croissant
+         */
+        public Column(String path, Function<T, Object> value) {
+            this(path, value, false);
+        }
+
+        /**
+         * Colonne triée par ordre décroissant
+         */
+        public static <T> Column<T> descending(String path, Function<T, Object> value) {
+            return new Column<>(path, value, true);
+        }
+    }
+
+    /**
+     * Construit la condition "strictement après la clé", en forme développée
+     * k1 >= :k0 and (k1 > :k0 or (k1 = :k0 and k2 > :k1 ...)), comparaisons inversées pour une colonne décroissante
+     *
+     * La première comparaison inclusive, redondante logiquement, permet à l'optimiseur de borner le parcours d'index
+     */
+    String afterCondition() {
+        StringBuilder sb = new StringBuilder();
+        Column<T> first = columns.getFirst();
+        sb.append(alias).append(".").append(first.path()).append(first.descending() ? " <= :k0 and " : " >= :k0 and ");
+        sb.append(strictlyAfter(0));
+        return sb.toString();
+    }
+
+    private String strictlyAfter(int index) {
+        Column<T> column = columns.get(index);
+        String path = alias + "." + column.path();
+        String after = column.descending() ? " < :k" : " > :k";
+        if (index == columns.size() - 1) {
+            return path + after + index;
+        }
+        return "(" + path + after + index + " or (" + path + " = :k" + index + " and " + strictlyAfter(index + 1) + "))";
+    }
+
+    /**
+     * Clause de tri correspondant aux colonnes
+     */
+    String orderBy() {
+        List<String> parts = new ArrayList<>(columns.size());
+        for (Column<T> column : columns) {
+            parts.add(alias + "." + column.path() + (column.descending() ? " desc" : ""));
+        }
+        return " order by " + String.join(", ", parts);
+    }
+
+    /**
+     * Valeurs de clé d'une entité, dans l'ordre des colonnes
+     */
+    List<Object> keyOf(T entity) {
+        List<Object> key = new ArrayList<>(columns.size());
+        for (Column<T> column : columns) {
+            key.add(column.value().apply(entity));
+        }
+        return key;
+    }
+}
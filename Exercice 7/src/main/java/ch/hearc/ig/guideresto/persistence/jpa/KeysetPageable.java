@@ -0,0 +1,25 @@
+package ch.hearc.ig.guideresto.persistence.jpa;
+
+import jakarta.persistence.EntityManager;
+
+import java.util.List;
+
+/**
+ * Contrat des mappers dont les listes sont lues page par page, par clé (keyset)
+ *
+ * Seuls ces mappers l'implémentent : un mapper sans ordre de parcours ne propose pas de pagination
+ * La page est construite par {@link AbstractJpaMapper#findPage(EntityManager, Keyset, String, java.util.Map, List, int)}
+ */
+public interface KeysetPageable<T> {
+
+    /**
+     * Retourne l'ordre de parcours utilisé par la pagination
+     */
+    Keyset<T> getKeyset();
+
+    /**
+     * Retourne la page de size entités qui suit la clé fournie, ou la première page si after est null
+     * À utiliser dans le cadre d'une transaction gérée à un niveau supérieur
+     */
+    Page<T> findPage(EntityManager em, List<?> after, int size);
+}
@@ -0,0 +1,20 @@
+package ch.hearc.ig.guideresto.persistence.jpa;
+
+import java.util.List;
+
+/**
+ * Page de résultats obtenue par pagination par clé (keyset)
+ *
+ * nextKey contient les valeurs de clé du dernier élément de la page, à fournir pour obtenir la page suivante
+ * Il vaut null lorsqu'il n'y a pas de page suivante
+ */
+public record Page<T>(List<T> items, List<Object> nextKey) {
+
+    public boolean hasNext() {
+        return nextKey != null;
+    }
+
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+}
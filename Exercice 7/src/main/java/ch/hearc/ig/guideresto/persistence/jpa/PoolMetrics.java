@@ -0,0 +1,174 @@
+package ch.hearc.ig.guideresto.persistence.jpa;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collecteur de métriques du pool de connexions JDBC
+ *
+ * Le pool HikariCP notifie cette classe à chaque emprunt de connexion, à chaque restitution et à chaque timeout
+ * Les temps d'attente sont agrégés dans un histogramme à seaux fixes, sans verrou, via des LongAdder
+ *
+ * L'état instantané du pool (connexions actives, inactives, threads en attente) est lu directement
+ * sur le pool au moment de la prise d'instantané, voir {@link ConnectionPool#snapshot()}
+ */
+public class PoolMetrics implements MetricsTrackerFactory {
+
+    /**
+     * Bornes supérieures des seaux de l'histogramme, en microsecondes
+     * Le dernier seau implicite regroupe toutes les valeurs au-delà de la dernière borne
+     */
+    static final long[] BUCKET_BOUNDS_MICROS = {
+            100, 250, 500,
+            1_000, 2_500, 5_000,
+            10_000, 25_000, 50_000,
+            100_000, 250_000, 500_000,
+            1_000_000, 2_500_000, 5_000_000, 10_000_000
+    };
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MICROS.length + 1];
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder acquireTotalMicros = new LongAdder();
+    private final LongAccumulator acquireMaxMicros = new LongAccumulator(Long::max, 0L);
+    private final LongAdder usageTotalMillis = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    public PoolMetrics() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Point d'extension HikariCP : fournit le tracker associé au pool
+     */
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        return new Tracker();
+    }
+
+    /**
+     * Enregistre la durée d'attente d'un thread pour obtenir une connexion
+     */
+    void recordAcquire(long elapsedNanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(elapsedNanos);
+        buckets[bucketIndex(micros)].increment();
+        acquireCount.increment();
+        acquireTotalMicros.add(micros);
+        acquireMaxMicros.accumulate(micros);
+    }
+
+    private static int bucketIndex(long micros) {
+        int idx = Arrays.binarySearch(BUCKET_BOUNDS_MICROS, micros);
+        return idx >= 0 ? idx : -idx - 1;
+    }
+
+    /**
+     * Construit un instantané immuable des métriques
+     * Les compteurs du pool sont fournis par l'appelant car ils ne sont pas maintenus ici
+     */
+    Snapshot snapshot(int active, int idle, int total, int waitingThreads, int maxSize) {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return new Snapshot(
+                active,
+                idle,
+                total,
+                waitingThreads,
+                maxSize,
+                acquireCount.sum(),
+                acquireTotalMicros.sum(),
+                acquireMaxMicros.get(),
+                usageTotalMillis.sum(),
+                timeouts.sum(),
+                counts
+        );
+    }
+
+    /**
+     * Tracker appelé par HikariCP sur le chemin d'emprunt des connexions
+     */
+    private final class Tracker implements IMetricsTracker {
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            recordAcquire(elapsedAcquiredNanos);
+        }
+
+        @Override
+        public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+            usageTotalMillis.add(elapsedBorrowedMillis);
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            timeouts.increment();
+        }
+    }
+
+    /**
+     * Instantané des métriques du pool
+     *
+     * bucketCounts contient un compteur par seau de {@link #BUCKET_BOUNDS_MICROS}, plus un seau de débordement final
+     */
+    public record Snapshot(
+            int active,
+            int idle,
+            int total,
+            int waitingThreads,
+            int maxSize,
+            long acquireCount,
+            long acquireTotalMicros,
+            long acquireMaxMicros,
+            long usageTotalMillis,
+            long timeouts,
+            long[] bucketCounts
+    ) {
+
+        /**
+         * Temps d'attente moyen pour obtenir une connexion, en microsecondes
+         */
+        public double acquireMeanMicros() {
+            return acquireCount == 0 ? 0.0 : (double) acquireTotalMicros / acquireCount;
+        }
+
+        /**
+         * Estimation d'un percentile du temps d'attente à partir de l'histogramme
+         * La valeur retournée est la borne supérieure du seau contenant le percentile demandé
+         */
+        public long acquirePercentileMicros(double percentile) {
+            if (acquireCount == 0) return 0;
+            long rank = (long) Math.ceil(percentile / 100.0 * acquireCount);
+            long cumulated = 0;
+            for (int i = 0; i < bucketCounts.length; i++) {
+                cumulated += bucketCounts[i];
+                if (cumulated >= rank) {
+                    return i < BUCKET_BOUNDS_MICROS.length ? BUCKET_BOUNDS_MICROS[i] : acquireMaxMicros;
+                }
+            }
+            return acquireMaxMicros;
+        }
+
+        @Override
+        public String toString() {
+            return "active=" + active
+                    + ", idle=" + idle
+                    + ", total=" + total + "/" + maxSize
+                    + ", waiting=" + waitingThreads
+                    + ", acquires=" + acquireCount
+                    + ", acquireMeanUs=" + String.format("%.1f", acquireMeanMicros())
+                    + ", acquireP95Us=" + acquirePercentileMicros(95)
+                    + ", acquireP99Us=" + acquirePercentileMicros(99)
+                    + ", acquireMaxUs=" + acquireMaxMicros
+                    + ", timeouts=" + timeouts;
+        }
+    }
+}
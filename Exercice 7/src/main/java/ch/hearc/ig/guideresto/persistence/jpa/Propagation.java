@@ -0,0 +1,26 @@
+package ch.hearc.ig.guideresto.persistence.jpa;
+
+/**
+ * Mode de propagation d'une transaction vis-à-vis d'une transaction déjà ouverte sur le thread courant
+ *
+ * Voir {@link TransactionManager} pour l'exécution des traitements
+ */
+public enum Propagation {
+
+    /**
+     * Rejoint la transaction courante si elle existe, sinon en ouvre une nouvelle
+     * Un traitement en écriture ne rejoint pas une transaction en lecture seule, il en ouvre une nouvelle comme REQUIRES_NEW
+     */
+    REQUIRED,
+
+    /**
+     * Ouvre toujours une nouvelle transaction avec son propre EntityManager
+     * La transaction courante éventuelle est suspendue jusqu'à la fin du traitement
+     */
+    REQUIRES_NEW,
+
+    /**
+     * Rejoint la transaction courante si elle existe, sinon exécute le traitement sans transaction
+     */
+    SUPPORTS
+}
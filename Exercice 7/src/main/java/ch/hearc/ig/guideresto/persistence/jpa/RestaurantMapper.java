@@ -2,19 +2,43 @@ package ch.hearc.ig.guideresto.persistence.jpa;
 
 import ch.hearc.ig.guideresto.business.Restaurant;
 import jakarta.persistence.EntityManager;
+import org.hibernate.jpa.HibernateHints;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Mapper JPA dédié à l'entité Restaurant
  *
  * Cette classe spécialise AbstractJpaMapper en fournissant la requête findAll
  * Les méthodes de recherche spécifiques utilisent les requêtes nommées définies sur l'entité Restaurant
+ * Les recherches de la console sont paginées par clé : chaque appel lit au plus une page de résultats
  *
  * Les méthodes exposées ici prennent un EntityManager en paramètre afin de s'exécuter dans une transaction
  * gérée à un niveau supérieur, typiquement dans la couche de services
  */
-public class RestaurantMapper extends AbstractJpaMapper<Restaurant> {
+public class RestaurantMapper extends AbstractJpaMapper<Restaurant> implements KeysetPageable<Restaurant> {
+
+    /**
+     * Plan de l'affichage détaillé : ville et type par jointure
+     * Les évaluations ne sont pas chargées : leurs compteurs viennent de la synthèse, les évaluations complètes
+     * sont lues page par page via {@link CompleteEvaluationMapper#findPageByRestaurant}
+     */
+    public static final FetchPlan DISPLAY = FetchPlan.graph(Restaurant.GRAPH_WITH_REFS);
+
+    /**
+     * Ordre de parcours utilisé par la pagination
+     */
+    private static final Keyset<Restaurant> KEYSET = new Keyset<>(
+            "select r from Restaurant r join fetch r.city c join fetch r.restaurantType t",
+            "r",
+            List.of(
+                    new Keyset.Column<>("name", Restaurant::getName),
+                    new Keyset.Column<>("id", Restaurant::getId)
+            )
+    );
 
     public RestaurantMapper() {
         super(Restaurant.class);
@@ -28,6 +52,45 @@ public class RestaurantMapper extends AbstractJpaMapper<Restaurant> {
         return "Restaurant.findAll";
     }
 
+    /**
+     * Pagination par (nom, numéro), avec la ville et le type nécessaires à l'affichage des listes
+     * Index associé : IX_RESTAURANTS_NOM_NUMERO
+     */
+    @Override
+    public Keyset<Restaurant> getKeyset() {
+        return KEYSET;
+    }
+
+    @Override
+    public Page<Restaurant> findPage(EntityManager em, List<?> after, int size) {
+        return findPage(em, KEYSET, null, Map.of(), after, size);
+    }
+
+    /**
+     * Page des restaurants dont le nom contient la sous-chaîne fournie, sans tenir compte de la casse
+     * Le motif commence par un joker, l'index (nom, numéro) est donc parcouru dans l'ordre et filtré,
+     * la lecture s'arrête dès que la page est remplie
+     */
+    public Page<Restaurant> findPageByNameContains(EntityManager em, String namePart, List<?> after, int size) {
+        return findPage(em, KEYSET, "upper(r.name) like :pattern escape '!'", Map.of("pattern", containsPattern(namePart)), after, size);
+    }
+
+    /**
+     * Page des restaurants dont le nom de ville contient la sous-chaîne fournie, sans tenir compte de la casse
+     * Index associé : IX_RESTAURANTS_VILLE_NOM pour la jointure depuis les villes retenues
+     */
+    public Page<Restaurant> findPageByCityNameContains(EntityManager em, String cityNamePart, List<?> after, int size) {
+        return findPage(em, KEYSET, "upper(c.cityName) like :pattern escape '!'", Map.of("pattern", containsPattern(cityNamePart)), after, size);
+    }
+
+    /**
+     * Page des restaurants d'un type donné
+     * Index associé : IX_RESTAURANTS_TYPE_NOM, chaque page est lue par un parcours d'index borné
+     */
+    public Page<Restaurant> findPageByTypeId(EntityManager em, int typeId, List<?> after, int size) {
+        return findPage(em, KEYSET, "t.id = :typeId", Map.of("typeId", typeId), after, size);
+    }
+
     /**
      * Recherche le premier restaurant dont le nom correspond exactement au paramètre fourni
      * La requête nommée gère la casse via upper
@@ -41,12 +104,53 @@ public class RestaurantMapper extends AbstractJpaMapper<Restaurant> {
     }
 
     /**
-     * Recherche les restaurants dont le nom de ville contient une sous-chaîne
-     * Le wildcard est construit côté Java pour permettre une recherche de type contains
+     * Retourne au plus size identifiants de restaurants supérieurs à after, par ordre croissant
+     * Permet de parcourir tous les restaurants par paquets sans charger les entités
+     */
+    public List<Integer> findIdsAfter(EntityManager em, int after, int size) {
+        return em.createNamedQuery("Restaurant.findIdsAfter", Integer.class)
+                .setParameter("after", after)
+                .setMaxResults(size)
+                .getResultList();
+    }
+
+    /**
+     * Parcourt le texte indexable de tous les restaurants via un curseur : numéro, nom, description, nom de ville
+     * Projection sans entité, le flux doit être fermé et parcouru pendant la transaction
+     */
+    public Stream<Object[]> streamSearchDocuments(EntityManager em) {
+        return em.createNamedQuery("Restaurant.findSearchDocuments", Object[].class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, DEFAULT_FETCH_SIZE)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+
+    /**
+     * Retourne le texte indexable des restaurants fournis, même projection que {@link #streamSearchDocuments}
+     */
+    public List<Object[]> findSearchDocuments(EntityManager em, Collection<Integer> restaurantIds) {
+        return em.createNamedQuery("Restaurant.findSearchDocumentsByIds", Object[].class)
+                .setParameter("restaurantIds", restaurantIds)
+                .getResultList();
+    }
+
+    /**
+     * Parcourt les textes complétés de tous les restaurants via un curseur : numéro, nom, NPA, nom de ville
+     * Projection sans entité, le flux doit être fermé et parcouru pendant la transaction
+     */
+    public Stream<Object[]> streamCompletions(EntityManager em) {
+        return em.createNamedQuery("Restaurant.findCompletions", Object[].class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, DEFAULT_FETCH_SIZE)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+
+    /**
+     * Retourne le nom, le NPA et la ville des restaurants fournis, même projection que {@link #streamCompletions}
      */
-    public List<Restaurant> findByCityNameContains(EntityManager em, String cityNamePart) {
-        return em.createNamedQuery("Restaurant.findByCityName", Restaurant.class)
-                .setParameter("cityName", "%" + cityNamePart + "%")
+    public List<Object[]> findCompletions(EntityManager em, Collection<Integer> restaurantIds) {
+        return em.createNamedQuery("Restaurant.findCompletionsByIds", Object[].class)
+                .setParameter("restaurantIds", restaurantIds)
                 .getResultList();
     }
 }
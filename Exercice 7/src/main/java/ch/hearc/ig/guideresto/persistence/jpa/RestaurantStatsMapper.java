@@ -0,0 +1,207 @@
+package ch.hearc.ig.guideresto.persistence.jpa;
+
+import ch.hearc.ig.guideresto.business.RestaurantStats;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import org.hibernate.Session;
+import org.hibernate.SharedSessionContract;
+import org.hibernate.StatelessSession;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Mapper JPA dédié à l'entité RestaurantStats
+ *
+ * La ligne d'un restaurant est créée dans la transaction qui crée le restaurant, voir {@link #create}
+ * Les compteurs sont ensuite incrémentés par un UPDATE relatif (likes = likes + :likes) : l'incrément est atomique,
+ * sans lecture préalable, et deux incréments concurrents s'attendent sur le verrou de la ligne
+ *
+ * Un MERGE (insert ... on conflict do update) n'est pas utilisé : sur Oracle, deux MERGE concurrents qui ne trouvent
+ * pas la ligne l'insèrent tous les deux et l'un échoue sur la clé primaire (ORA-00001)
+ * Une ligne absente, pour un restaurant antérieur à la table, n'est créée que sous le verrou de la ligne du restaurant
+ */
+public class RestaurantStatsMapper extends AbstractJpaMapper<RestaurantStats> {
+
+    private static final String CREATE = """
+            insert into RestaurantStats (restaurantId, likes, dislikes, reviews, grades, gradeSum)
+            values (:restaurantId, :likes, :dislikes, :reviews, :grades, :gradeSum)
+            """;
+
+    private static final String INCREMENT = """
+            update RestaurantStats s
+            set s.likes = s.likes + :likes,
+                s.dislikes = s.dislikes + :dislikes,
+                s.reviews = s.reviews + :reviews,
+                s.grades = s.grades + :grades,
+                s.gradeSum = s.gradeSum + :gradeSum
+            where s.restaurantId = :restaurantId
+            """;
+
+    private static final String LOCK_RESTAURANTS = "select r.id from Restaurant r where r.id in :restaurantIds";
+
+    public RestaurantStatsMapper() {
+        super(RestaurantStats.class);
+    }
+
+    /**
+     * Nom de la requête nommée utilisée pour charger toutes les statistiques
+     */
+    @Override
+    protected String getFindAllNamedQuery() {
+        return "RestaurantStats.findAll";
+    }
+
+    /**
+     * Crée la ligne d'un restaurant avec les compteurs fournis, {@link Delta#zero} pour un nouveau restaurant
+     * À utiliser dans la transaction qui crée le restaurant, une fois son INSERT envoyé (flush),
+     * ou sous le verrou de la ligne du restaurant, voir {@link #lockRestaurants}
+     */
+    public void create(EntityManager em, Delta initial) {
+        executeWithDelta(em.unwrap(Session.class), CREATE, initial);
+    }
+
+    /**
+     * Variante pour une session sans état, utilisée par les imports en masse
+     */
+    public void create(StatelessSession session, Delta initial) {
+        executeWithDelta(session, CREATE, initial);
+    }
+
+    /**
+     * Ajoute un écart aux compteurs d'un restaurant
+     * À utiliser dans la transaction qui écrit les évaluations correspondantes
+     */
+    public void increment(EntityManager em, Delta delta) {
+        executeIncrement(em.unwrap(Session.class), delta);
+    }
+
+    /**
+     * Variante pour une session sans état, utilisée par les imports en masse
+     */
+    public void increment(StatelessSession session, Delta delta) {
+        executeIncrement(session, delta);
+    }
+
+    /**
+     * Verrouille les lignes RESTAURANTS des restaurants fournis jusqu'à la fin de la transaction
+     * Toute création de ligne de statistiques hors création du restaurant se fait sous ce verrou,
+     * deux transactions ne peuvent donc pas créer la même ligne
+     */
+    public void lockRestaurants(EntityManager em, Collection<Integer> restaurantIds) {
+        executeLockRestaurants(em.unwrap(Session.class), restaurantIds);
+    }
+
+    private void executeIncrement(SharedSessionContract session, Delta delta) {
+        if (delta.isEmpty()) {
+            return;
+        }
+        if (executeWithDelta(session, INCREMENT, delta) == 0) {
+            // Restaurant antérieur à la table : la ligne est créée sous le verrou du restaurant, après une nouvelle tentative
+            executeLockRestaurants(session, List.of(delta.restaurantId()));
+            if (executeWithDelta(session, INCREMENT, delta) == 0) {
+                executeWithDelta(session, CREATE, delta);
+            }
+        }
+    }
+
+    private static void executeLockRestaurants(SharedSessionContract session, Collection<Integer> restaurantIds) {
+        session.createSelectionQuery(LOCK_RESTAURANTS, Integer.class)
+                .setParameter("restaurantIds", restaurantIds)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+
+    private static int executeWithDelta(SharedSessionContract session, String statement, Delta delta) {
+        return session.createMutationQuery(statement)
+                .setParameter("restaurantId", delta.restaurantId())
+                .setParameter("likes", delta.likes())
+                .setParameter("dislikes", delta.dislikes())
+                .setParameter("reviews", delta.reviews())
+                .setParameter("grades", delta.grades())
+                .setParameter("gradeSum", delta.gradeSum())
+                .executeUpdate();
+    }
+
+    /**
+     * Retourne les statistiques des restaurants fournis, les restaurants sans ligne sont absents du résultat
+     */
+    public List<RestaurantStats> findByRestaurantIds(EntityManager em, Collection<Integer> restaurantIds) {
+        return em.createNamedQuery("RestaurantStats.findByRestaurantIds", RestaurantStats.class)
+                .setParameter("restaurantIds", restaurantIds)
+                .getResultList();
+    }
+
+    /**
+     * Variante verrouillant les lignes lues jusqu'à la fin de la transaction (select ... for update)
+     * Les incréments concurrents sur ces restaurants attendent alors la fin de la transaction
+     */
+    public List<RestaurantStats> lockByRestaurantIds(EntityManager em, Collection<Integer> restaurantIds) {
+        return em.createNamedQuery("RestaurantStats.findByRestaurantIds", RestaurantStats.class)
+                .setParameter("restaurantIds", restaurantIds)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+
+    /**
+     * Supprime la ligne de statistiques d'un restaurant
+     */
+    public void deleteByRestaurantId(EntityManager em, int restaurantId) {
+        em.createQuery("delete from RestaurantStats s where s.restaurantId = :restaurantId")
+                .setParameter("restaurantId", restaurantId)
+                .executeUpdate();
+    }
+
+    /**
+     * Écart à ajouter aux compteurs d'un restaurant
+     */
+    public record Delta(int restaurantId, long likes, long dislikes, long reviews, long grades, long gradeSum) {
+
+        /**
+         * Compteurs à zéro, ceux d'un restaurant qui vient d'être créé
+         */
+        public static Delta zero(int restaurantId) {
+            return new Delta(restaurantId, 0, 0, 0, 0, 0);
+        }
+
+        /**
+         * Écart correspondant à une évaluation simple
+         */
+        public static Delta like(int restaurantId, boolean like) {
+            return new Delta(restaurantId, like ? 1 : 0, like ? 0 : 1, 0, 0, 0);
+        }
+
+        /**
+         * Écart correspondant à une évaluation complète et à ses notes
+         */
+        public static Delta review(int restaurantId, Collection<Integer> grades) {
+            long sum = 0;
+            for (Integer grade : grades) {
+                sum += grade;
+            }
+            return new Delta(restaurantId, 0, 0, 1, grades.size(), sum);
+        }
+
+        /**
+         * Cumule deux écarts du même restaurant
+         */
+        public Delta plus(Delta other) {
+            if (other.restaurantId != restaurantId) {
+                throw new IllegalArgumentException("Écarts de restaurants différents : " + restaurantId + " et " + other.restaurantId);
+            }
+            return new Delta(restaurantId,
+                    likes + other.likes,
+                    dislikes + other.dislikes,
+                    reviews + other.reviews,
+                    grades + other.grades,
+                    gradeSum + other.gradeSum);
+        }
+
+        /**
+         * Vrai si l'écart ne modifie aucun compteur
+         */
+        public boolean isEmpty() {
+            return likes == 0 && dislikes == 0 && reviews == 0 && grades == 0 && gradeSum == 0;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ch.hearc.ig.guideresto.persistence.jpa;
+
+/**
+ * Paramètres d'exécution d'un traitement transactionnel
+ *
+ * - propagation : comportement vis-à-vis d'une transaction déjà ouverte, voir {@link Propagation}
+ * - readOnly : session et connexion en lecture seule, sans flush au commit
+ * - timeoutSeconds : durée maximale de la transaction, 0 pour aucune limite
+ * - isolationLevel : niveau d'isolation JDBC (constantes Connection.TRANSACTION_*), ISOLATION_DEFAULT pour celui de la base
+ *
+ * Le délai et le niveau d'isolation ne s'appliquent qu'à l'ouverture d'une transaction
+ * Ils sont ignorés lorsque le traitement rejoint une transaction existante
+ */
+public record TransactionDefinition(
+        Propagation propagation,
+        boolean readOnly,
+        int timeoutSeconds,
+        int isolationLevel
+) {
+
+    /**
+     * Niveau d'isolation par défaut de la base, la connexion n'est pas modifiée
+     */
+    public static final int ISOLATION_DEFAULT = -1;
+
+    /**
+     * Transaction en lecture et écriture, rejoint la transaction courante si elle existe
+     */
+    public static final TransactionDefinition DEFAULT =
+            new TransactionDefinition(Propagation.REQUIRED, false, 0, ISOLATION_DEFAULT);
+
+    /**
+     * Transaction en lecture seule, rejoint la transaction courante si elle existe
+     */
+    public static final TransactionDefinition READ_ONLY =
+            new TransactionDefinition(Propagation.REQUIRED, true, 0, ISOLATION_DEFAULT);
+
+    public TransactionDefinition {
+        if (propagation == null) {
+            throw new IllegalArgumentException("La propagation est obligatoire");
+        }
+        if (timeoutSeconds < 0) {
+            throw new IllegalArgumentException("Délai de transaction invalide : " + timeoutSeconds);
+        }
+    }
+
+    public TransactionDefinition withPropagation(Propagation propagation) {
+        return new TransactionDefinition(propagation, readOnly, timeoutSeconds, isolationLevel);
+    }
+
+    public TransactionDefinition withTimeout(int timeoutSeconds) {
+        return new TransactionDefinition(propagation, readOnly, timeoutSeconds, isolationLevel);
+    }
+
+    public TransactionDefinition withIsolation(int isolationLevel) {
+        return new TransactionDefinition(propagation, readOnly, timeoutSeconds, isolationLevel);
+    }
+}
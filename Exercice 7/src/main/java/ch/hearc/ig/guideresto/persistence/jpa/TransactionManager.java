@@ -0,0 +1,229 @@
+package ch.hearc.ig.guideresto.persistence.jpa;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.RollbackException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Gestionnaire unique des transactions JPA de l'application
+ *
+ * Les transactions ouvertes sont mémorisées par thread sous forme de pile
+ * Un traitement imbriqué peut ainsi rejoindre la transaction englobante et réutiliser son EntityManager
+ * et sa connexion JDBC, au lieu d'en acquérir de nouveaux
+ *
+ * Règles appliquées
+ * - Un traitement qui rejoint une transaction et échoue la marque en annulation, le commit englobant est alors refusé
+ * - Un traitement en écriture ne rejoint jamais une transaction en lecture seule : celle-ci est suspendue
+ *   et le traitement s'exécute dans sa propre transaction, comme avec REQUIRES_NEW
+ *   Il tient alors une seconde connexion, la première restant attribuée à la transaction suspendue
+ * - Le délai d'une transaction est appliqué par Hibernate à chaque requête JDBC via setQueryTimeout,
+ *   le pilote annule la requête en cours lorsque le délai restant est dépassé
+ * - L'état de la connexion (lecture seule, isolation) est réinitialisé par le pool à la restitution
+ * - Les actions enregistrées par {@link #afterCommit} ne sont exécutées qu'après le commit de la transaction
+ *   en écriture qui porte le traitement, elles sont abandonnées si elle est annulée
+ *
+ * Limite : {@link ch.hearc.ig.guideresto.services.DatabaseBulkhead} accorde autant de permis que le pool compte
+ * de connexions, en supposant une connexion par traitement
+ * Une écriture imbriquée dans une transaction en lecture seule en demande deux : si tous les détenteurs de permis
+ * le font en même temps, chacun attend la seconde jusqu'au délai d'acquisition du pool
+ * Aucun service ne le fait aujourd'hui, un service qui le ferait doit réserver cette marge
+ */
+public final class TransactionManager {
+
+    private static final Logger logger = LogManager.getLogger(TransactionManager.class);
+
+    /**
+     * Transactions ouvertes sur le thread courant, la plus récente en tête
+     */
+    private static final ThreadLocal<Deque<TransactionContext>> contexts = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private TransactionManager() {
+    }
+
+    /**
+     * Exécute un traitement selon la définition fournie et retourne son résultat
+     * Un traitement en écriture appelé depuis une transaction en lecture seule ouvre sa propre transaction,
+     * validée ou annulée indépendamment de la transaction suspendue
+     */
+    public static <R> R execute(TransactionDefinition definition, Function<EntityManager, R> work) {
+        Deque<TransactionContext> stack = contexts.get();
+        TransactionContext current = stack.peek();
+
+        if (current != null && current.readOnly() && !definition.readOnly()
+                && definition.propagation() != Propagation.REQUIRES_NEW) {
+            return runInNewContext(stack, definition, work, true);
+        }
+
+        return switch (definition.propagation()) {
+            case REQUIRED -> current != null && current.isTransactional()
+                    ? join(current, work)
+                    : runInNewContext(stack, definition, work, true);
+            case REQUIRES_NEW -> runInNewContext(stack, definition, work, true);
+            case SUPPORTS -> current != null
+                    ? join(current, work)
+                    : runInNewContext(stack, definition, work, false);
+        };
+    }
+
+    /**
+     * Retourne l'EntityManager du traitement en cours sur le thread courant, ou null en dehors de tout traitement
+     */
+    public static EntityManager currentEntityManager() {
+        TransactionContext current = contexts.get().peek();
+        return current != null ? current.em() : null;
+    }
+
+    /**
+     * Indique si une transaction est ouverte sur le thread courant
+     */
+    public static boolean isTransactionActive() {
+        TransactionContext current = contexts.get().peek();
+        return current != null && current.isTransactional();
+    }
+
+    /**
+     * Indique si un traitement en écriture appelé maintenant rejoindrait une transaction ouverte
+     * Faux hors transaction et dans une transaction en lecture seule, où l'écriture ouvre sa propre transaction
+     */
+    public static boolean isWriteTransactionActive() {
+        TransactionContext current = contexts.get().peek();
+        return current != null && current.isTransactional() && !current.readOnly();
+    }
+
+    /**
+     * Exécute une action une fois la transaction en écriture en cours validée, immédiatement sinon
+     *
+     * L'action est rattachée à la transaction en écriture qui porte le traitement courant : celle qu'il a ouverte ou rejointe
+     * Elle s'exécute après son commit et la fermeture de son EntityManager, et n'est jamais exécutée si elle est annulée
+     * Hors transaction ou dans une transaction en lecture seule, l'écriture à publier a été validée par sa propre
+     * transaction, déjà terminée : l'action s'exécute immédiatement et ne dépend pas de l'issue de la lecture englobante
+     * Destiné à publier hors de la base, dans un index en mémoire par exemple, des écritures devenues visibles
+     * Une action en échec est journalisée sans remettre en cause le commit ni les actions suivantes
+     */
+    public static void afterCommit(Runnable action) {
+        if (!isWriteTransactionActive()) {
+            action.run();
+            return;
+        }
+        contexts.get().peek().afterCommit().add(action);
+    }
+
+    /**
+     * Exécute le traitement dans le contexte existant
+     */
+    private static <R> R join(TransactionContext current, Function<EntityManager, R> work) {
+        try {
+            return work.apply(current.em());
+        } catch (RuntimeException ex) {
+            if (current.isTransactional() && current.tx().isActive()) {
+                current.tx().setRollbackOnly();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Ouvre un nouvel EntityManager, avec ou sans transaction, et exécute le traitement
+     * La transaction est validée si aucune exception n'est levée et qu'elle n'a pas été marquée en annulation
+     */
+    private static <R> R runInNewContext(
+            Deque<TransactionContext> stack,
+            TransactionDefinition definition,
+            Function<EntityManager, R> work,
+            boolean transactional
+    ) {
+        EntityManager em = JpaUtils.getEntityManager();
+        Session session = em.unwrap(Session.class);
+        if (definition.readOnly()) {
+            // Pas de copie de l'état hydraté pour la détection des modifications, pas de flush au commit
+            session.setDefaultReadOnly(true);
+            session.setHibernateFlushMode(FlushMode.MANUAL);
+        }
+
+        Transaction tx = transactional ? session.getTransaction() : null;
+        TransactionContext context = new TransactionContext(em, tx, definition.readOnly(), new ArrayList<>());
+        R result;
+        try {
+            if (tx != null) {
+                if (definition.timeoutSeconds() > 0) {
+                    tx.setTimeout(definition.timeoutSeconds());
+                }
+                tx.begin();
+                configureConnection(session, definition);
+            }
+
+            stack.push(context);
+            try {
+                result = work.apply(em);
+            } finally {
+                stack.pop();
+            }
+
+            if (tx != null) {
+                if (tx.getRollbackOnly()) {
+                    tx.rollback();
+                    throw new RollbackException("Transaction annulée : un traitement imbriqué a échoué");
+                }
+                tx.commit();
+            }
+        } catch (RuntimeException ex) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw ex;
+        } finally {
+            em.close();
+            if (stack.isEmpty()) {
+                contexts.remove();
+            }
+        }
+
+        for (Runnable action : context.afterCommit()) {
+            try {
+                action.run();
+            } catch (RuntimeException ex) {
+                logger.warn("Action après commit en échec", ex);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Applique les réglages de connexion de la définition en début de transaction, avant toute requête
+     */
+    private static void configureConnection(Session session, TransactionDefinition definition) {
+        if (!definition.readOnly() && definition.isolationLevel() == TransactionDefinition.ISOLATION_DEFAULT) {
+            return;
+        }
+        session.doWork(connection -> {
+            if (definition.readOnly()) {
+                connection.setReadOnly(true);
+            }
+            if (definition.isolationLevel() != TransactionDefinition.ISOLATION_DEFAULT) {
+                connection.setTransactionIsolation(definition.isolationLevel());
+            }
+        });
+    }
+
+    /**
+     * Traitement en cours sur un thread
+     * tx est null pour un traitement exécuté sans transaction (SUPPORTS hors transaction)
+     * afterCommit contient les actions à exécuter après le commit de tx
+     */
+    private record TransactionContext(EntityManager em, Transaction tx, boolean readOnly, List<Runnable> afterCommit) {
+
+        boolean isTransactional() {
+            return tx != null;
+        }
+    }
+}
@@ -5,11 +5,21 @@ import ch.hearc.ig.guideresto.services.ConcurrentModificationException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
 import java.net.Inet4Address;
 import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+import ch.hearc.ig.guideresto.persistence.jpa.EvaluationScope;
 import ch.hearc.ig.guideresto.persistence.jpa.JpaUtils;
+import ch.hearc.ig.guideresto.persistence.jpa.Page;
 import ch.hearc.ig.guideresto.services.*;
 
 /**
@@ -29,9 +39,13 @@ public class Application {
     private static final RestaurantService restaurantService = new RestaurantService();
     private static final CityService cityService = new CityService();
     private static final RestaurantTypeService restaurantTypeService = new RestaurantTypeService();
-    private static final EvaluationCriteriaService criteriaService = new EvaluationCriteriaService();
     private static final EvaluationService evaluationService = new EvaluationService();
     private static final BootstrapService bootstrapService = new BootstrapService();
+    private static final BulkImportService bulkImportService = new BulkImportService();
+    private static final RestaurantStatsService restaurantStatsService = new RestaurantStatsService();
+    private static final ActivityFeedService activityFeedService = new ActivityFeedService();
+    private static final RestaurantSearchService restaurantSearchService = new RestaurantSearchService();
+    private static final AutocompleteService autocompleteService = new AutocompleteService();
 
     /*
         Ressources de présentation
@@ -40,12 +54,54 @@ public class Application {
     private static Scanner scanner;
     private static final Logger logger = LogManager.getLogger(Application.class);
 
+    /**
+     * Nombre d'éléments affichés par page dans les listes paginées
+     */
+    private static final int PAGE_SIZE = 20;
+
+    /**
+     * Nombre d'évaluations complètes affichées par page sur la fiche d'un restaurant
+     */
+    private static final int REVIEW_PAGE_SIZE = 5;
+
+    /**
+     * Nombre de restaurants affichés par une recherche plein texte
+     */
+    private static final int SEARCH_RESULTS = 10;
+
+    /**
+     * Nombre de propositions affichées par l'autocomplétion des sélections de restaurant, de ville et de type
+     */
+    private static final int SUGGESTIONS = 10;
+
     public static void main(String[] args) {
         scanner = new Scanner(System.in);
 
-        // Initialisation et démonstration de démarrage
+        // Construction et préchauffage de JPA en arrière-plan pendant l'affichage du menu
+        JpaUtils.startAsync();
+
+        // Construction des index de recherche plein texte et d'autocomplétion en arrière-plan
+        restaurantSearchService.rebuildAsync().exceptionally(ex -> {
+            logger.error("Construction de l'index de recherche impossible", ex);
+            return 0;
+        });
+        autocompleteService.rebuildAsync().exceptionally(ex -> {
+            logger.error("Construction des index d'autocomplétion impossible", ex);
+            return 0;
+        });
+
+        // Écriture différée des likes : relecture du journal laissé par l'exécution précédente
+        if (LikeWriteBehind.isEnabled()) {
+            LikeWriteBehind.shared();
+        }
+
+        // Démonstration de démarrage, ignorée en mode production
         // Les transactions nécessaires sont gérées côté service
-        bootstrapService.runOrmBootstrapAndBasicCrudDemo(logger);
+        if (isProductionMode(args)) {
+            logger.info("Mode production : démonstration de démarrage ignorée");
+        } else {
+            bootstrapService.runOrmBootstrapAndBasicCrudDemo(logger);
+        }
 
         System.out.println("Bienvenue dans GuideResto ! Que souhaitez-vous faire ?");
         int choice;
@@ -57,6 +113,10 @@ public class Application {
                 proceedMainMenu(choice);
             } while (choice != 0);
         } finally {
+            // Écriture des likes en attente, puis attente des traitements asynchrones en cours avant la fermeture de JPA
+            LikeWriteBehind.closeShared();
+            DatabaseBulkhead.closeShared();
+
             // Libération des ressources JPA en fin d'application
             // Fermeture de l'EntityManagerFactory partagée
             JpaUtils.close();
@@ -66,6 +126,18 @@ public class Application {
         }
     }
 
+    /**
+     * Indique si l'application est lancée en mode production
+     * Le mode est activé par l'argument --production ou la propriété système guideresto.mode=production
+     *
+     * @param args arguments de la ligne de commande
+     * @return true en mode production
+     */
+    private static boolean isProductionMode(String[] args) {
+        return Arrays.asList(args).contains("--production")
+                || "production".equalsIgnoreCase(System.getProperty("guideresto.mode"));
+    }
+
     /**
      * Affiche le menu principal
      */
@@ -77,6 +149,10 @@ public class Application {
         System.out.println("3. Rechercher un restaurant par ville");
         System.out.println("4. Rechercher un restaurant par son type de cuisine");
         System.out.println("5. Saisir un nouveau restaurant");
+        System.out.println("6. Importer des données partenaires (CSV)");
+        System.out.println("7. Réconcilier les statistiques des restaurants");
+        System.out.println("8. Afficher l'activité récente");
+        System.out.println("9. Recherche plein texte (nom, description, ville)");
         System.out.println("0. Quitter l'application");
     }
 
@@ -102,6 +178,18 @@ public class Application {
             case 5:
                 addNewRestaurant();
                 break;
+            case 6:
+                importPartnerData();
+                break;
+            case 7:
+                reconcileRestaurantStats();
+                break;
+            case 8:
+                showActivityFeed();
+                break;
+            case 9:
+                searchRestaurantFullText();
+                break;
             case 0:
                 System.out.println("Au revoir !");
                 break;
@@ -112,17 +200,11 @@ public class Application {
     }
 
     /**
-     * Affiche une liste de restaurants et permet d'en sélectionner un par son nom exact
+     * Affiche une ligne par restaurant : nom, rue, NPA et ville
      *
      * @param restaurants restaurants à afficher
-     * @return restaurant sélectionné ou null si aucun choix
      */
-    private static Restaurant pickRestaurant(Set<Restaurant> restaurants) {
-        if (restaurants.isEmpty()) {
-            System.out.println("Aucun restaurant n'a été trouvé !");
-            return null;
-        }
-
+    private static void printRestaurants(Collection<Restaurant> restaurants) {
         for (Restaurant currentRest : restaurants) {
             StringBuilder result = new StringBuilder();
             result.append("\"").append(currentRest.getName()).append("\"")
@@ -139,11 +221,66 @@ public class Application {
 
             System.out.println(result);
         }
+    }
 
-        System.out.println("Veuillez saisir le nom exact du restaurant dont vous voulez voir le détail, ou appuyez sur Enter pour revenir en arrière");
-        String choice = readString();
+    /**
+     * Navigation page par page dans une liste paginée par clé
+     *
+     * "+" affiche la page suivante, "-" la page précédente, Entrée revient en arrière
+     * Toute autre saisie est transmise au sélecteur, qui retourne l'élément choisi ou null si rien ne correspond
+     * La clé de début de chaque page vue est mémorisée, le retour en arrière relit donc la page sans OFFSET
+     *
+     * @param loader chargement d'une page à partir de la clé de début, null pour la première page
+     * @param printer affichage des éléments d'une page
+     * @param prompt invitation affichée sous chaque page
+     * @param selector sélection d'un élément à partir de la page courante et de la saisie
+     * @return élément sélectionné ou null si l'utilisateur revient en arrière
+     */
+    private static <T> T browsePages(
+            Function<List<?>, Page<T>> loader,
+            Consumer<List<T>> printer,
+            String prompt,
+            BiFunction<List<T>, String, T> selector
+    ) {
+        List<List<?>> startKeys = new ArrayList<>();
+        startKeys.add(null);
+
+        while (true) {
+            Page<T> page = loader.apply(startKeys.getLast());
+            if (page.isEmpty()) {
+                System.out.println("Aucun élément à afficher.");
+            }
+            printer.accept(page.items());
+
+            StringBuilder navigation = new StringBuilder("-- Page ").append(startKeys.size());
+            if (startKeys.size() > 1) {
+                navigation.append(" | \"-\" page précédente");
+            }
+            if (page.hasNext()) {
+                navigation.append(" | \"+\" page suivante");
+            }
+            System.out.println(navigation);
+            System.out.println(prompt);
 
-        return searchRestaurantByName(restaurants, choice);
+            String choice = readString();
+            if (choice.isEmpty()) {
+                return null;
+            }
+            if (choice.equals("+") && page.hasNext()) {
+                startKeys.add(page.nextKey());
+                continue;
+            }
+            if (choice.equals("-") && startKeys.size() > 1) {
+                startKeys.removeLast();
+                continue;
+            }
+
+            T selected = selector.apply(page.items(), choice);
+            if (selected != null) {
+                return selected;
+            }
+            System.out.println("Aucun élément ne correspond à \"" + choice + "\"");
+        }
     }
 
     /**
@@ -152,122 +289,268 @@ public class Application {
     private static void showRestaurantsList() {
         System.out.println("Liste des restaurants : ");
 
-        Restaurant restaurant = pickRestaurant(loadAllRestaurants());
-        if (restaurant != null) {
-            showRestaurant(restaurant);
-        }
+        browseRestaurants(key -> restaurantService.findPage(key, PAGE_SIZE));
     }
 
     /**
-     * Recherche des restaurants par sous-chaîne sur le nom puis ouvre la fiche d'un restaurant sélectionné
+     * Recherche des restaurants par nom puis ouvre la fiche d'un restaurant sélectionné
+     * Les restaurants dont le nom ou un mot du nom commence par la saisie sont proposés par l'autocomplétion, sans accès à la base
+     * À défaut de proposition, ou à la demande, le nom est recherché par sous-chaîne en base et parcouru page par page
      */
     private static void searchRestaurantByName() {
-        System.out.println("Veuillez entrer une partie du nom recherché : ");
+        System.out.println("Veuillez entrer le début ou une partie du nom recherché : ");
         String research = readString();
 
-        Set<Restaurant> fullList = loadAllRestaurants();
-        Set<Restaurant> filteredList = new LinkedHashSet<>();
-
-        for (Restaurant currentRestaurant : fullList) {
-            if (currentRestaurant.getName().toUpperCase().contains(research.toUpperCase())) {
-                filteredList.add(currentRestaurant);
+        List<PrefixIndex.Completion> suggestions = autocompleteService.suggestRestaurants(research, SUGGESTIONS);
+        if (!suggestions.isEmpty()) {
+            PrefixIndex.Completion chosen = chooseCompletion(suggestions,
+                    "ou 0 pour afficher tous les restaurants dont le nom contient \"" + research + "\"");
+            if (chosen != null) {
+                showRestaurant(restaurantService.loadRestaurantForDisplay(chosen.id()));
+                return;
             }
         }
 
-        Restaurant restaurant = pickRestaurant(filteredList);
-        if (restaurant != null) {
-            showRestaurant(restaurant);
-        }
+        browseRestaurants(key -> restaurantService.searchByName(research, key, PAGE_SIZE));
     }
 
     /**
      * Recherche des restaurants par sous-chaîne sur le nom de ville puis ouvre la fiche d'un restaurant sélectionné
+     * Le filtre est appliqué en base, les résultats sont parcourus page par page
      */
     private static void searchRestaurantByCity() {
         System.out.println("Veuillez entrer une partie du nom de la ville désirée : ");
         String research = readString();
 
-        Set<Restaurant> fullList = loadAllRestaurants();
-        Set<Restaurant> filteredList = new LinkedHashSet<>();
+        browseRestaurants(key -> restaurantService.searchByCityName(research, key, PAGE_SIZE));
+    }
+
+    /**
+     * Parcourt page par page le résultat d'une recherche de restaurants puis ouvre la fiche d'un restaurant sélectionné
+     *
+     * @param loader chargement d'une page de résultats à partir de la clé de début
+     */
+    private static void browseRestaurants(Function<List<?>, Page<Restaurant>> loader) {
+        Restaurant restaurant = browsePages(
+                loader,
+                Application::printRestaurants,
+                "Veuillez saisir le nom exact du restaurant dont vous voulez voir le détail, ou appuyez sur Enter pour revenir en arrière",
+                Application::searchRestaurantByName
+        );
+        if (restaurant != null) {
+            showRestaurant(restaurant);
+        }
+    }
 
-        for (Restaurant currentRestaurant : fullList) {
-            City city = currentRestaurant.getCity();
-            if (city != null && city.getCityName() != null
-                    && city.getCityName().toUpperCase().contains(research.toUpperCase())) {
-                filteredList.add(currentRestaurant);
+    /**
+     * Affiche les likes, dislikes et évaluations les plus récents, de tous les restaurants, d'une ville ou d'un type,
+     * puis ouvre la fiche d'un restaurant sélectionné
+     */
+    private static void showActivityFeed() {
+        System.out.println("1. Tous les restaurants");
+        System.out.println("2. Les restaurants d'une ville");
+        System.out.println("3. Les restaurants d'un type de cuisine");
+        EvaluationScope scope;
+        switch (readInt()) {
+            case 1 -> scope = EvaluationScope.all();
+            case 2 -> {
+                System.out.println("Veuillez entrer le NPA de la ville : ");
+                City city = cityService.findByZipCode(readString());
+                if (city == null) {
+                    System.out.println("Ville inconnue");
+                    return;
+                }
+                scope = EvaluationScope.city(city.getId());
+            }
+            case 3 -> {
+                RestaurantType type = pickRestaurantType(loadAllRestaurantTypes());
+                if (type == null) {
+                    System.out.println("Type inconnu");
+                    return;
+                }
+                scope = EvaluationScope.type(type.getId());
+            }
+            default -> {
+                System.out.println("Erreur : saisie incorrecte");
+                return;
             }
         }
 
-        Restaurant restaurant = pickRestaurant(filteredList);
-        if (restaurant != null) {
-            showRestaurant(restaurant);
+        Evaluation selected = browsePages(
+                key -> activityFeedService.findLatest(scope, key, PAGE_SIZE),
+                events -> events.forEach(e -> System.out.println(getActivityDescription(e))),
+                "Veuillez saisir le nom exact d'un restaurant pour voir son détail, ou appuyez sur Enter pour revenir en arrière",
+                (events, name) -> events.stream()
+                        .filter(e -> e.getRestaurant().getName().equalsIgnoreCase(name))
+                        .findFirst()
+                        .orElse(null)
+        );
+        if (selected != null) {
+            showRestaurant(selected.getRestaurant());
         }
     }
 
     /**
-     * Permet de sélectionner une ville existante par NPA ou d'en créer une nouvelle
-     *
-     * @param cities villes disponibles
-     * @return ville sélectionnée ou créée, ou null si aucun choix valide
+     * Recherche plein texte sur le nom, la description et la ville, puis ouvre la fiche d'un restaurant sélectionné
+     * La recherche ignore la casse et les accents, les restaurants sont classés du plus pertinent au moins pertinent
      */
-    private static City pickCity(Set<City> cities) {
-        System.out.println("Voici la liste des villes possibles, veuillez entrer le NPA de la ville désirée : ");
+    private static void searchRestaurantFullText() {
+        System.out.println("Veuillez entrer les mots recherchés : ");
+        List<RestaurantSearchIndex.SearchHit> hits = restaurantSearchService.search(readString(), SEARCH_RESULTS);
+        if (hits.isEmpty()) {
+            System.out.println("Aucun restaurant n'a été trouvé !");
+            return;
+        }
+        for (int i = 0; i < hits.size(); i++) {
+            System.out.println((i + 1) + ". " + hits.get(i).name() + " (" + hits.get(i).cityName() + ")");
+        }
+        System.out.println("Veuillez saisir le numéro du restaurant dont vous voulez voir le détail, ou 0 pour revenir en arrière");
+        int choice = readInt();
+        if (choice >= 1 && choice <= hits.size()) {
+            showRestaurant(restaurantService.loadRestaurantForDisplay(hits.get(choice - 1).restaurantId()));
+        }
+    }
 
-        for (City currentCity : cities) {
-            System.out.println(currentCity.getZipCode() + " " + currentCity.getCityName());
+    /**
+     * Affiche des propositions d'autocomplétion numérotées et lit le numéro choisi
+     *
+     * @param suggestions propositions à afficher
+     * @param alternative signification de 0, complète l'invitation
+     * @return proposition choisie, ou null pour 0 ou un numéro hors liste
+     */
+    private static PrefixIndex.Completion chooseCompletion(List<PrefixIndex.Completion> suggestions, String alternative) {
+        for (int i = 0; i < suggestions.size(); i++) {
+            PrefixIndex.Completion suggestion = suggestions.get(i);
+            System.out.println((i + 1) + ". " + suggestion.label() + " (" + suggestion.detail() + ")");
         }
-        System.out.println("Entrez \"NEW\" pour créer une nouvelle ville");
-        String choice = readString();
+        System.out.println("Veuillez saisir le numéro de votre choix, " + alternative);
+        int choice = readInt();
+        return choice >= 1 && choice <= suggestions.size() ? suggestions.get(choice - 1) : null;
+    }
 
+    /**
+     * Construit la ligne du fil d'activité correspondant à une évaluation
+     *
+     * @param evaluation like, dislike ou évaluation complète, avec son restaurant
+     * @return description sur une ligne
+     */
+    private static String getActivityDescription(Evaluation evaluation) {
+        String what = switch (evaluation) {
+            case BasicEvaluation b -> Boolean.TRUE.equals(b.getLikeRestaurant()) ? "J'aime" : "Je n'aime pas";
+            case CompleteEvaluation c -> "Evaluation de " + c.getUsername();
+            default -> "Evaluation";
+        };
+        return evaluation.getVisitDate() + " | " + evaluation.getRestaurant().getName() + " | " + what;
+    }
+
+    /**
+     * Permet de sélectionner une ville existante par NPA ou par nom, ou d'en créer une nouvelle
+     * Les villes dont le NPA, le nom ou un mot du nom commence par la saisie sont proposées par l'autocomplétion,
+     * une seule proposition est retenue directement
+     * Sans saisie, les villes sont affichées page par page, le NPA saisi est alors recherché en base et pas seulement dans la page
+     *
+     * @param firstPage première page de villes, chargée seulement si la liste est parcourue
+     * @return ville sélectionnée ou créée, ou null si aucun choix valide
+     */
+    private static City pickCity(Supplier<Page<City>> firstPage) {
+        System.out.println("Veuillez entrer le NPA ou le début du nom de la ville désirée, \"NEW\" pour créer une nouvelle ville,"
+                + " ou appuyez sur Enter pour parcourir la liste des villes : ");
+        String choice = readString();
         if (choice.equals("NEW")) {
-            System.out.println("Veuillez entrer le NPA de la nouvelle ville : ");
-            String zip = readString();
-            System.out.println("Veuillez entrer le nom de la nouvelle ville : ");
-            String name = readString();
-            return cityService.createCity(zip, name);
+            return createCity();
         }
+        if (!choice.isEmpty()) {
+            List<PrefixIndex.Completion> suggestions = autocompleteService.suggestCities(choice, SUGGESTIONS);
+            if (suggestions.isEmpty()) {
+                // Index pas encore construit ou ville absente : le NPA est recherché en base
+                return cityService.findByZipCode(choice);
+            }
+            PrefixIndex.Completion chosen = suggestions.size() == 1
+                    ? suggestions.getFirst()
+                    : chooseCompletion(suggestions, "ou 0 pour revenir en arrière");
+            if (chosen == null) {
+                return null;
+            }
+            System.out.println("Ville sélectionnée : " + chosen.detail() + " " + chosen.label());
+            return cityService.findById(chosen.id());
+        }
+
+        System.out.println("Voici la liste des villes possibles, veuillez entrer le NPA de la ville désirée : ");
+        return browsePages(
+                key -> key == null ? firstPage.get() : cityService.findPage(key, PAGE_SIZE),
+                cities -> {
+                    for (City currentCity : cities) {
+                        System.out.println(currentCity.getZipCode() + " " + currentCity.getCityName());
+                    }
+                },
+                "Entrez le NPA de la ville, ou \"NEW\" pour créer une nouvelle ville",
+                (cities, zipCode) -> zipCode.equals("NEW") ? createCity() : cityService.findByZipCode(zipCode)
+        );
+    }
 
-        return searchCityByZipCode(cities, choice);
+    /**
+     * Saisie console et création d'une ville
+     *
+     * @return ville créée
+     */
+    private static City createCity() {
+        System.out.println("Veuillez entrer le NPA de la nouvelle ville : ");
+        String zip = readString();
+        System.out.println("Veuillez entrer le nom de la nouvelle ville : ");
+        String name = readString();
+        return cityService.createCity(zip, name);
     }
 
     /**
      * Permet de sélectionner un type de restaurant existant par libellé
+     * Un libellé exact est retenu directement, sinon les types dont le libellé commence par la saisie sont proposés
+     * Sans saisie, la liste des types est affichée avant une nouvelle saisie
      *
      * @param types types disponibles
      * @return type sélectionné ou null si aucun choix valide
      */
     private static RestaurantType pickRestaurantType(Set<RestaurantType> types) {
-        System.out.println("Voici la liste des types possibles, veuillez entrer le libellé exact du type désiré : ");
-        for (RestaurantType currentType : types) {
-            System.out.println("\"" + currentType.getLabel() + "\" : " + currentType.getDescription());
-        }
+        System.out.println("Veuillez entrer le début du libellé du type désiré, ou appuyez sur Enter pour afficher la liste des types : ");
         String choice = readString();
+        if (choice.isEmpty()) {
+            for (RestaurantType currentType : types) {
+                System.out.println("\"" + currentType.getLabel() + "\" : " + currentType.getDescription());
+            }
+            System.out.println("Veuillez entrer le libellé ou le début du libellé du type désiré : ");
+            choice = readString();
+        }
+
+        RestaurantType exact = searchTypeByLabel(types, choice);
+        if (exact != null) {
+            return exact;
+        }
 
-        return searchTypeByLabel(types, choice);
+        // Quelques types seulement : index construit à chaque sélection
+        PrefixIndex labels = new PrefixIndex();
+        labels.putAll(types.stream()
+                .map(t -> new PrefixIndex.Entry(t.getId(), t.getLabel(), t.getDescription(), List.of(t.getLabel())))
+                .toList());
+        List<PrefixIndex.Completion> suggestions = labels.complete(choice, SUGGESTIONS);
+        PrefixIndex.Completion chosen = suggestions.size() == 1
+                ? suggestions.getFirst()
+                : suggestions.isEmpty() ? null : chooseCompletion(suggestions, "ou 0 pour revenir en arrière");
+        if (chosen == null) {
+            return null;
+        }
+        return types.stream().filter(t -> t.getId() == chosen.id()).findFirst().orElse(null);
     }
 
     /**
      * Recherche de restaurants par type sélectionné puis ouverture de la fiche d'un restaurant
      */
     private static void searchRestaurantByType() {
-        Set<Restaurant> fullList = loadAllRestaurants();
-        Set<Restaurant> filteredList = new LinkedHashSet<>();
-
         RestaurantType chosenType = pickRestaurantType(loadAllRestaurantTypes());
-
-        if (chosenType != null) {
-            for (Restaurant currentRestaurant : fullList) {
-                if (currentRestaurant.getType() != null
-                        && Objects.equals(currentRestaurant.getType().getId(), chosenType.getId())) {
-                    filteredList.add(currentRestaurant);
-                }
-            }
+        if (chosenType == null) {
+            System.out.println("Aucun restaurant n'a été trouvé !");
+            return;
         }
 
-        Restaurant restaurant = pickRestaurant(filteredList);
-        if (restaurant != null) {
-            showRestaurant(restaurant);
-        }
+        browseRestaurants(key -> restaurantService.searchByType(chosenType.getId(), key, PAGE_SIZE));
     }
 
     /**
@@ -275,6 +558,10 @@ public class Application {
      * La création est déléguée au service qui gère la transaction
      */
     private static void addNewRestaurant() {
+        // Chargement des villes et des types en parallèle pendant la saisie des premiers champs
+        CompletableFuture<Page<City>> cities = cityService.findPageAsync(null, PAGE_SIZE);
+        CompletableFuture<List<RestaurantType>> types = restaurantTypeService.findAllAsync();
+
         System.out.println("Vous allez ajouter un nouveau restaurant !");
         System.out.println("Quel est son nom ?");
         String name = readString();
@@ -290,12 +577,12 @@ public class Application {
 
         City selectedCity;
         do {
-            selectedCity = pickCity(loadAllCities());
+            selectedCity = pickCity(cities::join);
         } while (selectedCity == null);
 
         RestaurantType selectedType;
         do {
-            selectedType = pickRestaurantType(loadAllRestaurantTypes());
+            selectedType = pickRestaurantType(new LinkedHashSet<>(types.join()));
         } while (selectedType == null);
 
         Restaurant created = restaurantService.createRestaurantWithRefs(
@@ -312,89 +599,126 @@ public class Application {
 
     /**
      * Affiche la fiche détaillée d'un restaurant et son menu d'actions
-     * Le restaurant est rechargé à chaque itération afin d'afficher des données à jour
+     * Le restaurant est rechargé après chaque action afin d'afficher des données à jour
+     * Seule la première page d'évaluations complètes est affichée, les suivantes sont chargées à la demande
      *
      * @param restaurant restaurant à afficher
      */
     private static void showRestaurant(Restaurant restaurant) {
 
         int choice;
+        boolean refresh = true;
+        List<?> nextReviews = null;
         do {
-            // Rechargement systématique pour obtenir la version courante et les associations nécessaires
-            restaurant = restaurantService.loadRestaurantForDisplay(restaurant.getId());
-
-            System.out.println("Affichage d'un restaurant : ");
-            StringBuilder sb = new StringBuilder();
-            sb.append(restaurant.getName()).append("\n");
-            sb.append("Version: ").append(restaurant.getVersion()).append("\n");
-            sb.append(restaurant.getDescription()).append("\n");
-            sb.append(restaurant.getType().getLabel()).append("\n");
-            sb.append(restaurant.getWebsite()).append("\n");
-            sb.append(restaurant.getAddress().getStreet()).append(", ");
-
-            City c = restaurant.getCity();
-            if (c != null) {
-                sb.append(c.getZipCode()).append(" ").append(c.getCityName()).append("\n");
-            } else {
-                sb.append("(ville non renseignée)\n");
+            if (refresh) {
+                restaurant = printRestaurantSheet(restaurant.getId());
+                nextReviews = printReviewPage(restaurant.getId(), null);
             }
 
-            sb.append("Nombre de likes : ").append(countLikes(restaurant.getEvaluations(), true)).append("\n");
-            sb.append("Nombre de dislikes : ").append(countLikes(restaurant.getEvaluations(), false)).append("\n");
-            sb.append("\nEvaluations reçues : ").append("\n");
+            showRestaurantMenu(nextReviews != null);
+            choice = readInt();
 
-            String text;
-            for (Evaluation currentEval : restaurant.getEvaluations()) {
-                text = getCompleteEvaluationDescription(currentEval);
-                if (text != null) {
-                    sb.append(text).append("\n");
+            if (choice == 7) {
+                // Page suivante affichée sous la fiche courante, sans la recharger
+                refresh = false;
+                if (nextReviews != null) {
+                    nextReviews = printReviewPage(restaurant.getId(), nextReviews);
+                } else {
+                    System.out.println("Toutes les évaluations sont affichées");
                 }
+            } else {
+                refresh = true;
+                // Passage de l'instance rechargée pour disposer de la version courante
+                proceedRestaurantMenu(choice, restaurant);
             }
 
-            System.out.println(sb);
+        } while (choice != 0 && choice != 6);
+    }
 
-            showRestaurantMenu();
-            choice = readInt();
+    /**
+     * Recharge et affiche l'en-tête de la fiche d'un restaurant : informations générales et synthèse des évaluations
+     *
+     * @param restaurantId identifiant du restaurant
+     * @return restaurant rechargé, avec sa version courante
+     */
+    private static Restaurant printRestaurantSheet(int restaurantId) {
+        // Synthèse des évaluations calculée en base, en parallèle du rechargement du restaurant
+        CompletableFuture<RatingSummary> rating = evaluationService.getRatingSummaryAsync(restaurantId);
+
+        // Rechargement systématique pour obtenir la version courante et les associations nécessaires
+        Restaurant restaurant = restaurantService.loadRestaurantForDisplay(restaurantId);
+
+        System.out.println("Affichage d'un restaurant : ");
+        StringBuilder sb = new StringBuilder();
+        sb.append(restaurant.getName()).append("\n");
+        sb.append("Version: ").append(restaurant.getVersion()).append("\n");
+        sb.append(restaurant.getDescription()).append("\n");
+        sb.append(restaurant.getType().getLabel()).append("\n");
+        sb.append(restaurant.getWebsite()).append("\n");
+        sb.append(restaurant.getAddress().getStreet()).append(", ");
+
+        City c = restaurant.getCity();
+        if (c != null) {
+            sb.append(c.getZipCode()).append(" ").append(c.getCityName()).append("\n");
+        } else {
+            sb.append("(ville non renseignée)\n");
+        }
 
-            // Passage de l'instance rechargée pour disposer de la version courante
-            proceedRestaurantMenu(choice, restaurant);
+        appendRatingSummary(sb, rating.join());
+        sb.append("\nEvaluations reçues : ").append("\n");
 
-        } while (choice != 0 && choice != 6);
+        System.out.print(sb);
+        return restaurant;
     }
 
     /**
-     * Compte les évaluations basiques en fonction de la valeur likeRestaurant
+     * Affiche une page d'évaluations complètes, de la plus récente à la plus ancienne
      *
-     * @param evaluations ensemble d'évaluations
-     * @param likeRestaurant filtre like ou dislike
-     * @return nombre d'évaluations correspondantes
-     */
-    private static int countLikes(Set<Evaluation> evaluations, Boolean likeRestaurant) {
-        int count = 0;
-        for (Evaluation currentEval : evaluations) {
-            if (currentEval instanceof BasicEvaluation && ((BasicEvaluation) currentEval).getLikeRestaurant() == likeRestaurant) {
-                count++;
-            }
+     * @param restaurantId identifiant du restaurant
+     * @param after clé de la dernière évaluation déjà affichée, null pour la première page
+     * @return clé de la page suivante, null s'il n'y en a pas
+     */
+    private static List<?> printReviewPage(int restaurantId, List<?> after) {
+        Page<CompleteEvaluation> page = evaluationService.findReviewPage(restaurantId, after, REVIEW_PAGE_SIZE);
+
+        StringBuilder sb = new StringBuilder();
+        for (CompleteEvaluation currentEval : page.items()) {
+            sb.append(getCompleteEvaluationDescription(currentEval)).append("\n");
+        }
+        System.out.println(sb);
+        return page.nextKey();
+    }
+
+    /**
+     * Ajoute au texte de la fiche les compteurs de likes, de dislikes et d'évaluations, puis la moyenne par critère
+     *
+     * @param sb texte de la fiche en cours de construction
+     * @param rating synthèse des évaluations du restaurant
+     */
+    private static void appendRatingSummary(StringBuilder sb, RatingSummary rating) {
+        sb.append("Nombre de likes : ").append(rating.likes()).append("\n");
+        sb.append("Nombre de dislikes : ").append(rating.dislikes()).append("\n");
+        sb.append("Nombre d'évaluations : ").append(rating.reviews()).append("\n");
+        for (RatingSummary.CriteriaAverage average : rating.criteria()) {
+            sb.append("Moyenne ").append(average.criteriaName()).append(" : ")
+                    .append(String.format("%.1f", average.average())).append("/5")
+                    .append(" (").append(average.grades()).append(" note(s))").append("\n");
         }
-        return count;
     }
 
     /**
      * Construit le texte d'une évaluation complète
      *
-     * @param eval évaluation à décrire
-     * @return description de l'évaluation complète ou chaîne vide si non applicable
+     * @param ce évaluation à décrire
+     * @return description de l'évaluation complète
      */
-    private static String getCompleteEvaluationDescription(Evaluation eval) {
+    private static String getCompleteEvaluationDescription(CompleteEvaluation ce) {
         StringBuilder result = new StringBuilder();
 
-        if (eval instanceof CompleteEvaluation) {
-            CompleteEvaluation ce = (CompleteEvaluation) eval;
-            result.append("Evaluation de : ").append(ce.getUsername()).append("\n");
-            result.append("Commentaire : ").append(ce.getComment()).append("\n");
-            for (Grade currentGrade : ce.getGrades()) {
-                result.append(currentGrade.getCriteria().getName()).append(" : ").append(currentGrade.getGrade()).append("/5").append("\n");
-            }
+        result.append("Evaluation de : ").append(ce.getUsername()).append("\n");
+        result.append("Commentaire : ").append(ce.getComment()).append("\n");
+        for (Grade currentGrade : ce.getGrades()) {
+            result.append(currentGrade.getCriteria().getName()).append(" : ").append(currentGrade.getGrade()).append("/5").append("\n");
         }
 
         return result.toString();
@@ -402,8 +726,10 @@ public class Application {
 
     /**
      * Affiche le menu d'actions disponible sur la fiche restaurant
+     *
+     * @param moreReviews true s'il reste des évaluations à afficher
      */
-    private static void showRestaurantMenu() {
+    private static void showRestaurantMenu(boolean moreReviews) {
         System.out.println("======================================================");
         System.out.println("Que souhaitez-vous faire ?");
         System.out.println("1. J'aime ce restaurant !");
@@ -412,6 +738,9 @@ public class Application {
         System.out.println("4. Editer ce restaurant");
         System.out.println("5. Editer l'adresse du restaurant");
         System.out.println("6. Supprimer ce restaurant");
+        if (moreReviews) {
+            System.out.println("7. Afficher plus d'évaluations");
+        }
         System.out.println("0. Revenir au menu principal");
     }
 
@@ -451,6 +780,8 @@ public class Application {
     /**
      * Ajoute un like ou un dislike au restaurant
      * L'adresse IP locale est utilisée pour tracer la provenance de l'évaluation
+     * En écriture différée, le vote est journalisé puis écrit en base avec le prochain lot
+     * Un vote refusé par le filtre d'admission est signalé sans être enregistré
      *
      * @param restaurant restaurant évalué
      * @param like true pour like, false pour dislike
@@ -464,8 +795,16 @@ public class Application {
             ipAddress = "Indisponible";
         }
 
-        evaluationService.addBasicEvaluation(restaurant.getId(), like, new Date(), ipAddress);
-        System.out.println("Votre vote a été pris en compte !");
+        try {
+            if (LikeWriteBehind.isEnabled()) {
+                LikeWriteBehind.shared().submit(restaurant.getId(), like, new Date(), ipAddress);
+            } else {
+                evaluationService.addBasicEvaluation(restaurant.getId(), like, new Date(), ipAddress);
+            }
+            System.out.println("Votre vote a été pris en compte !");
+        } catch (LikeRejectedException ex) {
+            System.out.println("\n*** " + ex.getMessage() + " ***\n");
+        }
     }
 
     /**
@@ -496,15 +835,13 @@ public class Application {
 
     /**
      * Modification des informations générales d'un restaurant
-     * Le contrôle de concurrence est effectué via une version attendue
+     * Le restaurant affiché sert d'état de base, les modifications concurrentes sur d'autres champs sont réappliquées
      *
      * @param restaurant restaurant à modifier
      */
     private static void editRestaurant(Restaurant restaurant) {
         System.out.println("Edition d'un restaurant !");
 
-        int expectedVersion = restaurant.getVersion();
-
         System.out.println("Nouveau nom : ");
         String newName = readString();
 
@@ -520,8 +857,7 @@ public class Application {
 
         try {
             restaurantService.updateRestaurantDetails(
-                    restaurant.getId(),
-                    expectedVersion,
+                    restaurant,
                     newName,
                     newDescription,
                     newWebsite,
@@ -537,27 +873,24 @@ public class Application {
 
     /**
      * Modification de l'adresse d'un restaurant
-     * Le contrôle de concurrence est effectué via une version attendue
+     * Le restaurant affiché sert d'état de base, les modifications concurrentes sur d'autres champs sont réappliquées
      *
      * @param restaurant restaurant à modifier
      */
     private static void editRestaurantAddress(Restaurant restaurant) {
         System.out.println("Edition de l'adresse d'un restaurant !");
 
-        int expectedVersion = restaurant.getVersion();
-
         System.out.println("Nouvelle rue : ");
         String newStreet = readString();
 
-        City selectedCity = pickCity(loadAllCities());
+        City selectedCity = pickCity(() -> cityService.findPage(null, PAGE_SIZE));
         if (selectedCity == null) {
             return;
         }
 
         try {
             restaurantService.updateRestaurantAddress(
-                    restaurant.getId(),
-                    expectedVersion,
+                    restaurant,
                     newStreet,
                     selectedCity.getId()
             );
@@ -602,7 +935,7 @@ public class Application {
      * @param name nom recherché
      * @return restaurant trouvé ou null
      */
-    private static Restaurant searchRestaurantByName(Set<Restaurant> restaurants, String name) {
+    private static Restaurant searchRestaurantByName(Collection<Restaurant> restaurants, String name) {
         for (Restaurant current : restaurants) {
             if (current.getName().equalsIgnoreCase(name)) {
                 return current;
@@ -611,22 +944,6 @@ public class Application {
         return null;
     }
 
-    /**
-     * Recherche une ville par NPA dans un ensemble
-     *
-     * @param cities ensemble de villes
-     * @param zipCode code postal recherché
-     * @return ville trouvée ou null
-     */
-    private static City searchCityByZipCode(Set<City> cities, String zipCode) {
-        for (City current : cities) {
-            if (current.getZipCode().equalsIgnoreCase(zipCode)) {
-                return current;
-            }
-        }
-        return null;
-    }
-
     /**
      * Recherche un type par libellé exact dans un ensemble
      *
@@ -676,21 +993,40 @@ public class Application {
     }
 
     /**
-     * Charge les restaurants depuis la couche de services
-     *
-     * @return ensemble ordonné de restaurants
+     * Import d'un fichier CSV de données partenaires
+     * Les lignes rejetées sont écrites à côté du fichier source, avec le suffixe .rejets.csv
      */
-    private static Set<Restaurant> loadAllRestaurants() {
-        return new LinkedHashSet<>(restaurantService.findAll());
+    private static void importPartnerData() {
+        System.out.println("Chemin du fichier à importer : ");
+        Path source = Path.of(readString());
+        if (!Files.isReadable(source)) {
+            System.out.println("Fichier introuvable ou illisible : " + source);
+            return;
+        }
+        Path rejects = source.resolveSibling(source.getFileName() + ".rejets.csv");
+
+        try {
+            ImportReport report = bulkImportService.importFile(source, rejects);
+            System.out.println("Import terminé : " + report);
+            if (report.rejected() > 0) {
+                System.out.println("Lignes rejetées : " + rejects);
+            }
+        } catch (IOException ex) {
+            System.out.println("Erreur de lecture ou d'écriture : " + ex.getMessage());
+        }
     }
 
     /**
-     * Charge les villes depuis la couche de services
-     *
-     * @return ensemble ordonné de villes
+     * Recalcule les compteurs d'évaluations de tous les restaurants et affiche les écarts corrigés
+     * Le détail de chaque écart est journalisé par le service
      */
-    private static Set<City> loadAllCities() {
-        return new LinkedHashSet<>(cityService.findAll());
+    private static void reconcileRestaurantStats() {
+        ReconciliationReport report = restaurantStatsService.reconcile();
+        if (report.isConsistent()) {
+            System.out.println("Statistiques cohérentes : " + report);
+        } else {
+            System.out.println("Statistiques corrigées : " + report);
+        }
     }
 
     /**
@@ -703,11 +1039,11 @@ public class Application {
     }
 
     /**
-     * Charge les critères d'évaluation depuis la couche de services
+     * Retourne les critères d'évaluation du registre partagé, sans accès à la base une fois celui-ci chargé
      *
      * @return ensemble ordonné de critères
      */
     private static Set<EvaluationCriteria> loadAllEvaluationCriterias() {
-        return new LinkedHashSet<>(criteriaService.findAll());
+        return new LinkedHashSet<>(CriteriaRegistry.shared().findAll());
     }
 }
@@ -1,10 +1,12 @@
 package ch.hearc.ig.guideresto.services;
 
-import ch.hearc.ig.guideresto.persistence.jpa.JpaUtils;
+import ch.hearc.ig.guideresto.persistence.jpa.TransactionDefinition;
+import ch.hearc.ig.guideresto.persistence.jpa.TransactionManager;
 import jakarta.persistence.EntityManager;
-import jakarta.persistence.EntityTransaction;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Classe de base pour la couche de services
@@ -14,7 +16,12 @@ import java.util.function.Function;
  * - Démarrage et validation de la transaction
  * - Rollback en cas d'exception d'exécution
  *
+ * L'exécution est déléguée à {@link TransactionManager}
+ * Un service appelé depuis un autre service rejoint ainsi sa transaction et réutilise son EntityManager
+ * Une écriture appelée depuis une lecture seule, doInTx depuis doInReadOnlyTx, s'exécute dans sa propre transaction
+ *
  * Les services concrets encapsulent la logique applicative et appellent ces méthodes utilitaires
+ * Leurs variantes asynchrones, suffixées Async, délèguent l'appel synchrone à {@link DatabaseBulkhead}
  */
 public abstract class AbstractService {
 
@@ -25,19 +32,28 @@ public abstract class AbstractService {
      * La transaction est validée si aucune exception n'est levée, sinon elle est annulée
      */
     protected <T> T doInTx(Function<EntityManager, T> work) {
-        EntityManager em = JpaUtils.getEntityManager();
-        EntityTransaction tx = em.getTransaction();
-        try {
-            tx.begin();
-            T res = work.apply(em);
-            tx.commit();
-            return res;
-        } catch (RuntimeException ex) {
-            if (tx.isActive()) tx.rollback();
-            throw ex;
-        } finally {
-            em.close();
-        }
+        return doInTx(TransactionDefinition.DEFAULT, work);
+    }
+
+    /**
+     * Exécute un traitement selon une définition explicite (propagation, délai, isolation, lecture seule)
+     */
+    protected <T> T doInTx(TransactionDefinition definition, Function<EntityManager, T> work) {
+        return TransactionManager.execute(definition, work);
+    }
+
+    /**
+     * Exécute un traitement de lecture seule dans une transaction et retourne un résultat
+     *
+     * La session Hibernate est configurée pour les lectures
+     * - Entités chargées en lecture seule, sans copie de l'état hydraté pour la détection des modifications
+     * - Flush manuel, aucun flush n'est donc déclenché au commit
+     * - Connexion JDBC marquée en lecture seule, son état est réinitialisé par le pool à la restitution
+     *
+     * Les entités retournées ne doivent pas être modifiées en vue d'une écriture, utiliser doInTx dans ce cas
+     */
+    protected <T> T doInReadOnlyTx(Function<EntityManager, T> work) {
+        return doInTx(TransactionDefinition.READ_ONLY, work);
     }
 
     /**
@@ -49,4 +65,32 @@ public abstract class AbstractService {
             return null;
         });
     }
+
+    /**
+     * Exécute une action après le commit de la transaction en cours, immédiatement hors transaction
+     * Destiné à la mise à jour des index en mémoire, qui ne doivent jamais publier une écriture annulée
+     */
+    protected void afterCommit(Runnable action) {
+        TransactionManager.afterCommit(action);
+    }
+
+    /**
+     * Exécute un appel de service sur un thread virtuel, dans la limite des accès base simultanés
+     *
+     * L'appel ouvre sa propre transaction sur le thread virtuel, il ne rejoint jamais la transaction de l'appelant
+     * Le futur échoue avec une RejectedExecutionException si le cloisonnement refuse le traitement
+     */
+    protected <T> CompletableFuture<T> async(Supplier<T> call) {
+        return DatabaseBulkhead.shared().submit(call);
+    }
+
+    /**
+     * Variante utilitaire pour un appel asynchrone ne retournant pas de résultat
+     */
+    protected CompletableFuture<Void> asyncVoid(Runnable call) {
+        return async(() -> {
+            call.run();
+            return null;
+        });
+    }
 }
@@ -0,0 +1,137 @@
+package ch.hearc.ig.guideresto.services;
+
+import ch.hearc.ig.guideresto.business.BasicEvaluation;
+import ch.hearc.ig.guideresto.business.CompleteEvaluation;
+import ch.hearc.ig.guideresto.business.Evaluation;
+import ch.hearc.ig.guideresto.persistence.jpa.BasicEvaluationMapper;
+import ch.hearc.ig.guideresto.persistence.jpa.CompleteEvaluationMapper;
+import ch.hearc.ig.guideresto.persistence.jpa.EvaluationScope;
+import ch.hearc.ig.guideresto.persistence.jpa.Page;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Service applicatif du fil d'activité : likes, dislikes et évaluations complètes, des plus récents aux plus anciens
+ *
+ * Evaluation est mappée en TABLE_PER_CLASS, une requête polymorphe deviendrait une UNION de LIKES et COMMENTAIRES
+ * triée après coup. Le fil lit plutôt chaque table par une requête triée et limitée, paginée par clé sur
+ * (date, numéro) décroissants, puis fusionne les résultats en Java, voir {@link KWayMerge}
+ *
+ * Les deux tables partagent la séquence SEQ_EVAL : (date, numéro) est un ordre total sur l'ensemble des évaluations,
+ * la clé du dernier élément produit sert donc de point de reprise pour chacune des tables
+ * Une page de n événements lit au plus n + 1 lignes par table
+ */
+public class ActivityFeedService extends AbstractService {
+
+    /**
+     * Ordre du fil : date décroissante, puis numéro décroissant
+     */
+    static final Comparator<Evaluation> LATEST_FIRST = Comparator
+            .comparing(Evaluation::getVisitDate)
+            .thenComparing(Evaluation::getId)
+            .reversed();
+
+    private final BasicEvaluationMapper basicEvaluationMapper = new BasicEvaluationMapper();
+    private final CompleteEvaluationMapper completeEvaluationMapper = new CompleteEvaluationMapper();
+
+    /**
+     * Retourne la page du fil qui suit la clé fournie, ou la première page si after est null
+     * Chaque événement est livré avec son restaurant
+     */
+    public Page<Evaluation> findLatest(EvaluationScope scope, List<?> after, int size) {
+        return doInReadOnlyTx(em -> {
+            Page<BasicEvaluation> likes = basicEvaluationMapper.findLatestPage(em, scope, after, size);
+            Page<CompleteEvaluation> reviews = completeEvaluationMapper.findLatestPage(em, scope, after, size);
+
+            Iterator<Evaluation> merged = KWayMerge.merge(List.of(likes.items().iterator(), reviews.items().iterator()), LATEST_FIRST);
+            List<Evaluation> items = new ArrayList<>(size);
+            while (items.size() < size && merged.hasNext()) {
+                items.add(merged.next());
+            }
+
+            // Les éléments non produits, lus ou restant en base, sont tous après le dernier élément de la page
+            boolean hasNext = merged.hasNext() || likes.hasNext() || reviews.hasNext();
+            return new Page<>(items, hasNext ? keyOf(items.getLast()) : null);
+        });
+    }
+
+    /**
+     * Variante asynchrone de {@link #findLatest}
+     */
+    public CompletableFuture<Page<Evaluation>> findLatestAsync(EvaluationScope scope, List<?> after, int size) {
+        return async(() -> findLatest(scope, after, size));
+    }
+
+    /**
+     * Parcourt tout le fil du périmètre, du plus récent au plus ancien
+     *
+     * Chaque table est lue par pages de chunkSize lignes, chacune dans sa propre transaction, au fil de la consommation
+     * Le flux peut être interrompu à tout moment (limit, findFirst...) sans lire les pages suivantes
+     */
+    public Stream<Evaluation> stream(EvaluationScope scope, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Taille de paquet invalide : " + chunkSize);
+        }
+        Iterator<BasicEvaluation> likes = new PagedIterator<>(key ->
+                doInReadOnlyTx(em -> basicEvaluationMapper.findLatestPage(em, scope, key, chunkSize)));
+        Iterator<CompleteEvaluation> reviews = new PagedIterator<>(key ->
+                doInReadOnlyTx(em -> completeEvaluationMapper.findLatestPage(em, scope, key, chunkSize)));
+
+        Iterator<Evaluation> merged = KWayMerge.merge(List.of(likes, reviews), LATEST_FIRST);
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED | Spliterator.NONNULL),
+                false
+        );
+    }
+
+    private static List<Object> keyOf(Evaluation evaluation) {
+        return List.of(evaluation.getVisitDate(), evaluation.getId());
+    }
+
+    /**
+     * Itérateur sur une liste paginée par clé, la page suivante n'étant lue qu'une fois la courante épuisée
+     */
+    private static final class PagedIterator<T> implements Iterator<T> {
+
+        private final Function<List<?>, Page<T>> loader;
+        private Iterator<T> current;
+        private List<Object> nextKey;
+        private boolean started;
+
+        PagedIterator(Function<List<?>, Page<T>> loader) {
+            this.loader = loader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (current == null || !current.hasNext()) {
+                if (started && nextKey == null) {
+                    return false;
+                }
+                Page<T> page = loader.apply(nextKey);
+                started = true;
+                current = page.items().iterator();
+                nextKey = page.nextKey();
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package ch.hearc.ig.guideresto.services;
+
+import ch.hearc.ig.guideresto.business.City;
+import ch.hearc.ig.guideresto.business.Restaurant;
+import ch.hearc.ig.guideresto.persistence.jpa.CityMapper;
+import ch.hearc.ig.guideresto.persistence.jpa.RestaurantMapper;
+import ch.hearc.ig.guideresto.services.PrefixIndex.Completion;
+import ch.hearc.ig.guideresto.services.PrefixIndex.Entry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Service applicatif d'autocomplétion des noms de restaurants, des noms de villes et des NPA
+ *
+ * Les complétions sont servies par deux {@link PrefixIndex} partagés, sans accès à la base
+ * Les index sont construits au démarrage de l'application puis tenus à jour par {@link RestaurantService},
+ * {@link CityService} et {@link BulkImportService} après chaque écriture validée
+ *
+ * La relecture d'un restaurant et la publication du résultat se font sous son verrou de {@link RestaurantRefreshLocks}
+ */
+public class AutocompleteService extends AbstractService {
+
+    private static final Logger logger = LogManager.getLogger(AutocompleteService.class);
+
+    /**
+     * Nombre maximal d'identifiants par liste IN, Oracle en refusant plus de 1000
+     */
+    private static final int IN_LIST_CHUNK = 500;
+
+    private static final PrefixIndex SHARED_RESTAURANTS = new PrefixIndex();
+    private static final PrefixIndex SHARED_CITIES = new PrefixIndex();
+
+    private final RestaurantMapper restaurantMapper = new RestaurantMapper();
+    private final CityMapper cityMapper = new CityMapper();
+    private final PrefixIndex restaurants;
+    private final PrefixIndex cities;
+
+    public AutocompleteService() {
+        this(SHARED_RESTAURANTS, SHARED_CITIES);
+    }
+
+    public AutocompleteService(PrefixIndex restaurants, PrefixIndex cities) {
+        this.restaurants = restaurants;
+        this.cities = cities;
+    }
+
+    /**
+     * Retourne au plus limit restaurants dont le nom, ou un mot du nom, commence par le préfixe
+     * Le libellé est le nom du restaurant, la précision son NPA et sa ville
+     */
+    public List<Completion> suggestRestaurants(String prefix, int limit) {
+        return restaurants.complete(prefix, limit);
+    }
+
+    /**
+     * Retourne au plus limit villes dont le NPA, le nom ou un mot du nom commence par le préfixe
+     * Le libellé est le nom de la ville, la précision son NPA
+     */
+    public List<Completion> suggestCities(String prefix, int limit) {
+        return cities.complete(prefix, limit);
+    }
+
+    /**
+     * Reconstruit les deux index à partir de la base
+     *
+     * Les restaurants sont lus par un curseur sur une projection, sans charger d'entité,
+     * les villes par City.findAll dont le résultat est en cache
+     * Les entrées écrites pendant la reconstruction sont relues une fois le nouveau contenu installé
+     *
+     * @return nombre de restaurants et de villes indexés
+     */
+    public int rebuild() {
+        long start = System.nanoTime();
+        boolean restaurantsStarted = false;
+        boolean citiesStarted = false;
+        try {
+            restaurants.beginRebuild();
+            restaurantsStarted = true;
+            cities.beginRebuild();
+            citiesStarted = true;
+
+            List<Entry> restaurantEntries = new ArrayList<>();
+            List<Entry> cityEntries = new ArrayList<>();
+            doInReadOnlyTx(em -> {
+                try (Stream<Object[]> rows = restaurantMapper.streamCompletions(em)) {
+                    for (Iterator<Object[]> it = rows.iterator(); it.hasNext(); ) {
+                        restaurantEntries.add(toRestaurantEntry(it.next()));
+                    }
+                }
+                for (City city : cityMapper.findAll(em)) {
+                    cityEntries.add(toCityEntry(city));
+                }
+                return null;
+            });
+
+            Set<Integer> touchedCities = cities.completeRebuild(cityEntries);
+            Set<Integer> touchedRestaurants = restaurants.completeRebuild(restaurantEntries);
+            refreshCities(touchedCities);
+            refreshRestaurants(touchedRestaurants);
+
+            logger.info("Index d'autocomplétion reconstruits : {} restaurant(s), {} ville(s) en {} ms",
+                    restaurantEntries.size(), cityEntries.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return restaurantEntries.size() + cityEntries.size();
+        } catch (RuntimeException ex) {
+            // Une reconstruction refusée car déjà en cours ne doit pas interrompre celle-ci
+            if (restaurantsStarted) {
+                restaurants.abortRebuild();
+            }
+            if (citiesStarted) {
+                cities.abortRebuild();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Variante asynchrone de {@link #rebuild}
+     */
+    public CompletableFuture<Integer> rebuildAsync() {
+        return async(this::rebuild);
+    }
+
+    /**
+     * Relit les restaurants fournis en base et met à jour leurs entrées, ceux qui n'existent plus sont retirés
+     * La lecture et la mise à jour se font sous les verrous de relecture des restaurants concernés
+     */
+    public void refreshRestaurants(Collection<Integer> restaurantIds) {
+        List<Integer> ids = List.copyOf(new HashSet<>(restaurantIds));
+        if (ids.isEmpty()) {
+            return;
+        }
+        int[] stripes = RestaurantRefreshLocks.lock(ids);
+        try {
+            List<Entry> entries = doInReadOnlyTx(em -> {
+                List<Entry> found = new ArrayList<>(ids.size());
+                for (int from = 0; from < ids.size(); from += IN_LIST_CHUNK) {
+                    List<Integer> chunk = ids.subList(from, Math.min(from + IN_LIST_CHUNK, ids.size()));
+                    for (Object[] row : restaurantMapper.findCompletions(em, chunk)) {
+                        found.add(toRestaurantEntry(row));
+                    }
+                }
+                return found;
+            });
+
+            Set<Integer> missing = new HashSet<>(ids);
+            entries.forEach(entry -> missing.remove(entry.id()));
+            restaurants.putAll(entries);
+            missing.forEach(restaurants::remove);
+        } finally {
+            RestaurantRefreshLocks.unlock(stripes);
+        }
+    }
+
+    /**
+     * Indexe des restaurants dont la ville est chargée, sans accès à la base
+     * Destiné aux écritures qui disposent déjà des entités, comme l'import en masse
+     */
+    public void indexRestaurants(Collection<Restaurant> written) {
+        restaurants.putAll(written.stream()
+                .map(r -> restaurantEntry(r.getId(), r.getName(), r.getCity().getZipCode(), r.getCity().getCityName()))
+                .toList());
+    }
+
+    /**
+     * Retire un restaurant de l'index
+     */
+    public void removeRestaurant(int restaurantId) {
+        int[] stripes = RestaurantRefreshLocks.lock(List.of(restaurantId));
+        try {
+            restaurants.remove(restaurantId);
+        } finally {
+            RestaurantRefreshLocks.unlock(stripes);
+        }
+    }
+
+    /**
+     * Indexe une ville créée ou modifiée, sans accès à la base
+     */
+    public void indexCity(City city) {
+        cities.put(toCityEntry(city));
+    }
+
+    private void refreshCities(Collection<Integer> cityIds) {
+        if (cityIds.isEmpty()) {
+            return;
+        }
+        List<City> found = doInReadOnlyTx(em -> cityIds.stream()
+                .map(id -> cityMapper.findById(em, id))
+                .toList());
+        for (City city : found) {
+            if (city != null) {
+                indexCity(city);
+            }
+        }
+    }
+
+    private static Entry toRestaurantEntry(Object[] row) {
+        return restaurantEntry((Integer) row[0], (String) row[1], (String) row[2], (String) row[3]);
+    }
+
+    private static Entry restaurantEntry(int id, String name, String zipCode, String cityName) {
+        return new Entry(id, name, zipCode + " " + cityName, List.of(name));
+    }
+
+    private static Entry toCityEntry(City city) {
+        return new Entry(city.getId(), city.getCityName(), city.getZipCode(), List.of(city.getZipCode(), city.getCityName()));
+    }
+}
@@ -4,6 +4,8 @@ import ch.hearc.ig.guideresto.business.City;
 import ch.hearc.ig.guideresto.business.Restaurant;
 import ch.hearc.ig.guideresto.business.RestaurantType;
 import ch.hearc.ig.guideresto.business.Localisation;
+import ch.hearc.ig.guideresto.persistence.jpa.RestaurantStatsMapper;
+import ch.hearc.ig.guideresto.persistence.jpa.RestaurantStatsMapper.Delta;
 import jakarta.persistence.EntityManager;
 import org.apache.logging.log4j.Logger;
 
@@ -83,6 +85,8 @@ public class BootstrapService extends AbstractService {
                 r.setType(anyType);
 
                 entityManager.persist(r);
+                entityManager.flush();
+                new RestaurantStatsMapper().create(entityManager, Delta.zero(r.getId()));
                 logger.info("Restaurant persisté. id={}", r.getId());
             } else {
                 logger.info("Restaurant persist non exécuté (déjà présent)");
@@ -0,0 +1,602 @@
+package ch.hearc.ig.guideresto.services;
+
+import ch.hearc.ig.guideresto.business.*;
+import ch.hearc.ig.guideresto.persistence.jpa.AbstractJpaMapper;
+import ch.hearc.ig.guideresto.persistence.jpa.JpaUtils;
+import ch.hearc.ig.guideresto.persistence.jpa.RestaurantStatsMapper;
+import ch.hearc.ig.guideresto.persistence.jpa.RestaurantStatsMapper.Delta;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Serial;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Savepoint;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Service d'import en masse de données partenaires depuis un fichier CSV
+ *
+ * Format : une ligne par enregistrement, champs séparés par ';', guillemets doubles autour d'un champ contenant ';'
+ * - RESTAURANT;clé;nom;description;site web;rue;NPA;ville;type
+ * - LIKE;restaurant;date;appréciation (like/dislike);adresse IP
+ * - REVIEW;restaurant;date;utilisateur;commentaire;critère=note|critère=note
+ *
+ * Le restaurant d'un LIKE ou d'un REVIEW est la clé d'un RESTAURANT importé plus haut dans le fichier,
+ * ou #numéro pour un restaurant déjà en base. Les dates sont au format ISO (2024-05-31)
+ * Les lignes vides et celles commençant par # sont ignorées
+ *
+ * Le fichier est lu ligne par ligne et écrit par paquets de chunkSize lignes, chacun dans sa propre transaction,
+ * via une StatelessSession : sans contexte de persistance, la mémoire utilisée ne dépend pas de la taille du fichier
+ * Seule la table des restaurants importés, clé vers identifiant, grandit avec le nombre de lignes RESTAURANT
+ *
+ * Villes, types et critères sont résolus via des tables en mémoire chargées au début de l'import
+ * Une ville inconnue est créée à la volée, un type ou un critère inconnu entraîne le rejet de la ligne
+ *
+ * Un paquet est d'abord écrit en lots JDBC. S'il échoue en base, il est annulé puis rejoué ligne par ligne
+ * avec un point de sauvegarde par ligne, afin de ne rejeter que les lignes fautives
+ * Les lignes rejetées sont écrites dans le fichier de rejets avec leur numéro et le motif du rejet
+ *
+ * Les compteurs de RESTAURANT_STATS sont créés ou incrémentés avec les insertions, dans la même transaction ou le même point de sauvegarde
+ * Les restaurants importés sont ajoutés aux index de recherche plein texte et d'autocomplétion après le commit de leur paquet
+ */
+public class BulkImportService extends AbstractService {
+
+    private static final Logger logger = LogManager.getLogger(BulkImportService.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    /**
+     * Nombre de lignes lues entre deux journalisations de la progression
+     */
+    private static final long PROGRESS_INTERVAL = 10_000;
+
+    private static final char SEPARATOR = ';';
+
+    private static final RestaurantStatsMapper statsMapper = new RestaurantStatsMapper();
+
+    private final CityService cityService = new CityService();
+    private final RestaurantTypeService typeService = new RestaurantTypeService();
+    private final EvaluationCriteriaService criteriaService = new EvaluationCriteriaService();
+    private final RestaurantSearchService searchService = new RestaurantSearchService();
+    private final AutocompleteService autocompleteService = new AutocompleteService();
+    private final int chunkSize;
+
+    public BulkImportService() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    public BulkImportService(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Taille de paquet invalide : " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Importe le fichier source et écrit les lignes rejetées dans le fichier de rejets
+     */
+    public ImportReport importFile(Path source, Path rejects) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8);
+             BufferedWriter rejectWriter = Files.newBufferedWriter(rejects, StandardCharsets.UTF_8);
+             StatelessSession session = JpaUtils.openStatelessSession()) {
+
+            ImportRun run = new ImportRun(session, rejectWriter);
+            logger.info("Import de {} démarré, paquets de {} ligne(s)", source, chunkSize);
+
+            List<Line> chunk = new ArrayList<>(chunkSize);
+            long number = 0;
+            String raw;
+            while ((raw = reader.readLine()) != null) {
+                number++;
+                if (raw.isBlank() || raw.startsWith("#")) {
+                    continue;
+                }
+                run.linesRead++;
+                try {
+                    chunk.add(new Line(number, raw, parse(raw)));
+                } catch (RejectedRowException ex) {
+                    run.reject(new Rejection(number, raw, ex.getMessage()));
+                }
+                if (chunk.size() == chunkSize) {
+                    run.writeChunk(chunk);
+                }
+            }
+            run.writeChunk(chunk);
+
+            ImportReport report = run.report();
+            logger.info("Import de {} terminé. {}", source, report);
+            return report;
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * Déroulement d'un import : session, tables de résolution, compteurs et fichier de rejets
+     */
+    private final class ImportRun {
+
+        private final StatelessSession session;
+        private final BufferedWriter rejectWriter;
+        private final long start = System.nanoTime();
+
+        private final Map<String, City> cities = new HashMap<>();
+        private final Map<String, RestaurantType> types = new HashMap<>();
+        private final Map<String, EvaluationCriteria> criteria = new HashMap<>();
+
+        /**
+         * Identifiants des restaurants importés par clé partenaire, et des restaurants existants par #numéro
+         * Seuls les identifiants sont conservés : les entités d'un paquet sont libérées après son commit
+         */
+        private final Map<String, Integer> restaurantIds = new HashMap<>();
+
+        private long linesRead;
+        private long imported;
+        private long rejected;
+        private long lastProgress;
+
+        ImportRun(StatelessSession session, BufferedWriter rejectWriter) {
+            this.session = session;
+            this.rejectWriter = rejectWriter;
+            session.setJdbcBatchSize(AbstractJpaMapper.DEFAULT_FLUSH_INTERVAL);
+
+            for (City c : cityService.findAll()) {
+                cities.put(cityKey(c.getZipCode(), c.getCityName()), c);
+            }
+            for (RestaurantType t : typeService.findAll()) {
+                types.put(normalize(t.getLabel()), t);
+            }
+            for (EvaluationCriteria c : criteriaService.findAll()) {
+                criteria.put(normalize(c.getName()), c);
+            }
+        }
+
+        /**
+         * Écrit un paquet puis le vide
+         * Les restaurants ajoutés et les rejets de résolution ne sont pris en compte qu'après le commit du paquet
+         */
+        void writeChunk(List<Line> chunk) {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            try {
+                writeBatched(chunk);
+            } catch (RuntimeException ex) {
+                logger.warn("Paquet des lignes {} à {} en échec ({}), reprise ligne par ligne",
+                        chunk.getFirst().number(), chunk.getLast().number(), ex.getMessage());
+                writeRowByRow(chunk);
+            }
+            chunk.clear();
+            reportProgress();
+        }
+
+        /**
+         * Chemin nominal : tout le paquet dans une transaction, insertions regroupées par table pour des lots complets
+         */
+        private void writeBatched(List<Line> chunk) {
+            Map<String, Restaurant> added = new HashMap<>();
+            List<Rejection> rejections = new ArrayList<>();
+            PendingInserts pending = new PendingInserts();
+
+            Transaction tx = session.beginTransaction();
+            try {
+                for (Line line : chunk) {
+                    try {
+                        resolve(line.row(), added, pending);
+                    } catch (RejectedRowException ex) {
+                        rejections.add(new Rejection(line.number(), line.raw(), ex.getMessage()));
+                    }
+                }
+                pending.insertInto(session);
+                tx.commit();
+            } catch (RuntimeException ex) {
+                if (tx.isActive()) tx.rollback();
+                throw ex;
+            }
+
+            added.forEach((key, restaurant) -> restaurantIds.put(key, restaurant.getId()));
+            searchService.index(added.values());
+            autocompleteService.indexRestaurants(added.values());
+            imported += chunk.size() - rejections.size();
+            rejections.forEach(this::reject);
+        }
+
+        /**
+         * Chemin de reprise : une ligne à la fois, chacune protégée par un point de sauvegarde
+         */
+        private void writeRowByRow(List<Line> chunk) {
+            Integer batchSize = session.getJdbcBatchSize();
+            // Sans lot JDBC, l'erreur d'une ligne est levée pendant son insertion et non au commit
+            session.setJdbcBatchSize(1);
+
+            Map<String, Restaurant> added = new HashMap<>();
+            List<Rejection> rejections = new ArrayList<>();
+            long written = 0;
+
+            Transaction tx = session.beginTransaction();
+            try {
+                for (Line line : chunk) {
+                    Map<String, Restaurant> addedByRow = new HashMap<>(added);
+                    PendingInserts pending = new PendingInserts();
+                    try {
+                        resolve(line.row(), addedByRow, pending);
+                    } catch (RejectedRowException ex) {
+                        rejections.add(new Rejection(line.number(), line.raw(), ex.getMessage()));
+                        continue;
+                    }
+
+                    Savepoint savepoint = session.doReturningWork(Connection::setSavepoint);
+                    try {
+                        pending.insertInto(session);
+                        session.doWork(connection -> connection.releaseSavepoint(savepoint));
+                        added = addedByRow;
+                        written++;
+                    } catch (RuntimeException ex) {
+                        session.doWork(connection -> connection.rollback(savepoint));
+                        rejections.add(new Rejection(line.number(), line.raw(), rootMessage(ex)));
+                    }
+                }
+                tx.commit();
+            } catch (RuntimeException ex) {
+                if (tx.isActive()) tx.rollback();
+                logger.error("Reprise du paquet des lignes {} à {} en échec : {}",
+                        chunk.getFirst().number(), chunk.getLast().number(), rootMessage(ex));
+                for (Line line : chunk) {
+                    reject(new Rejection(line.number(), line.raw(), "Paquet annulé : " + rootMessage(ex)));
+                }
+                return;
+            } finally {
+                session.setJdbcBatchSize(batchSize);
+            }
+
+            added.forEach((key, restaurant) -> restaurantIds.put(key, restaurant.getId()));
+            searchService.index(added.values());
+            autocompleteService.indexRestaurants(added.values());
+            imported += written;
+            rejections.forEach(this::reject);
+        }
+
+        /**
+         * Résout les références d'une ligne et prépare ses insertions
+         * Aucune requête d'écriture n'est émise ici, une ligne non résolue est donc rejetée sans effet en base
+         */
+        private void resolve(Row row, Map<String, Restaurant> added, PendingInserts pending) throws RejectedRowException {
+            switch (row) {
+                case RestaurantRow r -> {
+                    if (added.containsKey(r.key()) || restaurantIds.containsKey(r.key())) {
+                        throw new RejectedRowException("Clé de restaurant déjà importée : " + r.key());
+                    }
+                    RestaurantType type = types.get(normalize(r.typeLabel()));
+                    if (type == null) {
+                        throw new RejectedRowException("Type de restaurant inconnu : " + r.typeLabel());
+                    }
+                    City city = resolveCity(r.zipCode(), r.cityName());
+                    Restaurant restaurant = new Restaurant(null, r.name(), r.description(), r.website(), r.street(), city, type);
+                    added.put(r.key(), restaurant);
+                    pending.restaurants.add(restaurant);
+                }
+                case LikeRow l -> {
+                    Restaurant restaurant = resolveRestaurant(l.restaurantRef(), added);
+                    pending.likes.add(new BasicEvaluation(l.date(), restaurant, l.like(), l.ipAddress()));
+                }
+                case ReviewRow rv -> {
+                    Restaurant restaurant = resolveRestaurant(rv.restaurantRef(), added);
+                    CompleteEvaluation evaluation = new CompleteEvaluation(rv.date(), restaurant, rv.comment(), rv.username());
+                    List<Grade> grades = new ArrayList<>(rv.grades().size());
+                    for (CriteriaGrade g : rv.grades()) {
+                        EvaluationCriteria crit = criteria.get(normalize(g.criteria()));
+                        if (crit == null) {
+                            throw new RejectedRowException("Critère inconnu : " + g.criteria());
+                        }
+                        grades.add(new Grade(g.grade(), evaluation, crit));
+                    }
+                    pending.reviews.add(evaluation);
+                    pending.grades.addAll(grades);
+                }
+            }
+        }
+
+        /**
+         * Retourne la ville correspondante, en la créant dans sa propre transaction si elle est inconnue
+         */
+        private City resolveCity(String zipCode, String cityName) throws RejectedRowException {
+            String key = cityKey(zipCode, cityName);
+            City city = cities.get(key);
+            if (city == null) {
+                try {
+                    city = cityService.createCity(zipCode, cityName);
+                } catch (RuntimeException ex) {
+                    throw new RejectedRowException("Création de la ville " + zipCode + " " + cityName + " impossible : " + rootMessage(ex));
+                }
+                logger.info("Import : ville {} {} créée", zipCode, cityName);
+                cities.put(key, city);
+            }
+            return city;
+        }
+
+        /**
+         * Retourne le restaurant d'un LIKE ou d'un REVIEW
+         * Un restaurant d'un paquet précédent ou déjà en base est une référence portant son seul identifiant,
+         * suffisante pour la clé étrangère et les compteurs. Un #numéro inconnu est vérifié une fois en base
+         */
+        private Restaurant resolveRestaurant(String ref, Map<String, Restaurant> added) throws RejectedRowException {
+            Restaurant restaurant = added.get(ref);
+            if (restaurant != null) {
+                return restaurant;
+            }
+            Integer id = restaurantIds.get(ref);
+            if (id == null && ref.startsWith("#")) {
+                int candidate = parseInt(ref.substring(1), "numéro de restaurant");
+                if (session.get(Restaurant.class, candidate) != null) {
+                    id = candidate;
+                    restaurantIds.put(ref, id);
+                }
+            }
+            if (id == null) {
+                throw new RejectedRowException("Restaurant introuvable : " + ref);
+            }
+            return reference(id);
+        }
+
+        /**
+         * Équivalent de getReference, absent de StatelessSession : un proxy non initialisé, sans requête
+         */
+        private Restaurant reference(int id) {
+            return (Restaurant) ((SharedSessionContractImplementor) session)
+                    .internalLoad(Restaurant.class.getName(), id, false, false);
+        }
+
+        void reject(Rejection rejection) {
+            rejected++;
+            try {
+                rejectWriter.write(rejection.number() + ";" + quote(rejection.reason()) + ";" + rejection.raw());
+                rejectWriter.newLine();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        private void reportProgress() {
+            if (linesRead / PROGRESS_INTERVAL > lastProgress / PROGRESS_INTERVAL) {
+                lastProgress = linesRead;
+                ImportReport current = report();
+                logger.info("Import en cours : {}", current);
+            }
+        }
+
+        ImportReport report() {
+            return new ImportReport(linesRead, imported, rejected, (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    /**
+     * Insertions préparées pour une ou plusieurs lignes, émises table par table dans l'ordre des clés étrangères
+     * Le regroupement par table évite qu'une alternance évaluation / note ne coupe les lots JDBC
+     * Les compteurs sont ensuite créés pour les restaurants insérés, puis incrémentés une fois par autre restaurant, par identifiant croissant
+     */
+    private static final class PendingInserts {
+
+        private final List<Restaurant> restaurants = new ArrayList<>();
+        private final List<BasicEvaluation> likes = new ArrayList<>();
+        private final List<CompleteEvaluation> reviews = new ArrayList<>();
+        private final List<Grade> grades = new ArrayList<>();
+
+        void insertInto(StatelessSession session) {
+            restaurants.forEach(session::insert);
+            likes.forEach(session::insert);
+            reviews.forEach(session::insert);
+            grades.forEach(session::insert);
+
+            // Identifiants connus seulement après insertion pour les restaurants du paquet
+            Map<Integer, Delta> deltas = new TreeMap<>();
+            for (BasicEvaluation like : likes) {
+                int id = like.getRestaurant().getId();
+                deltas.merge(id, Delta.like(id, like.getLikeRestaurant()), Delta::plus);
+            }
+            for (CompleteEvaluation review : reviews) {
+                int id = review.getRestaurant().getId();
+                deltas.merge(id, new Delta(id, 0, 0, 1, 0, 0), Delta::plus);
+            }
+            for (Grade grade : grades) {
+                int id = grade.getEvaluation().getRestaurant().getId();
+                deltas.merge(id, new Delta(id, 0, 0, 0, 1, grade.getGrade()), Delta::plus);
+            }
+            // Les restaurants du paquet reçoivent leur ligne avec les compteurs du paquet, les autres sont incrémentés
+            for (Restaurant restaurant : restaurants) {
+                Delta initial = deltas.remove(restaurant.getId());
+                statsMapper.create(session, initial != null ? initial : Delta.zero(restaurant.getId()));
+            }
+            for (Delta delta : deltas.values()) {
+                statsMapper.increment(session, delta);
+            }
+        }
+    }
+
+    /*
+        Lecture du format CSV
+     */
+
+    private static Row parse(String raw) throws RejectedRowException {
+        List<String> f = split(raw);
+        String kind = f.getFirst().trim().toUpperCase(Locale.ROOT);
+        return switch (kind) {
+            case "RESTAURANT" -> {
+                expectFields(f, 9);
+                yield new RestaurantRow(required(f, 1, "clé"), required(f, 2, "nom"), f.get(3), f.get(4),
+                        required(f, 5, "rue"), required(f, 6, "NPA"), required(f, 7, "ville"), required(f, 8, "type"));
+            }
+            case "LIKE" -> {
+                expectFields(f, 5);
+                yield new LikeRow(required(f, 1, "restaurant"), parseDate(f.get(2)), parseAppreciation(f.get(3)),
+                        required(f, 4, "adresse IP"));
+            }
+            case "REVIEW" -> {
+                expectFields(f, 6);
+                yield new ReviewRow(required(f, 1, "restaurant"), parseDate(f.get(2)), required(f, 3, "utilisateur"),
+                        f.get(4), parseGrades(f.get(5)));
+            }
+            default -> throw new RejectedRowException("Type d'enregistrement inconnu : " + f.getFirst());
+        };
+    }
+
+    /**
+     * Découpe une ligne en champs, les guillemets doubles protègent les séparateurs et "" représente un guillemet
+     */
+    private static List<String> split(String raw) throws RejectedRowException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < raw.length() && raw.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == SEPARATOR) {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            throw new RejectedRowException("Guillemet non fermé");
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    private static void expectFields(List<String> fields, int expected) throws RejectedRowException {
+        if (fields.size() != expected) {
+            throw new RejectedRowException(expected + " champ(s) attendu(s), " + fields.size() + " trouvé(s)");
+        }
+    }
+
+    private static String required(List<String> fields, int index, String name) throws RejectedRowException {
+        String value = fields.get(index).trim();
+        if (value.isEmpty()) {
+            throw new RejectedRowException("Champ obligatoire vide : " + name);
+        }
+        return value;
+    }
+
+    private static Date parseDate(String value) throws RejectedRowException {
+        try {
+            LocalDate date = LocalDate.parse(value.trim());
+            return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        } catch (DateTimeParseException ex) {
+            throw new RejectedRowException("Date invalide : " + value);
+        }
+    }
+
+    private static boolean parseAppreciation(String value) throws RejectedRowException {
+        return switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "like", "t", "true", "1" -> true;
+            case "dislike", "f", "false", "0" -> false;
+            default -> throw new RejectedRowException("Appréciation invalide : " + value);
+        };
+    }
+
+    private static List<CriteriaGrade> parseGrades(String value) throws RejectedRowException {
+        List<CriteriaGrade> grades = new ArrayList<>();
+        for (String part : value.split("\\|")) {
+            int eq = part.indexOf('=');
+            if (eq <= 0) {
+                throw new RejectedRowException("Note invalide : " + part);
+            }
+            int grade = parseInt(part.substring(eq + 1), "note");
+            if (grade < 1 || grade > 5) {
+                throw new RejectedRowException("Note invalide (" + grade + "), attendu entre 1 et 5");
+            }
+            grades.add(new CriteriaGrade(part.substring(0, eq).trim(), grade));
+        }
+        if (grades.isEmpty()) {
+            throw new RejectedRowException("Une évaluation complète doit contenir au moins une note");
+        }
+        return grades;
+    }
+
+    private static int parseInt(String value, String name) throws RejectedRowException {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new RejectedRowException("Valeur entière attendue pour " + name + " : " + value);
+        }
+    }
+
+    private static String cityKey(String zipCode, String cityName) {
+        return zipCode.trim() + "|" + normalize(cityName);
+    }
+
+    private static String normalize(String value) {
+        return value.trim().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Protège un champ du fichier de rejets, les retours à la ligne des messages d'erreur JDBC sont aplatis
+     */
+    private static String quote(String value) {
+        return "\"" + value.replaceAll("\\R+", " ").replace("\"", "\"\"") + "\"";
+    }
+
+    private static String rootMessage(Throwable ex) {
+        Throwable root = ex;
+        while (root.getCause() != null) {
+            root = root.getCause();
+        }
+        return String.valueOf(root.getMessage());
+    }
+
+    /*
+        Structures internes
+     */
+
+    private sealed interface Row permits RestaurantRow, LikeRow, ReviewRow {}
+
+    private record RestaurantRow(String key, String name, String description, String website,
+                                 String street, String zipCode, String cityName, String typeLabel) implements Row {}
+
+    private record LikeRow(String restaurantRef, Date date, boolean like, String ipAddress) implements Row {}
+
+    private record ReviewRow(String restaurantRef, Date date, String username, String comment,
+                             List<CriteriaGrade> grades) implements Row {}
+
+    private record CriteriaGrade(String criteria, int grade) {}
+
+    private record Line(long number, String raw, Row row) {}
+
+    private record Rejection(long number, String raw, String reason) {}
+
+    /**
+     * Ligne rejetée avant toute écriture en base, le message est le motif inscrit dans le fichier de rejets
+     */
+    private static final class RejectedRowException extends Exception {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        RejectedRowException(String reason) {
+            super(reason, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package ch.hearc.ig.guideresto.services;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métriques du cloisonnement des accès base exécutés de manière asynchrone
+ *
+ * - queue : temps passé entre la soumission d'une tâche et l'obtention d'un permis
+ * - run : temps d'exécution de la tâche une fois le permis obtenu
+ * - rejected : tâches refusées, file pleine ou permis non obtenu dans le délai
+ *
+ * Les compteurs sont mis à jour sans verrou via des LongAdder, comme pour le pool de connexions
+ */
+public class BulkheadMetrics {
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder queueTotalMicros = new LongAdder();
+    private final LongAccumulator queueMaxMicros = new LongAccumulator(Long::max, 0L);
+    private final LongAdder runTotalMicros = new LongAdder();
+    private final LongAccumulator runMaxMicros = new LongAccumulator(Long::max, 0L);
+
+    void recordSubmitted() {
+        submitted.increment();
+    }
+
+    void recordRejected() {
+        rejected.increment();
+    }
+
+    void recordQueued(long elapsedNanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(elapsedNanos);
+        queueTotalMicros.add(micros);
+        queueMaxMicros.accumulate(micros);
+    }
+
+    void recordRun(long elapsedNanos, boolean success) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(elapsedNanos);
+        runTotalMicros.add(micros);
+        runMaxMicros.accumulate(micros);
+        if (success) {
+            completed.increment();
+        } else {
+            failed.increment();
+        }
+    }
+
+    /**
+     * Construit un instantané immuable des métriques
+     * L'occupation courante est fournie par l'appelant car elle n'est pas maintenue ici
+     */
+    Snapshot snapshot(int running, int waiting, int maxConcurrent) {
+        return new Snapshot(
+                running,
+                waiting,
+                maxConcurrent,
+                submitted.sum(),
+                rejected.sum(),
+                completed.sum(),
+                failed.sum(),
+                queueTotalMicros.sum(),
+                queueMaxMicros.get(),
+                runTotalMicros.sum(),
+                runMaxMicros.get()
+        );
+    }
+
+    /**
+     * Instantané des métriques du cloisonnement
+     */
+    public record Snapshot(
+            int running,
+            int waiting,
+            int maxConcurrent,
+            long submitted,
+            long rejected,
+            long completed,
+            long failed,
+            long queueTotalMicros,
+            long queueMaxMicros,
+            long runTotalMicros,
+            long runMaxMicros
+    ) {
+
+        /**
+         * Temps d'attente moyen d'un permis, en microsecondes
+         */
+        public double queueMeanMicros() {
+            long started = completed + failed;
+            return started == 0 ? 0.0 : (double) queueTotalMicros / started;
+        }
+
+        /**
+         * Temps d'exécution moyen d'une tâche, en microsecondes
+         */
+        public double runMeanMicros() {
+            long started = completed + failed;
+            return started == 0 ? 0.0 : (double) runTotalMicros / started;
+        }
+
+        @Override
+        public String toString() {
+            return "running=" + running + "/" + maxConcurrent
+                    + ", waiting=" + waiting
+                    + ", submitted=" + submitted
+                    + ", completed=" + completed
+                    + ", failed=" + failed
+                    + ", rejected=" + rejected
+                    + ", queueMeanUs=" + String.format("%.1f", queueMeanMicros())
+                    + ", queueMaxUs=" + queueMaxMicros
+                    + ", runMeanUs=" + String.format("%.1f", runMeanMicros())
+                    + ", runMaxUs=" + runMaxMicros;
+        }
+    }
+}
@@ -2,35 +2,88 @@ package ch.hearc.ig.guideresto.services;
 
 import ch.hearc.ig.guideresto.business.City;
 import ch.hearc.ig.guideresto.persistence.jpa.CityMapper;
+import ch.hearc.ig.guideresto.persistence.jpa.Page;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service applicatif dédié aux opérations sur les villes
  *
  * La classe encapsule la gestion transactionnelle et délègue l'accès aux données au CityMapper
  * Les méthodes exposées correspondent aux besoins de l'application en lecture et en création
+ * Chaque ville créée est ajoutée à l'index d'autocomplétion, voir {@link AutocompleteService}
  */
 public class CityService extends AbstractService {
 
     private final CityMapper cityMapper = new CityMapper();
+    private final AutocompleteService autocompleteService = new AutocompleteService();
 
     /**
      * Retourne la liste de toutes les villes triées selon la requête nommée associée
      */
     public List<City> findAll() {
-        return doInTx(em -> cityMapper.findAll(em));
+        return doInReadOnlyTx(em -> cityMapper.findAll(em));
+    }
+
+    /**
+     * Variante asynchrone de {@link #findAll()}
+     */
+    public CompletableFuture<List<City>> findAllAsync() {
+        return async(this::findAll);
+    }
+
+    /**
+     * Retourne la page de villes qui suit la clé fournie, ou la première page si after est null
+     * Les villes sont triées par NPA puis par nom
+     */
+    public Page<City> findPage(List<?> after, int size) {
+        return doInReadOnlyTx(em -> cityMapper.findPage(em, after, size));
+    }
+
+    /**
+     * Variante asynchrone de {@link #findPage}
+     */
+    public CompletableFuture<Page<City>> findPageAsync(List<?> after, int size) {
+        return async(() -> findPage(after, size));
+    }
+
+    /**
+     * Retourne la ville correspondant à l'identifiant, ou null
+     */
+    public City findById(int id) {
+        return doInReadOnlyTx(em -> cityMapper.findById(em, id));
+    }
+
+    /**
+     * Retourne la première ville correspondant au NPA, ou null
+     */
+    public City findByZipCode(String zipCode) {
+        return doInReadOnlyTx(em -> cityMapper.findByZipCode(em, zipCode));
     }
 
     /**
      * Crée et persiste une ville à partir d'un NPA et d'un nom
+     *
+     * La nouvelle ville est placée dans la région d'entités au commit
+     * Le résultat de City.findAll en cache est invalidé au même moment par le cache des horodatages de la table VILLES
+     * La ville n'est proposée par l'autocomplétion qu'après le commit de la transaction englobante, s'il y en a une
      */
     public City createCity(String zipCode, String cityName) {
-        return doInTx(em -> {
+        City city = doInTx(em -> {
             City c = new City(zipCode, cityName);
             cityMapper.create(em, c);
             return c;
         });
+        afterCommit(() -> autocompleteService.indexCity(city));
+        return city;
+    }
+
+    /**
+     * Variante asynchrone de {@link #createCity(String, String)}
+     */
+    public CompletableFuture<City> createCityAsync(String zipCode, String cityName) {
+        return async(() -> createCity(zipCode, cityName));
     }
 
     /**
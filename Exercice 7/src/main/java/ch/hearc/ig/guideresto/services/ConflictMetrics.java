@@ -0,0 +1,87 @@
+package ch.hearc.ig.guideresto.services;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistiques de conflits de concurrence par restaurant
+ *
+ * Pour chaque restaurant modifié sont comptés
+ * - operations : demandes de modification reçues
+ * - conflicts : conflits détectés (version divergente ou échec du verrou optimiste au commit)
+ * - reapplied : conflits résolus en réappliquant automatiquement la modification
+ * - retries : nouvelles tentatives après un échec du verrou optimiste
+ * - failures : conflits remontés à l'utilisateur
+ */
+public class ConflictMetrics {
+
+    private final Map<Integer, Counters> byRestaurant = new ConcurrentHashMap<>();
+
+    private Counters counters(int restaurantId) {
+        return byRestaurant.computeIfAbsent(restaurantId, id -> new Counters());
+    }
+
+    void recordOperation(int restaurantId) {
+        counters(restaurantId).operations.increment();
+    }
+
+    void recordConflict(int restaurantId) {
+        counters(restaurantId).conflicts.increment();
+    }
+
+    void recordReapplied(int restaurantId) {
+        counters(restaurantId).reapplied.increment();
+    }
+
+    void recordRetry(int restaurantId) {
+        counters(restaurantId).retries.increment();
+    }
+
+    void recordFailure(int restaurantId) {
+        counters(restaurantId).failures.increment();
+    }
+
+    /**
+     * Retourne les statistiques d'un restaurant, ou null si aucune modification n'a été demandée
+     */
+    public Snapshot get(int restaurantId) {
+        Counters c = byRestaurant.get(restaurantId);
+        return c != null ? c.snapshot(restaurantId) : null;
+    }
+
+    /**
+     * Retourne les statistiques de tous les restaurants modifiés
+     */
+    public Map<Integer, Snapshot> snapshot() {
+        Map<Integer, Snapshot> result = new TreeMap<>();
+        byRestaurant.forEach((id, c) -> result.put(id, c.snapshot(id)));
+        return result;
+    }
+
+    private static final class Counters {
+        private final LongAdder operations = new LongAdder();
+        private final LongAdder conflicts = new LongAdder();
+        private final LongAdder reapplied = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        Snapshot snapshot(int restaurantId) {
+            return new Snapshot(restaurantId, operations.sum(), conflicts.sum(), reapplied.sum(), retries.sum(), failures.sum());
+        }
+    }
+
+    /**
+     * Statistiques figées d'un restaurant
+     */
+    public record Snapshot(int restaurantId, long operations, long conflicts, long reapplied, long retries, long failures) {
+
+        /**
+         * Nombre moyen de conflits rencontrés par demande de modification
+         */
+        public double conflictRate() {
+            return operations == 0 ? 0.0 : (double) conflicts / operations;
+        }
+    }
+}
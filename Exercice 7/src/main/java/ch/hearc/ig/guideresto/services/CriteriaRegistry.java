@@ -0,0 +1,97 @@
+package ch.hearc.ig.guideresto.services;
+
+import ch.hearc.ig.guideresto.business.EvaluationCriteria;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Registre en mémoire des critères d'évaluation, indexés par identifiant
+ *
+ * Les critères sont chargés en une seule requête au premier accès, puis servis sans accès à la base
+ * Un identifiant inconnu provoque un rechargement, au plus une fois par intervalle MIN_RELOAD_INTERVAL_MS,
+ * afin de voir un critère ajouté depuis le chargement sans qu'une saisie erronée répétée ne sollicite la base
+ * invalidate vide le registre, le prochain accès le recharge
+ *
+ * Les critères du registre sont détachés : ils servent à la validation et à l'affichage,
+ * une association est posée via EntityManager.getReference sur leur identifiant
+ */
+public final class CriteriaRegistry {
+
+    private static final Logger logger = LogManager.getLogger(CriteriaRegistry.class);
+
+    private static final long MIN_RELOAD_INTERVAL_MS = 5_000;
+
+    private static CriteriaRegistry shared;
+
+    private final Supplier<List<EvaluationCriteria>> loader;
+
+    private volatile Map<Integer, EvaluationCriteria> byId;
+    private volatile long loadedAt;
+
+    public CriteriaRegistry(Supplier<List<EvaluationCriteria>> loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Retourne le registre partagé par les services, alimenté par {@link EvaluationCriteriaService#findAll()}
+     */
+    public static synchronized CriteriaRegistry shared() {
+        if (shared == null) {
+            shared = new CriteriaRegistry(new EvaluationCriteriaService()::findAll);
+        }
+        return shared;
+    }
+
+    /**
+     * Retourne tous les critères, triés par nom
+     */
+    public Collection<EvaluationCriteria> findAll() {
+        return current().values();
+    }
+
+    /**
+     * Retourne le critère correspondant à l'identifiant, ou null s'il n'existe pas
+     */
+    public EvaluationCriteria find(int id) {
+        EvaluationCriteria criteria = current().get(id);
+        if (criteria == null && reloadAllowed()) {
+            criteria = reload().get(id);
+        }
+        return criteria;
+    }
+
+    /**
+     * Vide le registre, à appeler après une modification des critères
+     */
+    public void invalidate() {
+        byId = null;
+    }
+
+    private Map<Integer, EvaluationCriteria> current() {
+        Map<Integer, EvaluationCriteria> snapshot = byId;
+        return snapshot != null ? snapshot : reload();
+    }
+
+    private boolean reloadAllowed() {
+        return System.currentTimeMillis() - loadedAt >= MIN_RELOAD_INTERVAL_MS;
+    }
+
+    private synchronized Map<Integer, EvaluationCriteria> reload() {
+        Map<Integer, EvaluationCriteria> snapshot = new LinkedHashMap<>();
+        for (EvaluationCriteria criteria : loader.get()) {
+            snapshot.put(criteria.getId(), criteria);
+        }
+        snapshot = Collections.unmodifiableMap(snapshot);
+        byId = snapshot;
+        loadedAt = System.currentTimeMillis();
+        logger.debug("Registre des critères chargé : {} critère(s)", snapshot.size());
+        return snapshot;
+    }
+}
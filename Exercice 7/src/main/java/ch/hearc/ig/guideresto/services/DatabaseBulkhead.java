@@ -0,0 +1,168 @@
+package ch.hearc.ig.guideresto.services;
+
+import ch.hearc.ig.guideresto.persistence.jpa.JpaUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Exécuteur des traitements de service asynchrones
+ *
+ * Chaque traitement est exécuté sur un thread virtuel dédié
+ * Un sémaphore borne le nombre de traitements accédant simultanément à la base à la taille du pool de connexions
+ * Les threads virtuels en surnombre attendent un permis au lieu d'attendre une connexion dans le pool,
+ * ce qui évite les timeouts du pool et garde la file d'attente observable
+ *
+ * Une tâche est refusée avec une RejectedExecutionException
+ * - si le nombre de tâches en attente de permis dépasse maxWaiting
+ * - si aucun permis n'est obtenu dans le délai acquireTimeoutMs
+ *
+ * Un traitement asynchrone ne doit pas attendre le résultat d'un autre traitement asynchrone,
+ * il occuperait un permis pendant l'attente et pourrait bloquer le cloisonnement
+ */
+public final class DatabaseBulkhead implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(DatabaseBulkhead.class);
+
+    /**
+     * Réglages par défaut du cloisonnement partagé
+     */
+    private static final int DEFAULT_MAX_WAITING = 10_000;
+    private static final long DEFAULT_ACQUIRE_TIMEOUT_MS = 30_000;
+
+    private static DatabaseBulkhead shared;
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final int maxWaiting;
+    private final long acquireTimeoutMs;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final ExecutorService executor;
+    private final BulkheadMetrics metrics = new BulkheadMetrics();
+
+    public DatabaseBulkhead(int maxConcurrent, int maxWaiting, long acquireTimeoutMs) {
+        if (maxConcurrent < 1 || maxWaiting < 0 || acquireTimeoutMs < 0) {
+            throw new IllegalArgumentException("Cloisonnement invalide : maxConcurrent=" + maxConcurrent
+                    + ", maxWaiting=" + maxWaiting + ", acquireTimeoutMs=" + acquireTimeoutMs);
+        }
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaiting = maxWaiting;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("guideresto-async-", 0).factory());
+    }
+
+    /**
+     * Retourne le cloisonnement partagé par les services, dimensionné sur la taille maximale du pool de connexions
+     */
+    public static synchronized DatabaseBulkhead shared() {
+        if (shared == null) {
+            shared = new DatabaseBulkhead(JpaUtils.getMaxConnections(), DEFAULT_MAX_WAITING, DEFAULT_ACQUIRE_TIMEOUT_MS);
+            logger.info("Cloisonnement asynchrone démarré. maxConcurrent={}", shared.maxConcurrent);
+        }
+        return shared;
+    }
+
+    /**
+     * Ferme le cloisonnement partagé en attendant la fin des traitements en cours
+     * À appeler en fin d'application, avant la fermeture de JPA
+     */
+    public static void closeShared() {
+        DatabaseBulkhead current;
+        synchronized (DatabaseBulkhead.class) {
+            current = shared;
+            shared = null;
+        }
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * Soumet un traitement et retourne un futur complété avec son résultat ou son exception
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> work) {
+        long submittedAt = System.nanoTime();
+        metrics.recordSubmitted();
+
+        if (waiting.incrementAndGet() > maxWaiting) {
+            waiting.decrementAndGet();
+            return reject("file d'attente pleine (" + maxWaiting + " tâche(s))");
+        }
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> run(work, future, submittedAt));
+        } catch (RejectedExecutionException ex) {
+            waiting.decrementAndGet();
+            metrics.recordRejected();
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    /**
+     * Exécution sur le thread virtuel : obtention du permis, traitement, puis restitution du permis
+     */
+    private <T> void run(Supplier<T> work, CompletableFuture<T> future, long submittedAt) {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        } finally {
+            waiting.decrementAndGet();
+        }
+
+        if (!acquired) {
+            metrics.recordRejected();
+            future.completeExceptionally(new RejectedExecutionException(
+                    "Traitement refusé : aucun accès base disponible après " + acquireTimeoutMs + " ms"));
+            return;
+        }
+
+        long startedAt = System.nanoTime();
+        metrics.recordQueued(startedAt - submittedAt);
+        boolean success = false;
+        try {
+            T result = work.get();
+            success = true;
+            future.complete(result);
+        } catch (Throwable ex) {
+            future.completeExceptionally(ex);
+        } finally {
+            permits.release();
+            metrics.recordRun(System.nanoTime() - startedAt, success);
+        }
+    }
+
+    private <T> CompletableFuture<T> reject(String reason) {
+        metrics.recordRejected();
+        return CompletableFuture.failedFuture(new RejectedExecutionException("Traitement refusé : " + reason));
+    }
+
+    /**
+     * Instantané des métriques du cloisonnement
+     */
+    public BulkheadMetrics.Snapshot snapshot() {
+        return metrics.snapshot(maxConcurrent - permits.availablePermits(), waiting.get(), maxConcurrent);
+    }
+
+    /**
+     * Refuse les nouvelles tâches et attend la fin des tâches soumises
+     */
+    @Override
+    public void close() {
+        executor.close();
+        logger.info("Fermeture du cloisonnement asynchrone. {}", snapshot());
+    }
+}
@@ -3,12 +3,14 @@ package ch.hearc.ig.guideresto.services;
 import ch.hearc.ig.guideresto.business.EvaluationCriteria;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service applicatif dédié aux critères d'évaluation
  *
  * Fournit une opération de lecture centralisée pour récupérer la liste des critères
- * La requête est exécutée dans une transaction gérée par la couche service
+ * La requête est exécutée dans une transaction en lecture seule gérée par la couche service
+ * Son résultat est conservé dans le cache de requêtes, voir {@link EvaluationCriteria#FIND_ALL_CACHE_REGION}
  */
 public class EvaluationCriteriaService extends AbstractService {
 
@@ -16,9 +18,16 @@ public class EvaluationCriteriaService extends AbstractService {
      * Retourne tous les critères d'évaluation triés par nom
      */
     public List<EvaluationCriteria> findAll() {
-        return doInTx(em ->
-                em.createQuery("select c from EvaluationCriteria c order by c.name", EvaluationCriteria.class)
+        return doInReadOnlyTx(em ->
+                em.createNamedQuery("EvaluationCriteria.findAll", EvaluationCriteria.class)
                         .getResultList()
         );
     }
+
+    /**
+     * Variante asynchrone de {@link #findAll()}
+     */
+    public CompletableFuture<List<EvaluationCriteria>> findAllAsync() {
+        return async(this::findAll);
+    }
 }
@@ -1,10 +1,26 @@
 package ch.hearc.ig.guideresto.services;
 
 import ch.hearc.ig.guideresto.business.*;
+import ch.hearc.ig.guideresto.persistence.jpa.BasicEvaluationMapper;
+import ch.hearc.ig.guideresto.persistence.jpa.CompleteEvaluationMapper;
+import ch.hearc.ig.guideresto.persistence.jpa.Page;
+import ch.hearc.ig.guideresto.persistence.jpa.RestaurantStatsMapper;
+import ch.hearc.ig.guideresto.persistence.jpa.RestaurantStatsMapper.Delta;
 import jakarta.persistence.EntityManager;
+import org.hibernate.exception.ConstraintViolationException;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service applicatif dédié aux évaluations des restaurants
@@ -12,33 +28,200 @@ import java.util.List;
  * Ce service regroupe les opérations d'écriture liées aux évaluations
  * Il garantit l'exécution transactionnelle et réalise les validations applicatives
  * Les associations sont persistées via les cascades définies dans le modèle JPA
+ *
+ * Les synthèses des évaluations (likes, dislikes, moyennes par critère) sont calculées en base,
+ * sans charger les évaluations elles-mêmes, voir {@link RatingSummary}
+ *
+ * Chaque ajout d'évaluation incrémente les compteurs de RESTAURANT_STATS dans la même transaction,
+ * voir {@link RestaurantStatsService}
  */
 public class EvaluationService extends AbstractService {
 
+    /**
+     * Nombre maximal d'identifiants par liste IN, Oracle en refusant plus de 1000
+     */
+    private static final int IN_LIST_CHUNK = 500;
+
+    private final BasicEvaluationMapper basicEvaluationMapper = new BasicEvaluationMapper();
+    private final CompleteEvaluationMapper completeEvaluationMapper = new CompleteEvaluationMapper();
+    private final RestaurantStatsMapper statsMapper = new RestaurantStatsMapper();
+    private final CriteriaRegistry criteriaRegistry;
+    private final LikeAdmissionFilter admissionFilter;
+
+    public EvaluationService() {
+        this(CriteriaRegistry.shared(), LikeAdmissionFilter.shared());
+    }
+
+    public EvaluationService(CriteriaRegistry criteriaRegistry) {
+        this(criteriaRegistry, LikeAdmissionFilter.shared());
+    }
+
+    public EvaluationService(CriteriaRegistry criteriaRegistry, LikeAdmissionFilter admissionFilter) {
+        this.criteriaRegistry = criteriaRegistry;
+        this.admissionFilter = admissionFilter;
+    }
+
+    /**
+     * Retourne la synthèse des évaluations d'un restaurant
+     */
+    public RatingSummary getRatingSummary(int restaurantId) {
+        return getRatingSummaries(List.of(restaurantId)).get(restaurantId);
+    }
+
+    /**
+     * Variante asynchrone de {@link #getRatingSummary}
+     */
+    public CompletableFuture<RatingSummary> getRatingSummaryAsync(int restaurantId) {
+        return async(() -> getRatingSummary(restaurantId));
+    }
+
+    /**
+     * Retourne la synthèse des évaluations de plusieurs restaurants, dans l'ordre des identifiants fournis
+     *
+     * Les identifiants sont traités par paquets de IN_LIST_CHUNK, avec trois requêtes groupées par paquet
+     * sur LIKES, COMMENTAIRES et NOTES, quel que soit le nombre d'évaluations
+     * Un restaurant sans évaluation figure dans le résultat avec des compteurs à zéro
+     */
+    public Map<Integer, RatingSummary> getRatingSummaries(Collection<Integer> restaurantIds) {
+        List<Integer> ids = List.copyOf(new LinkedHashSet<>(restaurantIds));
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+
+        return doInReadOnlyTx(em -> {
+            // likes, dislikes, évaluations complètes
+            Map<Integer, long[]> counts = new HashMap<>();
+            Map<Integer, List<RatingSummary.CriteriaAverage>> averages = new HashMap<>();
+
+            for (int from = 0; from < ids.size(); from += IN_LIST_CHUNK) {
+                List<Integer> chunk = ids.subList(from, Math.min(from + IN_LIST_CHUNK, ids.size()));
+
+                for (Object[] row : em.createNamedQuery("BasicEvaluation.countByRestaurant", Object[].class)
+                        .setParameter("liked", true)
+                        .setParameter("restaurantIds", chunk)
+                        .getResultList()) {
+                    long likes = ((Number) row[1]).longValue();
+                    long[] c = counts.computeIfAbsent((Integer) row[0], id -> new long[3]);
+                    c[0] = likes;
+                    c[1] = ((Number) row[2]).longValue() - likes;
+                }
+
+                for (Object[] row : em.createNamedQuery("CompleteEvaluation.countByRestaurant", Object[].class)
+                        .setParameter("restaurantIds", chunk)
+                        .getResultList()) {
+                    counts.computeIfAbsent((Integer) row[0], id -> new long[3])[2] = ((Number) row[1]).longValue();
+                }
+
+                for (Object[] row : em.createNamedQuery("Grade.averageByRestaurantAndCriteria", Object[].class)
+                        .setParameter("restaurantIds", chunk)
+                        .getResultList()) {
+                    averages.computeIfAbsent((Integer) row[0], id -> new ArrayList<>())
+                            .add(new RatingSummary.CriteriaAverage(
+                                    (Integer) row[1],
+                                    (String) row[2],
+                                    ((Number) row[3]).doubleValue(),
+                                    ((Number) row[4]).longValue()
+                            ));
+                }
+            }
+
+            Map<Integer, RatingSummary> summaries = new LinkedHashMap<>();
+            for (Integer id : ids) {
+                long[] c = counts.getOrDefault(id, new long[3]);
+                summaries.put(id, new RatingSummary(id, c[0], c[1], c[2], List.copyOf(averages.getOrDefault(id, List.of()))));
+            }
+            return summaries;
+        });
+    }
+
+    /**
+     * Retourne la page d'évaluations complètes d'un restaurant qui suit la clé fournie, ou la première page si after est null
+     * Les évaluations sont triées de la plus récente à la plus ancienne et livrées avec leurs notes et critères
+     */
+    public Page<CompleteEvaluation> findReviewPage(int restaurantId, List<?> after, int size) {
+        return doInReadOnlyTx(em -> completeEvaluationMapper.findPageByRestaurant(em, restaurantId, after, size));
+    }
+
+    /**
+     * Variante asynchrone de {@link #findReviewPage}
+     */
+    public CompletableFuture<Page<CompleteEvaluation>> findReviewPageAsync(int restaurantId, List<?> after, int size) {
+        return async(() -> findReviewPage(restaurantId, after, size));
+    }
+
     /**
      * Ajoute une évaluation simple de type like ou dislike sur un restaurant
      *
-     * L'entité BasicEvaluation est rattachée au restaurant afin de profiter de la cascade
-     * L'identifiant est laissé à null pour être généré par la base
+     * Ajout en écriture seule : le restaurant est référencé via getReference et l'évaluation persistée directement,
+     * sans lire le restaurant ni initialiser sa collection de likes
+     * Le coût ne dépend donc pas du nombre de likes déjà reçus : un INSERT dans LIKES et l'incrément de RESTAURANT_STATS
+     * L'existence du restaurant est garantie par les clés étrangères, une violation est traduite en IllegalArgumentException
+     *
+     * Le like passe d'abord le {@link LikeAdmissionFilter}, un vote répété ou une inondation depuis la même adresse IP
+     * est refusé par une LikeRejectedException sans accès à la base
      */
     public void addBasicEvaluation(int restaurantId, boolean like, Date date, String ipAddress) {
+        admitLike(restaurantId, ipAddress);
         doInTxVoid(em -> {
-            Restaurant r = em.find(Restaurant.class, restaurantId);
-            if (r == null) {
-                throw new IllegalArgumentException("Restaurant introuvable id=" + restaurantId);
+            try {
+                Restaurant ref = em.getReference(Restaurant.class, restaurantId);
+                basicEvaluationMapper.create(em, new BasicEvaluation(date, ref, like, ipAddress));
+                statsMapper.increment(em, Delta.like(restaurantId, like));
+
+                // Envoi immédiat de l'INSERT afin qu'une clé étrangère violée soit signalée ici et non au commit
+                em.flush();
+            } catch (ConstraintViolationException ex) {
+                throw unknownRestaurant(ex, "Restaurant introuvable id=" + restaurantId);
             }
+        });
+    }
 
-            BasicEvaluation eval = new BasicEvaluation(null, date, r, like, ipAddress);
+    /**
+     * Variante asynchrone de {@link #addBasicEvaluation}
+     */
+    public CompletableFuture<Void> addBasicEvaluationAsync(int restaurantId, boolean like, Date date, String ipAddress) {
+        return asyncVoid(() -> addBasicEvaluation(restaurantId, like, date, ipAddress));
+    }
 
-            // Ajout côté collection du restaurant afin de déclencher la cascade de persistance
-            r.getBasicEvaluations().add(eval);
+    /**
+     * Ajoute un lot d'évaluations simples en une seule transaction
+     *
+     * Les restaurants sont référencés via getReference, sans chargement ni initialisation de leur collection d'évaluations
+     * Les INSERT sont envoyés en lots JDBC par {@link BasicEvaluationMapper#persistAll}
+     * Un restaurant inexistant fait échouer la contrainte de clé étrangère et annule l'ensemble du lot,
+     * l'échec est signalé par une IllegalArgumentException
+     *
+     * Les compteurs sont cumulés par restaurant puis incrémentés une fois par restaurant, par identifiant croissant
+     * afin que deux lots concurrents verrouillent les lignes de RESTAURANT_STATS dans le même ordre
+     *
+     * @return nombre d'évaluations ajoutées
+     */
+    public int addBasicEvaluations(List<LikeInput> likes) {
+        return doInTx(em -> {
+            List<BasicEvaluation> evaluations = new ArrayList<>(likes.size());
+            Map<Integer, Delta> deltas = new TreeMap<>();
+            for (LikeInput like : likes) {
+                Restaurant ref = em.getReference(Restaurant.class, like.restaurantId());
+                evaluations.add(new BasicEvaluation(like.date(), ref, like.like(), like.ipAddress()));
+                deltas.merge(like.restaurantId(), Delta.like(like.restaurantId(), like.like()), Delta::plus);
+            }
+            try {
+                int persisted = basicEvaluationMapper.persistAll(em, evaluations);
+                for (Delta delta : deltas.values()) {
+                    statsMapper.increment(em, delta);
+                }
+                return persisted;
+            } catch (ConstraintViolationException ex) {
+                throw unknownRestaurant(ex, "Lot refusé, restaurant introuvable parmi " + deltas.keySet());
+            }
         });
     }
 
     /**
      * Ajoute une évaluation complète avec commentaire et notes sur critères
      *
-     * La méthode délègue l'implémentation à une variante prenant un EntityManager afin de rester
+     * Les notes sont validées avant tout accès à la base, les critères étant résolus par le {@link CriteriaRegistry}
+     * La méthode délègue ensuite l'écriture à une variante prenant un EntityManager afin de rester
      * composable dans un contexte transactionnel
      */
     public void addCompleteEvaluation(
@@ -48,14 +231,30 @@ public class EvaluationService extends AbstractService {
             String username,
             List<GradeInput> grades
     ) {
+        validateGrades(grades);
         doInTxVoid(em -> addCompleteEvaluationTx(em, restaurantId, visitDate, comment, username, grades));
     }
 
+    /**
+     * Variante asynchrone de {@link #addCompleteEvaluation}
+     */
+    public CompletableFuture<Void> addCompleteEvaluationAsync(
+            int restaurantId,
+            Date visitDate,
+            String comment,
+            String username,
+            List<GradeInput> grades
+    ) {
+        return asyncVoid(() -> addCompleteEvaluation(restaurantId, visitDate, comment, username, grades));
+    }
+
     /**
      * Implémentation transactionnelle de l'ajout d'une évaluation complète
      *
-     * Valide l'existence du restaurant et des critères, ainsi que la plage des notes
-     * Crée l'évaluation et les notes associées, puis persiste l'ensemble en une seule transaction
+     * Les notes ont été validées par {@link #validateGrades}, seule l'existence du restaurant est vérifiée ici
+     * Les critères sont référencés via getReference, sans requête
+     * Crée l'évaluation et les notes associées, puis persiste l'ensemble et incrémente les compteurs
+     * du restaurant en une seule transaction : une lecture du restaurant, puis les écritures
      */
     private void addCompleteEvaluationTx(
             EntityManager em,
@@ -70,35 +269,72 @@ public class EvaluationService extends AbstractService {
             throw new IllegalArgumentException("Restaurant introuvable id=" + restaurantId);
         }
 
+        CompleteEvaluation eval = new CompleteEvaluation(visitDate, restaurant, comment, username);
+        List<Integer> values = new ArrayList<>(grades.size());
+
+        for (GradeInput gi : grades) {
+            EvaluationCriteria crit = em.getReference(EvaluationCriteria.class, gi.criteriaId());
+            Grade g = new Grade(gi.grade(), eval, crit);
+            eval.addGrade(g);
+            values.add(gi.grade());
+        }
+
+        // La collection du restaurant n'est pas complétée : l'initialiser chargerait toutes ses évaluations
+        // Persistance de l'évaluation, les notes sont persistées via la cascade définie sur CompleteEvaluation
+        em.persist(eval);
+
+        statsMapper.increment(em, Delta.review(restaurantId, values));
+    }
+
+    /**
+     * Soumet un like au filtre d'admission, lève une LikeRejectedException s'il est refusé
+     * Les lots de {@link #addBasicEvaluations} ne sont pas filtrés, ils proviennent d'imports ou de likes déjà admis
+     */
+    void admitLike(int restaurantId, String ipAddress) {
+        admissionFilter.admit(ipAddress, restaurantId);
+    }
+
+    /**
+     * Traduit la violation d'une clé étrangère vers RESTAURANTS en IllegalArgumentException
+     * Toute autre violation de contrainte est relancée telle quelle
+     */
+    private static RuntimeException unknownRestaurant(ConstraintViolationException ex, String message) {
+        if (ex.getKind() == ConstraintViolationException.ConstraintKind.FOREIGN_KEY) {
+            return new IllegalArgumentException(message, ex);
+        }
+        return ex;
+    }
+
+    /**
+     * Valide les notes d'une évaluation complète sans accéder à la base
+     * Au moins une note, chacune entre 1 et 5, sur un critère connu du registre et noté une seule fois
+     */
+    private void validateGrades(List<GradeInput> grades) {
         if (grades == null || grades.isEmpty()) {
             throw new IllegalArgumentException("Une évaluation complète doit contenir au moins une note");
         }
 
-        CompleteEvaluation eval = new CompleteEvaluation(visitDate, restaurant, comment, username);
-
+        Set<Integer> criteriaIds = new HashSet<>();
         for (GradeInput gi : grades) {
             if (gi.grade() < 1 || gi.grade() > 5) {
                 throw new IllegalArgumentException("Note invalide (" + gi.grade() + "), attendu entre 1 et 5");
             }
-
-            EvaluationCriteria crit = em.find(EvaluationCriteria.class, gi.criteriaId());
-            if (crit == null) {
+            if (!criteriaIds.add(gi.criteriaId())) {
+                throw new IllegalArgumentException("Critère noté plusieurs fois id=" + gi.criteriaId());
+            }
+            if (criteriaRegistry.find(gi.criteriaId()) == null) {
                 throw new IllegalArgumentException("Critère introuvable id=" + gi.criteriaId());
             }
-
-            Grade g = new Grade(gi.grade(), eval, crit);
-            eval.addGrade(g);
         }
-
-        // Maintien de la cohérence de l'association côté Restaurant pour un graphe objet complet en mémoire
-        restaurant.getCompleteEvaluations().add(eval);
-
-        // Persistance de l'évaluation, les notes sont persistées via la cascade définie sur CompleteEvaluation
-        em.persist(eval);
     }
 
     /**
      * Structure d'entrée représentant une note associée à un critère
      */
     public record GradeInput(int criteriaId, int grade) {}
+
+    /**
+     * Structure d'entrée représentant un like ou dislike à ajouter en lot
+     */
+    public record LikeInput(int restaurantId, boolean like, Date date, String ipAddress) {}
 }
@@ -0,0 +1,27 @@
+package ch.hearc.ig.guideresto.services;
+
+/**
+ * Bilan d'un import en masse
+ *
+ * - linesRead : lignes de données lues, hors lignes vides et commentaires
+ * - imported : lignes écrites en base
+ * - rejected : lignes écrites dans le fichier de rejets
+ */
+public record ImportReport(long linesRead, long imported, long rejected, long elapsedMillis) {
+
+    /**
+     * Débit moyen de l'import, en lignes lues par seconde
+     */
+    public double rowsPerSecond() {
+        return elapsedMillis == 0 ? 0.0 : linesRead * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "lues=" + linesRead
+                + ", importées=" + imported
+                + ", rejetées=" + rejected
+                + ", durée=" + elapsedMillis + " ms"
+                + ", débit=" + String.format("%.0f", rowsPerSecond()) + " lignes/s";
+    }
+}
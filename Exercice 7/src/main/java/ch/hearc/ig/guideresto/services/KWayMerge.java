@@ -0,0 +1,61 @@
+package ch.hearc.ig.guideresto.services;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Fusion de k sources déjà triées selon le même ordre
+ *
+ * Un tas contient l'élément de tête de chaque source non épuisée : chaque élément produit coûte O(log k)
+ * Une source n'est avancée que lorsque son élément de tête vient d'être produit, les sources paginées ne lisent
+ * donc que les pages nécessaires aux éléments effectivement consommés
+ * À égalité, l'élément de la source de plus petit rang est produit en premier
+ */
+public final class KWayMerge<T> implements Iterator<T> {
+
+    private final PriorityQueue<Head<T>> heads;
+
+    private KWayMerge(List<? extends Iterator<? extends T>> sources, Comparator<? super T> order) {
+        Comparator<Head<T>> byValue = Comparator.comparing(Head::value, order);
+        this.heads = new PriorityQueue<>(Math.max(1, sources.size()), byValue.thenComparingInt(Head::rank));
+        for (int rank = 0; rank < sources.size(); rank++) {
+            advance(sources.get(rank), rank);
+        }
+    }
+
+    /**
+     * Fusionne les sources fournies, chacune triée selon order
+     */
+    public static <T> Iterator<T> merge(List<? extends Iterator<? extends T>> sources, Comparator<? super T> order) {
+        return new KWayMerge<>(sources, order);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        Head<T> head = heads.poll();
+        if (head == null) {
+            throw new NoSuchElementException();
+        }
+        advance(head.source(), head.rank());
+        return head.value();
+    }
+
+    private void advance(Iterator<? extends T> source, int rank) {
+        if (source.hasNext()) {
+            heads.add(new Head<>(source.next(), source, rank));
+        }
+    }
+
+    /**
+     * Élément de tête d'une source
+     */
+    private record Head<T>(T value, Iterator<? extends T> source, int rank) {}
+}
@@ -0,0 +1,220 @@
+package ch.hearc.ig.guideresto.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Filtre d'admission des likes, par adresse IP et restaurant, appliqué avant tout accès à la base
+ *
+ * Deux limites sur une fenêtre glissante de windowMs millisecondes
+ * - pairLimit likes d'une même adresse IP sur un même restaurant : doublons et votes répétés
+ * - ipLimit likes d'une même adresse IP, tous restaurants confondus : inondation
+ *
+ * Les compteurs sont tenus dans des count-min sketches de depth lignes de width compteurs, un par fenêtre fixe
+ * La fenêtre glissante est estimée à partir de la fenêtre courante et de la précédente, pondérée par la part
+ * de celle-ci encore couverte : courant + précédent * (1 - écoulé / windowMs)
+ * La mémoire est fixe, 2 * depth * width entiers (2 Mo par défaut), quel que soit le nombre d'adresses IP
+ *
+ * Un count-min sketch ne sous-estime jamais un compteur, les collisions peuvent seulement le surestimer :
+ * avec n likes par fenêtre, l'erreur dépasse e * 2n / width avec une probabilité inférieure à exp(-depth),
+ * chaque like comptant pour deux clés. La mise à jour conservatrice réduit fortement cette erreur en pratique
+ * width est donc à dimensionner sur le nombre de likes attendus par fenêtre, les limites étant petites
+ * Le décompte est approché à la bascule de fenêtre, les incréments concurrents de la remise à zéro sont perdus
+ *
+ * Chaque tentative est comptée, y compris refusée : une adresse qui insiste reste bloquée tant qu'elle insiste
+ * Consultation et mise à jour en O(depth), sans verrou : compteurs atomiques et bascule de fenêtre par CAS
+ */
+public final class LikeAdmissionFilter {
+
+    /**
+     * Réglages par défaut du filtre partagé
+     */
+    private static final long DEFAULT_WINDOW_MS = 60_000;
+    private static final int DEFAULT_PAIR_LIMIT = 3;
+    private static final int DEFAULT_IP_LIMIT = 60;
+    private static final int DEFAULT_DEPTH = 4;
+    private static final int DEFAULT_WIDTH = 1 << 16;
+
+    /**
+     * Identifiant de restaurant fictif servant de clé au compteur par adresse IP
+     */
+    private static final int ANY_RESTAURANT = Integer.MIN_VALUE;
+
+    /**
+     * Étiquette d'une fenêtre en cours de remise à zéro
+     */
+    private static final long CLEARING = Long.MIN_VALUE;
+
+    private static LikeAdmissionFilter shared;
+
+    private final long windowMs;
+    private final int pairLimit;
+    private final int ipLimit;
+    private final int depth;
+    private final int width;
+    private final Window[] windows;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejectedPair = new LongAdder();
+    private final LongAdder rejectedIp = new LongAdder();
+
+    public LikeAdmissionFilter(long windowMs, int pairLimit, int ipLimit, int depth, int width) {
+        if (windowMs < 1 || pairLimit < 1 || ipLimit < 1 || depth < 1 || width < 1 || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("Filtre d'admission invalide : windowMs=" + windowMs + ", pairLimit=" + pairLimit
+                    + ", ipLimit=" + ipLimit + ", depth=" + depth + ", width=" + width + " (puissance de 2)");
+        }
+        this.windowMs = windowMs;
+        this.pairLimit = pairLimit;
+        this.ipLimit = ipLimit;
+        this.depth = depth;
+        this.width = width;
+        this.windows = new Window[]{new Window(depth * width), new Window(depth * width)};
+    }
+
+    /**
+     * Retourne le filtre partagé par les services
+     */
+    public static synchronized LikeAdmissionFilter shared() {
+        if (shared == null) {
+            shared = new LikeAdmissionFilter(DEFAULT_WINDOW_MS, DEFAULT_PAIR_LIMIT, DEFAULT_IP_LIMIT, DEFAULT_DEPTH, DEFAULT_WIDTH);
+        }
+        return shared;
+    }
+
+    /**
+     * Compte la tentative et lève une LikeRejectedException si l'une des limites est dépassée
+     */
+    public void admit(String ipAddress, int restaurantId) {
+        String ip = ipAddress == null ? "" : ipAddress;
+        long now = System.currentTimeMillis();
+        long epoch = now / windowMs;
+        double previousWeight = 1.0 - (double) (now % windowMs) / windowMs;
+
+        Window current = current(epoch);
+        Window previous = windows[(int) ((epoch - 1) & 1)];
+        boolean previousValid = previous.epoch.get() == epoch - 1;
+
+        long pairHash = hash(ip, restaurantId);
+        long ipHash = hash(ip, ANY_RESTAURANT);
+        double pairCount = count(current, previousValid ? previous : null, previousWeight, pairHash);
+        double ipCount = count(current, previousValid ? previous : null, previousWeight, ipHash);
+
+        if (pairCount > pairLimit) {
+            rejectedPair.increment();
+            throw new LikeRejectedException("Vote refusé : plus de " + pairLimit + " vote(s) sur ce restaurant en "
+                    + windowMs / 1000 + " s depuis cette adresse");
+        }
+        if (ipCount > ipLimit) {
+            rejectedIp.increment();
+            throw new LikeRejectedException("Vote refusé : plus de " + ipLimit + " vote(s) en "
+                    + windowMs / 1000 + " s depuis cette adresse");
+        }
+        admitted.increment();
+    }
+
+    /**
+     * Incrémente la clé dans la fenêtre courante et retourne l'estimation glissante, tentative comprise
+     *
+     * Mise à jour conservatrice : l'estimation courante est le minimum des compteurs de la clé, chaque compteur
+     * est seulement relevé à ce minimum plus un, les compteurs déjà surestimés par des collisions restent inchangés
+     */
+    private double count(Window current, Window previous, double previousWeight, long hash) {
+        int[] indexes = new int[depth];
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        int now = Integer.MAX_VALUE;
+        int before = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            indexes[row] = row * width + ((h1 + row * h2) & (width - 1));
+            if (current != null) {
+                now = Math.min(now, current.counters.get(indexes[row]));
+            }
+            if (previous != null) {
+                before = Math.min(before, previous.counters.get(indexes[row]));
+            }
+        }
+        if (current != null) {
+            int target = now + 1;
+            for (int index : indexes) {
+                current.counters.accumulateAndGet(index, target, Math::max);
+            }
+            now = target;
+        }
+        return (current != null ? now : 1) + (previous != null ? before * previousWeight : 0.0);
+    }
+
+    /**
+     * Retourne la fenêtre de l'époque fournie, remise à zéro au premier accès
+     * Retourne null si un autre thread est en train de la remettre à zéro, la tentative n'est alors pas comptée
+     */
+    private Window current(long epoch) {
+        Window window = windows[(int) (epoch & 1)];
+        long tag = window.epoch.get();
+        if (tag == epoch) {
+            return window;
+        }
+        if (tag != CLEARING && tag < epoch && window.epoch.compareAndSet(tag, CLEARING)) {
+            for (int i = 0; i < window.counters.length(); i++) {
+                window.counters.set(i, 0);
+            }
+            window.epoch.set(epoch);
+            return window;
+        }
+        return null;
+    }
+
+    /**
+     * Hachage 64 bits de la clé (adresse IP, restaurant) : FNV-1a sur l'adresse, puis mélange final de MurmurHash3
+     */
+    private static long hash(String ip, int restaurantId) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : ip.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= restaurantId * 0x9e3779b97f4a7c15L;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Instantané des compteurs du filtre
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(admitted.sum(), rejectedPair.sum(), rejectedIp.sum());
+    }
+
+    /**
+     * Compteurs de fenêtre fixe, étiquetés par leur époque (instant / windowMs)
+     */
+    private static final class Window {
+
+        private final AtomicLong epoch = new AtomicLong(-1);
+        private final AtomicIntegerArray counters;
+
+        private Window(int size) {
+            this.counters = new AtomicIntegerArray(size);
+        }
+    }
+
+    /**
+     * Instantané des compteurs du filtre : likes admis, refusés par restaurant, refusés par adresse IP
+     */
+    public record Snapshot(long admitted, long rejectedPair, long rejectedIp) {
+
+        public long rejected() {
+            return rejectedPair + rejectedIp;
+        }
+
+        @Override
+        public String toString() {
+            return "admitted=" + admitted + ", rejectedPair=" + rejectedPair + ", rejectedIp=" + rejectedIp;
+        }
+    }
+}
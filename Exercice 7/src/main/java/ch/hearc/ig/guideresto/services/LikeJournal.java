@@ -0,0 +1,285 @@
+package ch.hearc.ig.guideresto.services;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Journal local en ajout seul des likes acceptés par {@link LikeWriteBehind}
+ *
+ * Une ligne par événement, champs séparés par des points-virgules
+ * - L;numéro;restaurant;1|0;date en millisecondes;adresse IP : like accepté, pas encore écrit en base
+ * - C;numéro : tous les likes de numéro inférieur ou égal sont écrits en base
+ *
+ * Chaque ligne est écrite par un appel système dès l'acceptation, elle survit donc à l'arrêt brutal du processus
+ * Avec force à true, elle est en plus forcée sur disque et survit à une coupure de la machine
+ * Le journal est vidé dès que tous les likes acceptés sont écrits en base
+ * Sous un trafic continu, où il reste toujours des likes en attente, il est compacté lorsque sa taille dépasse
+ * le double de celle laissée par la compaction précédente, et au moins {@link #COMPACTION_MIN_BYTES} :
+ * seuls les likes postérieurs au dernier point de reprise sont conservés
+ *
+ * Les méthodes d'écriture ne sont pas synchronisées, l'appelant sérialise les accès
+ */
+final class LikeJournal implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(LikeJournal.class);
+
+    private static final String LIKE = "L";
+    private static final String CHECKPOINT = "C";
+
+    /**
+     * Taille en dessous de laquelle le journal n'est jamais compacté
+     */
+    static final long COMPACTION_MIN_BYTES = 4L * 1024 * 1024;
+
+    private final Path path;
+    private final boolean force;
+    private FileChannel channel;
+
+    /**
+     * Taille du fichier, et taille laissée par la dernière compaction
+     */
+    private long size;
+    private long compactedSize;
+
+    LikeJournal(Path path, boolean force) {
+        this.path = path;
+        this.force = force;
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            if (Files.exists(path)) {
+                truncateIncompleteLine(path);
+            }
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            this.size = channel.size();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Ouverture du journal des likes impossible : " + path, ex);
+        }
+    }
+
+    /**
+     * Relit le journal et retourne les likes acceptés mais non écrits en base, dans l'ordre d'acceptation
+     * Seules les lignes terminées par un saut de ligne sont lues, une dernière ligne incomplète
+     * laissée par un arrêt pendant l'écriture est ignorée
+     */
+    List<Entry> replay() {
+        List<Entry> entries = new ArrayList<>();
+        long checkpoint = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            StringBuilder line = new StringBuilder();
+            int lineNumber = 0;
+            int c;
+            while ((c = reader.read()) != -1) {
+                if (c != '\n') {
+                    line.append((char) c);
+                    continue;
+                }
+                lineNumber++;
+                checkpoint = Math.max(checkpoint, parse(line.toString(), lineNumber, entries));
+                line.setLength(0);
+            }
+            if (!line.isEmpty()) {
+                logger.warn("Journal des likes : dernière ligne incomplète ignorée : {}", line);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Lecture du journal des likes impossible : " + path, ex);
+        }
+
+        long committed = checkpoint;
+        entries.removeIf(entry -> entry.seq() <= committed);
+        return entries;
+    }
+
+    /**
+     * Lit une ligne complète : un like est ajouté à entries, un point de reprise est retourné
+     *
+     * @return numéro du point de reprise, 0 pour une autre ligne
+     */
+    private static long parse(String line, int lineNumber, List<Entry> entries) {
+        String[] fields = line.split(";", 6);
+        try {
+            if (fields[0].equals(CHECKPOINT) && fields.length == 2) {
+                return Long.parseLong(fields[1]);
+            } else if (fields[0].equals(LIKE) && fields.length == 6) {
+                entries.add(new Entry(
+                        Long.parseLong(fields[1]),
+                        new EvaluationService.LikeInput(
+                                Integer.parseInt(fields[2]),
+                                fields[3].equals("1"),
+                                new Date(Long.parseLong(fields[4])),
+                                fields[5]
+                        )
+                ));
+            } else {
+                logger.warn("Journal des likes : ligne {} ignorée : {}", lineNumber, line);
+            }
+        } catch (NumberFormatException ex) {
+            logger.warn("Journal des likes : ligne {} ignorée : {}", lineNumber, line);
+        }
+        return 0;
+    }
+
+    /**
+     * Supprime une dernière ligne incomplète, laissée par un arrêt pendant l'écriture,
+     * afin que la ligne suivante ne s'y accole pas
+     */
+    private static void truncateIncompleteLine(Path path) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long complete = endOfLastLine(file);
+            if (complete < file.size()) {
+                logger.warn("Journal des likes : dernière ligne incomplète de {} octet(s) supprimée", file.size() - complete);
+                file.truncate(complete);
+                file.force(false);
+            }
+        }
+    }
+
+    /**
+     * Position qui suit le dernier saut de ligne du fichier, 0 s'il n'en contient aucun
+     */
+    private static long endOfLastLine(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long position = channel.size();
+        while (position > 0) {
+            int length = (int) Math.min(buffer.capacity(), position);
+            position -= length;
+            buffer.clear().limit(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Fin de fichier inattendue");
+                }
+            }
+            for (int i = length - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Ajoute un like accepté au journal
+     */
+    void append(Entry entry) {
+        write(format(entry));
+    }
+
+    /**
+     * Marque comme écrits en base tous les likes de numéro inférieur ou égal à seq
+     */
+    void checkpoint(long seq) {
+        write(CHECKPOINT + ';' + seq + '\n');
+    }
+
+    /**
+     * Vide le journal, à n'appeler que lorsqu'aucun like accepté n'est en attente d'écriture
+     */
+    void truncate() {
+        try {
+            channel.truncate(0);
+            size = 0;
+            compactedSize = 0;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Troncature du journal des likes impossible : " + path, ex);
+        }
+    }
+
+    /**
+     * Indique si le journal a assez grandi depuis la dernière compaction pour être compacté
+     */
+    boolean needsCompaction() {
+        return size > Math.max(COMPACTION_MIN_BYTES, 2 * compactedSize);
+    }
+
+    /**
+     * Réécrit le journal avec les seuls likes postérieurs au dernier point de reprise
+     *
+     * Le nouveau contenu est écrit et forcé sur disque dans un fichier voisin, qui remplace ensuite le journal
+     * par un renommage atomique : un arrêt pendant la compaction laisse l'ancien journal ou le nouveau, tous deux complets
+     */
+    void compact() {
+        long before = size;
+        List<Entry> remaining = replay();
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        try {
+            try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (Entry entry : remaining) {
+                    writeFully(out, format(entry));
+                }
+                out.force(false);
+            }
+            channel.close();
+            Files.move(compacted, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            size = channel.size();
+            compactedSize = size;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Compaction du journal des likes impossible : " + path, ex);
+        }
+        logger.debug("Journal des likes compacté : {} octet(s) -> {} octet(s), {} like(s) en attente", before, size, remaining.size());
+    }
+
+    private void write(String line) {
+        try {
+            size += writeFully(channel, line);
+            if (force) {
+                channel.force(false);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Écriture dans le journal des likes impossible : " + path, ex);
+        }
+    }
+
+    private static int writeFully(FileChannel target, String line) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+        return length;
+    }
+
+    private static String format(Entry entry) {
+        EvaluationService.LikeInput like = entry.like();
+        return LIKE + ';' + entry.seq() + ';' + like.restaurantId() + ';' + (like.like() ? '1' : '0') + ';'
+                + like.date().getTime() + ';' + like.ipAddress() + '\n';
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            logger.warn("Fermeture du journal des likes impossible : {}", path, ex);
+        }
+    }
+
+    /**
+     * Like numéroté dans l'ordre d'acceptation
+     * acceptedAt est l'instant d'acceptation en nanosecondes (System.nanoTime), il n'est pas journalisé
+     */
+    record Entry(long seq, EvaluationService.LikeInput like, long acceptedAt) {
+
+        Entry(long seq, EvaluationService.LikeInput like) {
+            this(seq, like, System.nanoTime());
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ch.hearc.ig.guideresto.services;
+
+import java.io.Serial;
+
+/**
+ * Exception applicative signalant un like refusé par le filtre d'admission, avant tout accès à la base
+ *
+ * Levée lorsqu'une adresse IP dépasse le nombre de likes autorisés sur un restaurant ou sur l'ensemble des restaurants
+ * pendant la fenêtre de {@link LikeAdmissionFilter}
+ */
+public class LikeRejectedException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Construit une exception avec un message explicite
+     */
+    public LikeRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,280 @@
+package ch.hearc.ig.guideresto.services;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Écriture différée des likes, en remplacement optionnel de {@link EvaluationService#addBasicEvaluation}
+ *
+ * Un like accepté est numéroté, ajouté au {@link LikeJournal} local puis placé dans une file sans verrou
+ * Un unique thread d'écriture vide la file par lots de maxBatch likes, chaque lot en une seule transaction via
+ * {@link EvaluationService#addBasicEvaluations}, toutes les flushIntervalMs ou dès que maxBatch likes sont en attente
+ * Seuls la numérotation et l'ajout au journal sont sérialisés, le temps d'une écriture dans le fichier
+ *
+ * Garanties
+ * - au moins une fois : un like accepté est écrit en base, au redémarrage si nécessaire par relecture du journal
+ *   Un arrêt entre la validation d'un lot et l'écriture de son point de reprise le fait écrire une seconde fois
+ * - un lot refusé pour un restaurant inexistant est repris like par like, seuls les likes fautifs sont abandonnés
+ * - un lot en échec pour une autre raison (base indisponible) est conservé et retenté au cycle suivant
+ * - au plus maxPending likes en attente, au-delà submit lève une RejectedExecutionException
+ *
+ * Les likes en attente ne sont pas encore visibles en base ni dans RESTAURANT_STATS, le délai est suivi par
+ * {@link WriteBehindMetrics}
+ *
+ * Le mode est activé par la propriété système guideresto.likes.writeBehind=true,
+ * le chemin du journal par guideresto.likes.journal
+ */
+public final class LikeWriteBehind implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(LikeWriteBehind.class);
+
+    /**
+     * Réglages par défaut de l'écriture différée partagée
+     */
+    private static final String DEFAULT_JOURNAL = "guideresto-likes.journal";
+    private static final int DEFAULT_MAX_BATCH = 500;
+    private static final long DEFAULT_FLUSH_INTERVAL_MS = 200;
+    private static final int DEFAULT_MAX_PENDING = 100_000;
+
+    private static LikeWriteBehind shared;
+
+    private final EvaluationService evaluationService;
+    private final LikeJournal journal;
+    private final int maxBatch;
+    private final int maxPending;
+    private final ConcurrentLinkedQueue<LikeJournal.Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final ScheduledExecutorService flusher;
+    private final WriteBehindMetrics metrics = new WriteBehindMetrics();
+
+    /**
+     * Lot retiré de la file mais pas encore écrit en base, manipulé uniquement par le thread d'écriture
+     */
+    private volatile List<LikeJournal.Entry> inFlight = List.of();
+    private long nextSeq = 1;
+    private volatile boolean closed;
+
+    public LikeWriteBehind(EvaluationService evaluationService, Path journalPath, boolean forceJournal,
+                           int maxBatch, long flushIntervalMs, int maxPending) {
+        if (maxBatch < 1 || flushIntervalMs < 1 || maxPending < maxBatch) {
+            throw new IllegalArgumentException("Écriture différée invalide : maxBatch=" + maxBatch
+                    + ", flushIntervalMs=" + flushIntervalMs + ", maxPending=" + maxPending);
+        }
+        this.evaluationService = evaluationService;
+        this.maxBatch = maxBatch;
+        this.maxPending = maxPending;
+        this.journal = new LikeJournal(journalPath, forceJournal);
+
+        // Relecture des likes acceptés avant l'arrêt précédent, écrits en base au premier cycle
+        List<LikeJournal.Entry> replayed = journal.replay();
+        for (LikeJournal.Entry entry : replayed) {
+            queue.add(new LikeJournal.Entry(entry.seq(), entry.like()));
+            nextSeq = entry.seq() + 1;
+        }
+        pending.set(replayed.size());
+        if (replayed.isEmpty()) {
+            // Tout est écrit, les points de reprise restants ne doivent pas masquer les numéros réattribués
+            journal.truncate();
+        } else {
+            logger.info("Journal des likes relu : {} like(s) à écrire en base", replayed.size());
+        }
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("guideresto-likes-flusher").daemon().factory());
+        flusher.scheduleWithFixedDelay(this::flushQuietly, 0, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Indique si l'écriture différée des likes est activée
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean("guideresto.likes.writeBehind");
+    }
+
+    /**
+     * Retourne l'écriture différée partagée, démarrée au premier appel avec relecture du journal
+     */
+    public static synchronized LikeWriteBehind shared() {
+        if (shared == null) {
+            Path journalPath = Path.of(System.getProperty("guideresto.likes.journal", DEFAULT_JOURNAL));
+            shared = new LikeWriteBehind(new EvaluationService(), journalPath, false,
+                    DEFAULT_MAX_BATCH, DEFAULT_FLUSH_INTERVAL_MS, DEFAULT_MAX_PENDING);
+            logger.info("Écriture différée des likes démarrée. journal={}", journalPath.toAbsolutePath());
+        }
+        return shared;
+    }
+
+    /**
+     * Ferme l'écriture différée partagée après avoir écrit les likes en attente
+     * À appeler en fin d'application, avant la fermeture de JPA
+     */
+    public static void closeShared() {
+        LikeWriteBehind current;
+        synchronized (LikeWriteBehind.class) {
+            current = shared;
+            shared = null;
+        }
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * Accepte un like, journalisé immédiatement et écrit en base au prochain lot
+     * Aucun accès à la base n'est effectué, l'existence du restaurant est vérifiée à l'écriture du lot
+     * Le like passe le filtre d'admission du service une fois l'écriture différée ouverte et non saturée
+     * Un like refusé n'est ni journalisé ni mis en file, un like refusé par l'écriture différée ne consomme pas de quota
+     */
+    public void submit(int restaurantId, boolean like, Date date, String ipAddress) {
+        Objects.requireNonNull(date, "date");
+        Objects.requireNonNull(ipAddress, "ipAddress");
+        if (ipAddress.indexOf('\n') >= 0 || ipAddress.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("Adresse IP invalide : " + ipAddress);
+        }
+        EvaluationService.LikeInput input = new EvaluationService.LikeInput(restaurantId, like, date, ipAddress);
+
+        int depth;
+        synchronized (journal) {
+            if (closed) {
+                metrics.recordRejected();
+                throw new RejectedExecutionException("Like refusé : écriture différée fermée");
+            }
+            if (pending.get() >= maxPending) {
+                metrics.recordRejected();
+                throw new RejectedExecutionException("Like refusé : " + maxPending + " like(s) déjà en attente");
+            }
+            evaluationService.admitLike(restaurantId, ipAddress);
+            LikeJournal.Entry entry = new LikeJournal.Entry(nextSeq++, input);
+            journal.append(entry);
+            queue.add(entry);
+            depth = pending.incrementAndGet();
+        }
+        metrics.recordAccepted();
+
+        // Un lot complet est écrit sans attendre le prochain cycle
+        if (depth % maxBatch == 0) {
+            try {
+                flusher.execute(this::flushQuietly);
+            } catch (RejectedExecutionException ex) {
+                // Fermeture en cours, le lot est écrit par close
+            }
+        }
+    }
+
+    /**
+     * Écrit en base les likes en attente, par lots, jusqu'à vider la file ou rencontrer un échec
+     * Exécuté par le thread d'écriture, puis une dernière fois par close une fois ce thread arrêté
+     */
+    private void flush() {
+        while (true) {
+            if (inFlight.isEmpty()) {
+                List<LikeJournal.Entry> batch = new ArrayList<>(maxBatch);
+                LikeJournal.Entry entry;
+                while (batch.size() < maxBatch && (entry = queue.poll()) != null) {
+                    batch.add(entry);
+                }
+                if (batch.isEmpty()) {
+                    return;
+                }
+                inFlight = batch;
+            }
+
+            try {
+                evaluationService.addBasicEvaluations(inFlight.stream().map(LikeJournal.Entry::like).toList());
+                metrics.recordBatch(inFlight.size(), inFlight.getFirst().acceptedAt());
+            } catch (IllegalArgumentException ex) {
+                logger.warn("Lot de {} like(s) refusé, reprise like par like : {}", inFlight.size(), ex.getMessage());
+                writeOneByOne();
+            } catch (RuntimeException ex) {
+                metrics.recordFailedBatch();
+                throw ex;
+            }
+            complete(inFlight.getLast().seq(), inFlight.size());
+            inFlight = List.of();
+        }
+    }
+
+    /**
+     * Écrit le lot courant like par like, en abandonnant ceux dont le restaurant n'existe pas
+     * En cas d'autre échec, les likes restants forment le lot retenté au cycle suivant
+     */
+    private void writeOneByOne() {
+        for (int i = 0; i < inFlight.size(); i++) {
+            LikeJournal.Entry entry = inFlight.get(i);
+            try {
+                evaluationService.addBasicEvaluations(List.of(entry.like()));
+                metrics.recordBatch(1, entry.acceptedAt());
+            } catch (IllegalArgumentException ex) {
+                metrics.recordDropped();
+                logger.warn("Like abandonné : {}", ex.getMessage());
+            } catch (RuntimeException ex) {
+                metrics.recordFailedBatch();
+                if (i > 0) {
+                    complete(inFlight.get(i - 1).seq(), i);
+                }
+                inFlight = List.copyOf(inFlight.subList(i, inFlight.size()));
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Marque les count likes du lot jusqu'au numéro seq comme écrits
+     * Le journal est vidé si plus rien n'est en attente, sinon compacté s'il a trop grandi
+     */
+    private void complete(long seq, int count) {
+        synchronized (journal) {
+            journal.checkpoint(seq);
+            if (pending.addAndGet(-count) == 0) {
+                journal.truncate();
+            } else if (journal.needsCompaction()) {
+                journal.compact();
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException ex) {
+            logger.warn("Écriture des likes en attente impossible, nouvel essai au prochain cycle : {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Instantané des métriques, avec la profondeur de la file et l'âge du plus ancien like en attente
+     */
+    public WriteBehindMetrics.Snapshot snapshot() {
+        List<LikeJournal.Entry> current = inFlight;
+        LikeJournal.Entry oldest = current.isEmpty() ? queue.peek() : current.getFirst();
+        long oldestMillis = oldest == null ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest.acceptedAt());
+        return metrics.snapshot(pending.get(), oldestMillis);
+    }
+
+    /**
+     * Refuse les nouveaux likes, arrête le thread d'écriture puis écrit les likes en attente
+     * Les likes qui n'ont pas pu être écrits restent dans le journal et seront relus au prochain démarrage
+     */
+    @Override
+    public void close() {
+        synchronized (journal) {
+            closed = true;
+        }
+        flusher.close();
+        flushQuietly();
+        journal.close();
+        logger.info("Fermeture de l'écriture différée des likes. {}", snapshot());
+    }
+}
@@ -0,0 +1,354 @@
+package ch.hearc.ig.guideresto.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index d'autocomplétion en mémoire : complète le début d'un texte, d'un de ses mots, ou d'un NPA
+ *
+ * Chaque entrée porte un ou plusieurs textes, repliés par {@link TextAnalyzer#fold} ("Neuchâtel" devient "neuchatel")
+ * Un texte est indexé à partir de son début et de chacun de ses mots : "La Chaux-de-Fonds" est trouvé par "la", "cha" ou "fon"
+ *
+ * Tableau de suffixes trié : une clé est un long (numéro de texte, position dans le texte), sans copie du texte
+ * Les clés en début de texte et celles en début de mot sont triées séparément, les premières sont proposées d'abord
+ * Une complétion est une recherche dichotomique suivie d'un parcours des clés qui commencent par le préfixe,
+ * arrêté dès limit entrées distinctes trouvées : O(log n + limit), quel que soit le nombre de clés correspondantes
+ *
+ * Les lectures se font sans verrou sur un instantané immuable
+ * Chaque écriture construit un nouvel instantané par fusion de l'ancien, débarrassé des entrées remplacées,
+ * avec les clés triées des nouvelles entrées : copie O(n) par écriture, les écritures en masse passent donc par {@link #putAll}
+ * L'index est alimenté par {@link AutocompleteService}
+ */
+public final class PrefixIndex {
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /**
+     * Identifiants indexés, tenus par les écritures seules
+     */
+    private final Set<Integer> ids = new HashSet<>();
+
+    /**
+     * Entrées ajoutées, modifiées ou retirées depuis le début de la reconstruction en cours, null hors reconstruction
+     */
+    private Set<Integer> touchedDuringRebuild;
+
+    /**
+     * Ajoute ou remplace une entrée
+     */
+    public void put(Entry entry) {
+        putAll(List.of(entry));
+    }
+
+    /**
+     * Ajoute ou remplace des entrées, en une seule fusion
+     */
+    public synchronized void putAll(Collection<Entry> entries) {
+        Map<Integer, Entry> latest = new LinkedHashMap<>();
+        for (Entry entry : entries) {
+            latest.put(entry.id(), entry);
+        }
+        touchAll(latest.keySet());
+        Set<Integer> removed = new HashSet<>();
+        for (Integer id : latest.keySet()) {
+            if (!ids.add(id)) {
+                removed.add(id);
+            }
+        }
+        snapshot = merge(snapshot, removed, latest.values(), ids.size());
+    }
+
+    /**
+     * Retire une entrée, sans effet si elle n'est pas indexée
+     */
+    public synchronized void remove(int id) {
+        touchAll(Set.of(id));
+        if (ids.remove(id)) {
+            snapshot = merge(snapshot, Set.of(id), List.of(), ids.size());
+        }
+    }
+
+    /**
+     * Démarre une reconstruction : l'index reste consultable et modifiable, les entrées modifiées sont notées
+     * afin d'être relues une fois le nouveau contenu installé par {@link #completeRebuild}
+     */
+    public synchronized void beginRebuild() {
+        if (touchedDuringRebuild != null) {
+            throw new IllegalStateException("Reconstruction de l'index déjà en cours");
+        }
+        touchedDuringRebuild = new HashSet<>();
+    }
+
+    /**
+     * Abandonne la reconstruction en cours, l'index conserve son contenu
+     */
+    public synchronized void abortRebuild() {
+        touchedDuringRebuild = null;
+    }
+
+    /**
+     * Remplace tout le contenu de l'index par les entrées fournies et termine la reconstruction
+     *
+     * @return entrées modifiées pendant la reconstruction, dont la version fournie peut être périmée
+     */
+    public synchronized Set<Integer> completeRebuild(Collection<Entry> entries) {
+        if (touchedDuringRebuild == null) {
+            throw new IllegalStateException("Aucune reconstruction de l'index en cours");
+        }
+        Set<Integer> touched = touchedDuringRebuild;
+        touchedDuringRebuild = null;
+        Map<Integer, Entry> latest = new LinkedHashMap<>();
+        for (Entry entry : entries) {
+            latest.put(entry.id(), entry);
+        }
+        ids.clear();
+        ids.addAll(latest.keySet());
+        snapshot = merge(Snapshot.EMPTY, Set.of(), latest.values(), ids.size());
+        return touched;
+    }
+
+    /**
+     * Nombre d'entrées indexées
+     */
+    public int size() {
+        return snapshot.size();
+    }
+
+    /**
+     * Retourne au plus limit entrées dont un texte, ou un mot d'un texte, commence par le préfixe
+     * Casse et accents sont ignorés
+     * Les entrées dont un texte commence par le préfixe viennent en premier, chaque groupe dans l'ordre alphabétique
+     */
+    public List<Completion> complete(String prefix, int limit) {
+        String folded = prefix == null ? "" : TextAnalyzer.fold(prefix.strip());
+        if (folded.isEmpty() || limit < 1) {
+            return List.of();
+        }
+        Snapshot current = snapshot;
+        List<Completion> completions = new ArrayList<>(limit);
+        collect(current, current.starts(), folded, limit, completions);
+        if (completions.size() < limit) {
+            collect(current, current.words(), folded, limit, completions);
+        }
+        return completions;
+    }
+
+    private static void collect(Snapshot s, long[] keys, String prefix, int limit, List<Completion> completions) {
+        for (int i = lowerBound(s.texts(), keys, prefix); i < keys.length && completions.size() < limit; i++) {
+            int text = text(keys[i]);
+            if (!s.texts()[text].startsWith(prefix, offset(keys[i]))) {
+                return;
+            }
+            Completion owner = s.owners()[text];
+            if (!contains(completions, owner.id())) {
+                completions.add(owner);
+            }
+        }
+    }
+
+    private static boolean contains(List<Completion> completions, int id) {
+        for (Completion completion : completions) {
+            if (completion.id() == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Position de la première clé dont le suffixe n'est pas inférieur au préfixe
+     */
+    private static int lowerBound(String[] texts, long[] keys, String prefix) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(texts[text(keys[middle])], offset(keys[middle]), prefix, 0) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void touchAll(Collection<Integer> touched) {
+        if (touchedDuringRebuild != null) {
+            touchedDuringRebuild.addAll(touched);
+        }
+    }
+
+    /**
+     * Construit l'instantané suivant : textes de l'ancien dont l'entrée n'est pas retirée, puis textes des entrées ajoutées
+     * Les clés conservées restent triées, seules celles des entrées ajoutées sont triées puis insérées par recherche dichotomique
+     * Sans entrée retirée, cas des créations et de l'import, les tableaux de l'ancien instantané sont copiés tels quels
+     */
+    private static Snapshot merge(Snapshot old, Set<Integer> removed, Collection<Entry> added, int size) {
+        int oldCount = old.texts().length;
+        int[] remap = null;
+        int kept = oldCount;
+        if (!removed.isEmpty()) {
+            remap = new int[oldCount];
+            kept = 0;
+            for (int i = 0; i < oldCount; i++) {
+                remap[i] = removed.contains(old.owners()[i].id()) ? -1 : kept++;
+            }
+        }
+
+        List<String> addedTexts = new ArrayList<>();
+        List<Completion> addedOwners = new ArrayList<>();
+        for (Entry entry : added) {
+            Completion owner = new Completion(entry.id(), entry.label(), entry.detail());
+            for (String text : entry.texts()) {
+                String folded = text == null ? "" : TextAnalyzer.fold(text.strip());
+                if (!folded.isEmpty()) {
+                    addedTexts.add(folded);
+                    addedOwners.add(owner);
+                }
+            }
+        }
+
+        String[] texts = new String[kept + addedTexts.size()];
+        Completion[] owners = new Completion[texts.length];
+        if (remap == null) {
+            System.arraycopy(old.texts(), 0, texts, 0, oldCount);
+            System.arraycopy(old.owners(), 0, owners, 0, oldCount);
+        } else {
+            for (int i = 0; i < oldCount; i++) {
+                if (remap[i] >= 0) {
+                    texts[remap[i]] = old.texts()[i];
+                    owners[remap[i]] = old.owners()[i];
+                }
+            }
+        }
+        List<Long> addedStarts = new ArrayList<>();
+        List<Long> addedWords = new ArrayList<>();
+        for (int t = kept; t < texts.length; t++) {
+            texts[t] = addedTexts.get(t - kept);
+            owners[t] = addedOwners.get(t - kept);
+            String text = texts[t];
+            addedStarts.add(key(t, 0));
+            for (int i = 1; i < text.length(); i++) {
+                if (Character.isLetterOrDigit(text.charAt(i)) && !Character.isLetterOrDigit(text.charAt(i - 1))) {
+                    addedWords.add(key(t, i));
+                }
+            }
+        }
+
+        return new Snapshot(texts, owners,
+                mergeKeys(remapKeys(old.starts(), remap), addedStarts, texts, owners),
+                mergeKeys(remapKeys(old.words(), remap), addedWords, texts, owners),
+                size);
+    }
+
+    /**
+     * Renumérote les clés conservées et écarte celles des textes retirés, l'ordre est inchangé
+     */
+    private static long[] remapKeys(long[] keys, int[] remap) {
+        if (remap == null) {
+            return keys;
+        }
+        long[] kept = new long[keys.length];
+        int size = 0;
+        for (long key : keys) {
+            int text = remap[text(key)];
+            if (text >= 0) {
+                kept[size++] = key(text, offset(key));
+            }
+        }
+        return Arrays.copyOf(kept, size);
+    }
+
+    /**
+     * Insère les clés ajoutées, une fois triées, dans les clés conservées : O(n) copies et O(m log n) comparaisons
+     */
+    private static long[] mergeKeys(long[] kept, List<Long> added, String[] texts, Completion[] owners) {
+        added.sort((a, b) -> compareKeys(a, b, texts, owners));
+        long[] merged = new long[kept.length + added.size()];
+        int from = 0;
+        int size = 0;
+        for (long key : added) {
+            int low = from;
+            int high = kept.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (compareKeys(kept[middle], key, texts, owners) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            System.arraycopy(kept, from, merged, size, low - from);
+            size += low - from;
+            from = low;
+            merged[size++] = key;
+        }
+        System.arraycopy(kept, from, merged, size, kept.length - from);
+        return merged;
+    }
+
+    /**
+     * Ordre des clés : suffixe, puis libellé et identifiant de l'entrée pour un ordre stable entre suffixes égaux
+     */
+    private static int compareKeys(long a, long b, String[] texts, Completion[] owners) {
+        int bySuffix = compare(texts[text(a)], offset(a), texts[text(b)], offset(b));
+        if (bySuffix != 0) {
+            return bySuffix;
+        }
+        Completion ownerA = owners[text(a)];
+        Completion ownerB = owners[text(b)];
+        int byLabel = ownerA.label().compareTo(ownerB.label());
+        return byLabel != 0 ? byLabel : Integer.compare(ownerA.id(), ownerB.id());
+    }
+
+    /**
+     * Compare a.substring(aFrom) et b.substring(bFrom) sans les copier
+     */
+    private static int compare(String a, int aFrom, String b, int bFrom) {
+        int length = Math.min(a.length() - aFrom, b.length() - bFrom);
+        for (int i = 0; i < length; i++) {
+            char ca = a.charAt(aFrom + i);
+            char cb = b.charAt(bFrom + i);
+            if (ca != cb) {
+                return ca - cb;
+            }
+        }
+        return (a.length() - aFrom) - (b.length() - bFrom);
+    }
+
+    private static long key(int text, int offset) {
+        return (long) text << 32 | offset;
+    }
+
+    private static int text(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private static int offset(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Contenu immuable de l'index : textes repliés et entrée de chacun, clés de début de texte et de début de mot triées
+     */
+    private record Snapshot(String[] texts, Completion[] owners, long[] starts, long[] words, int size) {
+
+        private static final Snapshot EMPTY = new Snapshot(new String[0], new Completion[0], new long[0], new long[0], 0);
+    }
+
+    /**
+     * Entrée à indexer : identifiant, libellé et précision affichés, textes complétés
+     */
+    public record Entry(int id, String label, String detail, List<String> texts) {}
+
+    /**
+     * Entrée proposée pour un préfixe
+     */
+    public record Completion(int id, String label, String detail) {}
+}
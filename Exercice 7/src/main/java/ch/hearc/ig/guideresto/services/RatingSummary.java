@@ -0,0 +1,18 @@
+package ch.hearc.ig.guideresto.services;
+
+import java.util.List;
+
+/**
+ * Synthèse des évaluations d'un restaurant, calculée en base par des requêtes groupées
+ *
+ * - likes / dislikes : évaluations simples positives et négatives
+ * - reviews : évaluations complètes
+ * - criteria : moyenne des notes par critère, triée par nom de critère
+ */
+public record RatingSummary(int restaurantId, long likes, long dislikes, long reviews, List<CriteriaAverage> criteria) {
+
+    /**
+     * Moyenne des notes d'un critère et nombre de notes prises en compte
+     */
+    public record CriteriaAverage(int criteriaId, String criteriaName, double average, long grades) {}
+}
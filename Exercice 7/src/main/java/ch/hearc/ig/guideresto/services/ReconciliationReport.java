@@ -0,0 +1,26 @@
+package ch.hearc.ig.guideresto.services;
+
+/**
+ * Bilan d'une réconciliation de la table RESTAURANT_STATS
+ *
+ * - restaurants : restaurants contrôlés
+ * - drifted : lignes existantes dont les compteurs différaient des tables de base, corrigées
+ * - created : lignes absentes, créées à partir des tables de base
+ */
+public record ReconciliationReport(long restaurants, long drifted, long created, long elapsedMillis) {
+
+    /**
+     * Vrai si aucune ligne n'a dû être corrigée ou créée
+     */
+    public boolean isConsistent() {
+        return drifted == 0 && created == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "restaurants=" + restaurants
+                + ", corrigés=" + drifted
+                + ", créés=" + created
+                + ", durée=" + elapsedMillis + " ms";
+    }
+}
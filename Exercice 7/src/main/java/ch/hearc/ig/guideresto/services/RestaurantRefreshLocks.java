@@ -0,0 +1,49 @@
+package ch.hearc.ig.guideresto.services;
+
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Verrous des relectures de restaurants par les index en mémoire, un par tranche d'identifiants
+ *
+ * Une relecture en base et la publication de son résultat se font sous les verrous des restaurants concernés
+ * Deux relectures concurrentes d'un même restaurant, après deux modifications successives par exemple,
+ * sont ainsi publiées dans l'ordre de leurs lectures : la dernière publiée reflète le dernier état validé
+ * Partagés par {@link RestaurantSearchService} et {@link AutocompleteService}
+ */
+final class RestaurantRefreshLocks {
+
+    private static final ReentrantLock[] LOCKS = Stream.generate(ReentrantLock::new)
+            .limit(64)
+            .toArray(ReentrantLock[]::new);
+
+    private RestaurantRefreshLocks() {
+    }
+
+    /**
+     * Prend les verrous des restaurants fournis, par numéro de tranche croissant pour éviter tout interblocage
+     *
+     * @return tranches verrouillées, à fournir à {@link #unlock}
+     */
+    static int[] lock(Collection<Integer> restaurantIds) {
+        int[] stripes = restaurantIds.stream()
+                .mapToInt(id -> Math.floorMod(id, LOCKS.length))
+                .distinct()
+                .sorted()
+                .toArray();
+        for (int stripe : stripes) {
+            LOCKS[stripe].lock();
+        }
+        return stripes;
+    }
+
+    /**
+     * Rend les verrous pris par {@link #lock}
+     */
+    static void unlock(int[] stripes) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            LOCKS[stripes[i]].unlock();
+        }
+    }
+}
@@ -0,0 +1,552 @@
+package ch.hearc.ig.guideresto.services;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index plein texte en mémoire des restaurants : nom, description et nom de ville
+ *
+ * Index inversé : pour chaque mot, produit par {@link TextAnalyzer}, la liste des documents qui le contiennent
+ * avec sa fréquence pondérée par champ (nom NAME_WEIGHT, ville CITY_WEIGHT, description 1)
+ * Les résultats sont classés par BM25 (k1 = 1.2, b = 0.75), la longueur d'un document étant elle aussi pondérée
+ * Une requête ne parcourt que les listes de ses mots, son coût dépend de leur fréquence et non du nombre de restaurants
+ *
+ * La part de BM25 propre à une entrée, fréquence normalisée par la longueur du document, est précalculée à l'ajout
+ * Une requête se réduit donc à une somme idf * impact par entrée, puis à la sélection des meilleurs par un tas borné
+ * Les impacts sont recalculés lorsque la longueur moyenne des documents s'écarte de plus de IMPACT_DRIFT
+ * de celle utilisée pour les calculer
+ *
+ * Un document modifié est ajouté sous un nouveau numéro interne et l'ancien marqué supprimé
+ * Les entrées supprimées sont ignorées à la lecture, puis purgées dès qu'elles dépassent le quart des documents indexés
+ * La purge renumérote les documents restants de façon contiguë : les tableaux par numéro interne,
+ * comme les accumulateurs de scores, restent ainsi proportionnés au nombre de restaurants indexés
+ *
+ * Lectures concurrentes, écritures exclusives via un verrou lecture / écriture
+ * Une reconstruction analyse les documents hors verrou puis remplace le contenu d'un bloc, l'index reste
+ * consultable pendant ce temps
+ * L'index est alimenté par {@link RestaurantSearchService}
+ */
+public final class RestaurantSearchIndex {
+
+    private static final float NAME_WEIGHT = 3f;
+    private static final float CITY_WEIGHT = 2f;
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final double IMPACT_DRIFT = 0.1;
+
+    /**
+     * Accumulateurs de scores réutilisés d'une requête à l'autre par chaque thread, remis à zéro après usage
+     */
+    private static final ThreadLocal<Accumulator> accumulators = ThreadLocal.withInitial(Accumulator::new);
+
+    private static RestaurantSearchIndex shared;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<Integer, Integer> docByRestaurant = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private int[] restaurantIds = new int[1024];
+    private float[] lengths = new float[1024];
+    private String[][] terms = new String[1024][];
+    private Document[] documents = new Document[1024];
+    private int docCount;
+    private int deletedCount;
+    private double totalLength;
+    private float impactAverageLength;
+
+    /**
+     * Restaurants ajoutés, modifiés ou retirés depuis le début de la reconstruction en cours, null hors reconstruction
+     */
+    private Set<Integer> touchedDuringRebuild;
+
+    /**
+     * Retourne l'index partagé par les services
+     */
+    public static synchronized RestaurantSearchIndex shared() {
+        if (shared == null) {
+            shared = new RestaurantSearchIndex();
+        }
+        return shared;
+    }
+
+    /**
+     * Analyse un document, sans accès à l'index
+     * Les analyses sont indépendantes et peuvent être exécutées en parallèle avant {@link #putAll}
+     */
+    public static Analyzed analyze(Document document) {
+        Map<String, Float> frequencies = new LinkedHashMap<>();
+        float length = addField(frequencies, document.name(), NAME_WEIGHT)
+                + addField(frequencies, document.cityName(), CITY_WEIGHT)
+                + addField(frequencies, document.description(), 1f);
+
+        String[] docTerms = frequencies.keySet().toArray(String[]::new);
+        float[] docFrequencies = new float[docTerms.length];
+        for (int i = 0; i < docTerms.length; i++) {
+            docFrequencies[i] = frequencies.get(docTerms[i]);
+        }
+        return new Analyzed(document, docTerms, docFrequencies, length);
+    }
+
+    private static float addField(Map<String, Float> frequencies, String text, float weight) {
+        List<String> tokens = TextAnalyzer.tokens(text);
+        for (String token : tokens) {
+            frequencies.merge(token, weight, Float::sum);
+        }
+        return tokens.size() * weight;
+    }
+
+    /**
+     * Ajoute ou remplace le document d'un restaurant
+     */
+    public void put(Document document) {
+        putAll(List.of(analyze(document)));
+    }
+
+    /**
+     * Ajoute ou remplace des documents déjà analysés, sous un seul verrou d'écriture
+     */
+    public void putAll(Collection<Analyzed> analyzed) {
+        lock.writeLock().lock();
+        try {
+            for (Analyzed a : analyzed) {
+                touch(a.document().restaurantId());
+                removeLocked(a.document().restaurantId());
+                addLocked(a);
+            }
+            purgeIfNeeded();
+            recomputeImpactsIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Démarre une reconstruction : l'index reste consultable et modifiable, les restaurants modifiés sont notés
+     * afin d'être relus une fois le nouveau contenu installé par {@link #completeRebuild}
+     */
+    public void beginRebuild() {
+        lock.writeLock().lock();
+        try {
+            if (touchedDuringRebuild != null) {
+                throw new IllegalStateException("Reconstruction de l'index déjà en cours");
+            }
+            touchedDuringRebuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Abandonne la reconstruction en cours, l'index conserve son contenu
+     */
+    public void abortRebuild() {
+        lock.writeLock().lock();
+        try {
+            touchedDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remplace tout le contenu de l'index par les documents fournis et termine la reconstruction
+     *
+     * @return restaurants modifiés pendant la reconstruction, dont le document fourni peut être périmé
+     */
+    public Set<Integer> completeRebuild(Collection<Analyzed> analyzed) {
+        lock.writeLock().lock();
+        try {
+            if (touchedDuringRebuild == null) {
+                throw new IllegalStateException("Aucune reconstruction de l'index en cours");
+            }
+            Set<Integer> touched = touchedDuringRebuild;
+            touchedDuringRebuild = null;
+            postings.clear();
+            docByRestaurant.clear();
+            deleted.clear();
+            int capacity = Math.max(1024, analyzed.size());
+            restaurantIds = new int[capacity];
+            lengths = new float[capacity];
+            terms = new String[capacity][];
+            documents = new Document[capacity];
+            docCount = 0;
+            deletedCount = 0;
+            totalLength = 0;
+            double length = 0;
+            for (Analyzed a : analyzed) {
+                length += a.length();
+            }
+            impactAverageLength = analyzed.isEmpty() ? 0f : (float) (length / analyzed.size());
+            for (Analyzed a : analyzed) {
+                removeLocked(a.document().restaurantId());
+                addLocked(a);
+            }
+            return touched;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retire le document d'un restaurant, sans effet s'il n'est pas indexé
+     */
+    public void remove(int restaurantId) {
+        lock.writeLock().lock();
+        try {
+            touch(restaurantId);
+            removeLocked(restaurantId);
+            purgeIfNeeded();
+            recomputeImpactsIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Nombre de restaurants indexés
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docByRestaurant.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retourne au plus limit restaurants correspondant à la requête, du plus pertinent au moins pertinent
+     * Un restaurant correspond dès qu'il contient l'un des mots de la requête, ceux qui en contiennent davantage
+     * ou des plus rares sont classés en premier
+     */
+    public List<SearchHit> search(String query, int limit) {
+        List<String> queryTerms = TextAnalyzer.tokens(query).stream().distinct().toList();
+        if (queryTerms.isEmpty() || limit < 1) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        Accumulator accumulator = accumulators.get();
+        float[] scores = accumulator.scores(restaurantIds.length);
+        int[] matched = accumulator.matched;
+        int matchedCount = 0;
+        try {
+            int live = docByRestaurant.size();
+            for (String term : queryTerms) {
+                Postings list = postings.get(term);
+                if (list == null || list.live == 0) {
+                    continue;
+                }
+                float idf = (float) Math.log(1 + (live - list.live + 0.5) / (list.live + 0.5));
+                matchedCount = accumulate(list, idf, list.live < list.size ? deleted : null, scores, matched, matchedCount);
+            }
+
+            // Tas des limit meilleurs, le moins bon en tête : score croissant, puis numéro de restaurant décroissant
+            int[] heap = new int[Math.min(limit, matchedCount)];
+            int heapSize = 0;
+            for (int i = 0; i < matchedCount; i++) {
+                int doc = matched[i];
+                if (heapSize < heap.length) {
+                    heap[heapSize] = doc;
+                    siftUp(heap, heapSize++, scores);
+                } else if (worse(heap[0], doc, scores)) {
+                    heap[0] = doc;
+                    siftDown(heap, heapSize, scores);
+                }
+            }
+
+            SearchHit[] hits = new SearchHit[heapSize];
+            for (int i = heapSize - 1; i >= 0; i--) {
+                int doc = heap[0];
+                heap[0] = heap[i];
+                siftDown(heap, i, scores);
+                Document document = documents[doc];
+                hits[i] = new SearchHit(document.restaurantId(), document.name(), document.cityName(), scores[doc]);
+            }
+            return Arrays.asList(hits);
+        } finally {
+            for (int i = 0; i < matchedCount; i++) {
+                scores[matched[i]] = 0f;
+            }
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ajoute la contribution d'un mot aux scores des documents de sa liste, en ignorant les documents supprimés
+     * Boucle courte isolée afin d'être compilée indépendamment de search
+     *
+     * @return nombre de documents touchés, y compris ceux ajoutés par cette liste
+     */
+    private static int accumulate(Postings list, float idf, BitSet deleted, float[] scores, int[] matched, int matchedCount) {
+        int[] docs = list.docs;
+        float[] impacts = list.impacts;
+        for (int i = 0, size = list.size; i < size; i++) {
+            int doc = docs[i];
+            if (deleted != null && deleted.get(doc)) {
+                continue;
+            }
+            float score = scores[doc];
+            // Sans branche : le numéro est toujours écrit, il n'est conservé que pour un premier score
+            matched[matchedCount] = doc;
+            matchedCount += score == 0f ? 1 : 0;
+            scores[doc] = score + idf * impacts[i];
+        }
+        return matchedCount;
+    }
+
+    /**
+     * Indique si le document a est moins bien classé que b
+     */
+    private boolean worse(int a, int b, float[] scores) {
+        return scores[a] < scores[b] || (scores[a] == scores[b] && restaurantIds[a] > restaurantIds[b]);
+    }
+
+    private void siftUp(int[] heap, int index, float[] scores) {
+        int doc = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!worse(doc, heap[parent], scores)) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = doc;
+    }
+
+    private void siftDown(int[] heap, int size, float[] scores) {
+        int index = 0;
+        int doc = heap[0];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && worse(heap[child + 1], heap[child], scores)) {
+                child++;
+            }
+            if (!worse(heap[child], doc, scores)) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = doc;
+    }
+
+    private void touch(int restaurantId) {
+        if (touchedDuringRebuild != null) {
+            touchedDuringRebuild.add(restaurantId);
+        }
+    }
+
+    private void addLocked(Analyzed analyzed) {
+        if (docCount == restaurantIds.length) {
+            int capacity = docCount * 2;
+            restaurantIds = Arrays.copyOf(restaurantIds, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            terms = Arrays.copyOf(terms, capacity);
+            documents = Arrays.copyOf(documents, capacity);
+        }
+        int doc = docCount++;
+        Document document = analyzed.document();
+        restaurantIds[doc] = document.restaurantId();
+        lengths[doc] = analyzed.length();
+        terms[doc] = analyzed.terms();
+        // La description n'est pas conservée, seuls le nom et la ville servent à l'affichage des résultats
+        documents[doc] = new Document(document.restaurantId(), document.name(), null, document.cityName());
+        docByRestaurant.put(document.restaurantId(), doc);
+        totalLength += analyzed.length();
+        if (impactAverageLength == 0f) {
+            impactAverageLength = Math.max(analyzed.length(), 1f);
+        }
+
+        for (int i = 0; i < analyzed.terms().length; i++) {
+            float frequency = analyzed.frequencies()[i];
+            postings.computeIfAbsent(analyzed.terms()[i], t -> new Postings())
+                    .add(doc, frequency, impact(frequency, analyzed.length()));
+        }
+    }
+
+    /**
+     * Part de BM25 d'une entrée hors idf, pour la longueur moyenne impactAverageLength
+     */
+    private float impact(float frequency, float length) {
+        return frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / impactAverageLength));
+    }
+
+    /**
+     * Recalcule tous les impacts si la longueur moyenne des documents a trop varié depuis leur calcul
+     */
+    private void recomputeImpactsIfNeeded() {
+        int live = docByRestaurant.size();
+        if (live == 0 || impactAverageLength == 0f) {
+            return;
+        }
+        double average = totalLength / live;
+        if (Math.abs(average / impactAverageLength - 1) <= IMPACT_DRIFT) {
+            return;
+        }
+        impactAverageLength = (float) Math.max(average, 1.0);
+        for (Postings list : postings.values()) {
+            for (int i = 0; i < list.size; i++) {
+                list.impacts[i] = impact(list.frequencies[i], lengths[list.docs[i]]);
+            }
+        }
+    }
+
+    private void removeLocked(int restaurantId) {
+        Integer doc = docByRestaurant.remove(restaurantId);
+        if (doc == null) {
+            return;
+        }
+        deleted.set(doc);
+        deletedCount++;
+        totalLength -= lengths[doc];
+        for (String term : terms[doc]) {
+            postings.get(term).live--;
+        }
+        terms[doc] = null;
+        documents[doc] = null;
+    }
+
+    /**
+     * Purge les documents supprimés lorsqu'ils dépassent le quart des documents indexés
+     *
+     * Les documents restants sont renumérotés dans leur ordre, les listes restent donc triées par numéro croissant
+     * Les tableaux par numéro interne sont réalloués à la taille utile, avec une marge de moitié
+     */
+    private void purgeIfNeeded() {
+        int live = docByRestaurant.size();
+        if (deletedCount < 64 || deletedCount * 4 < live) {
+            return;
+        }
+
+        int[] renumbered = new int[docCount];
+        int capacity = Math.max(1024, live + (live >>> 1));
+        int[] newRestaurantIds = new int[capacity];
+        float[] newLengths = new float[capacity];
+        String[][] newTerms = new String[capacity][];
+        Document[] newDocuments = new Document[capacity];
+        int next = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (deleted.get(doc)) {
+                renumbered[doc] = -1;
+                continue;
+            }
+            renumbered[doc] = next;
+            newRestaurantIds[next] = restaurantIds[doc];
+            newLengths[next] = lengths[doc];
+            newTerms[next] = terms[doc];
+            newDocuments[next] = documents[doc];
+            next++;
+        }
+
+        postings.values().removeIf(list -> {
+            list.purge(renumbered);
+            return list.size == 0;
+        });
+        docByRestaurant.replaceAll((restaurantId, doc) -> renumbered[doc]);
+        restaurantIds = newRestaurantIds;
+        lengths = newLengths;
+        terms = newTerms;
+        documents = newDocuments;
+        docCount = next;
+        deleted.clear();
+        deletedCount = 0;
+    }
+
+    /**
+     * Liste des documents contenant un mot, par numéro interne croissant
+     * live est le nombre de documents non supprimés, utilisé comme fréquence documentaire par BM25
+     */
+    private static final class Postings {
+
+        private int[] docs = new int[4];
+        private float[] frequencies = new float[4];
+        private float[] impacts = new float[4];
+        private int size;
+        private int live;
+
+        private void add(int doc, float frequency, float impact) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+                impacts = Arrays.copyOf(impacts, size * 2);
+            }
+            docs[size] = doc;
+            frequencies[size] = frequency;
+            impacts[size] = impact;
+            size++;
+            live++;
+        }
+
+        /**
+         * Retire les documents supprimés, de nouveau numéro -1, et renumérote les autres
+         */
+        private void purge(int[] renumbered) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int doc = renumbered[docs[i]];
+                if (doc >= 0) {
+                    docs[kept] = doc;
+                    frequencies[kept] = frequencies[i];
+                    impacts[kept] = impacts[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            if (docs.length > 4 && size < docs.length / 4) {
+                int length = Math.max(4, size * 2);
+                docs = Arrays.copyOf(docs, length);
+                frequencies = Arrays.copyOf(frequencies, length);
+                impacts = Arrays.copyOf(impacts, length);
+            }
+        }
+    }
+
+    /**
+     * Scores par numéro interne et numéros des documents touchés par la requête en cours
+     * Dimensionnés sur la capacité des tableaux de l'index, réalloués lorsqu'elle grandit ou diminue après une purge
+     */
+    private static final class Accumulator {
+
+        private float[] scores = new float[0];
+        private int[] matched = new int[0];
+
+        private float[] scores(int capacity) {
+            if (scores.length < capacity || scores.length > 2 * capacity) {
+                scores = new float[capacity];
+                // Une case de plus pour l'écriture sans branche de accumulate
+                matched = new int[capacity + 1];
+            }
+            return scores;
+        }
+    }
+
+    /**
+     * Texte indexé d'un restaurant
+     */
+    public record Document(int restaurantId, String name, String description, String cityName) {}
+
+    /**
+     * Document analysé, prêt à être ajouté à l'index
+     */
+    public record Analyzed(Document document, String[] terms, float[] frequencies, float length) {}
+
+    /**
+     * Restaurant trouvé, avec son score BM25
+     */
+    public record SearchHit(int restaurantId, String name, String cityName, float score) {}
+}
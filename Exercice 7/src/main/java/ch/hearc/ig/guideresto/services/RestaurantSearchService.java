@@ -0,0 +1,177 @@
+package ch.hearc.ig.guideresto.services;
+
+import ch.hearc.ig.guideresto.business.Restaurant;
+import ch.hearc.ig.guideresto.persistence.jpa.RestaurantMapper;
+import ch.hearc.ig.guideresto.services.RestaurantSearchIndex.Analyzed;
+import ch.hearc.ig.guideresto.services.RestaurantSearchIndex.Document;
+import ch.hearc.ig.guideresto.services.RestaurantSearchIndex.SearchHit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Service applicatif de la recherche plein texte des restaurants, sur le nom, la description et le nom de ville
+ *
+ * Les recherches sont servies par le {@link RestaurantSearchIndex} partagé, sans accès à la base
+ * L'index est reconstruit au démarrage de l'application puis tenu à jour par {@link RestaurantService}
+ * et {@link BulkImportService} après chaque écriture validée
+ */
+public class RestaurantSearchService extends AbstractService {
+
+    private static final Logger logger = LogManager.getLogger(RestaurantSearchService.class);
+
+    /**
+     * Nombre de documents analysés par tâche lors d'une reconstruction
+     */
+    private static final int ANALYSIS_CHUNK = 1_000;
+
+    /**
+     * Nombre maximal d'identifiants par liste IN, Oracle en refusant plus de 1000
+     */
+    private static final int IN_LIST_CHUNK = 500;
+
+    private final RestaurantMapper restaurantMapper = new RestaurantMapper();
+    private final RestaurantSearchIndex index;
+
+    public RestaurantSearchService() {
+        this(RestaurantSearchIndex.shared());
+    }
+
+    public RestaurantSearchService(RestaurantSearchIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Retourne au plus limit restaurants correspondant à la requête, du plus pertinent au moins pertinent
+     */
+    public List<SearchHit> search(String query, int limit) {
+        return index.search(query, limit);
+    }
+
+    /**
+     * Reconstruit l'index à partir de la base
+     *
+     * Les textes sont lus par un curseur sur une projection, sans charger d'entité
+     * Chaque paquet de ANALYSIS_CHUNK documents est analysé en parallèle pendant la lecture des suivants,
+     * le contenu de l'index est ensuite remplacé d'un bloc
+     * Les restaurants écrits pendant la reconstruction sont relus une fois le nouveau contenu installé
+     *
+     * @return nombre de restaurants indexés
+     */
+    public int rebuild() {
+        long start = System.nanoTime();
+        index.beginRebuild();
+        try {
+            List<CompletableFuture<List<Analyzed>>> chunks = doInReadOnlyTx(em -> {
+                List<CompletableFuture<List<Analyzed>>> futures = new ArrayList<>();
+                List<Document> chunk = new ArrayList<>(ANALYSIS_CHUNK);
+                try (Stream<Object[]> rows = restaurantMapper.streamSearchDocuments(em)) {
+                    for (Iterator<Object[]> it = rows.iterator(); it.hasNext(); ) {
+                        chunk.add(toDocument(it.next()));
+                        if (chunk.size() == ANALYSIS_CHUNK) {
+                            futures.add(analyzeAsync(chunk));
+                            chunk = new ArrayList<>(ANALYSIS_CHUNK);
+                        }
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    futures.add(analyzeAsync(chunk));
+                }
+                return futures;
+            });
+
+            List<Analyzed> analyzed = new ArrayList<>();
+            for (CompletableFuture<List<Analyzed>> chunk : chunks) {
+                analyzed.addAll(chunk.join());
+            }
+            Set<Integer> touched = index.completeRebuild(analyzed);
+            refresh(touched);
+
+            logger.info("Index de recherche reconstruit : {} restaurant(s) en {} ms",
+                    analyzed.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return analyzed.size();
+        } catch (RuntimeException ex) {
+            index.abortRebuild();
+            throw ex;
+        }
+    }
+
+    /**
+     * Variante asynchrone de {@link #rebuild}
+     */
+    public CompletableFuture<Integer> rebuildAsync() {
+        return async(this::rebuild);
+    }
+
+    /**
+     * Relit les restaurants fournis en base et met à jour leurs documents, ceux qui n'existent plus sont retirés
+     * La lecture et la mise à jour se font sous les verrous de {@link RestaurantRefreshLocks} des restaurants concernés,
+     * une relecture plus ancienne ne peut donc pas publier son document après une plus récente
+     */
+    public void refresh(Collection<Integer> restaurantIds) {
+        List<Integer> ids = List.copyOf(new HashSet<>(restaurantIds));
+        if (ids.isEmpty()) {
+            return;
+        }
+        int[] stripes = RestaurantRefreshLocks.lock(ids);
+        try {
+            List<Document> documents = doInReadOnlyTx(em -> {
+                List<Document> found = new ArrayList<>(ids.size());
+                for (int from = 0; from < ids.size(); from += IN_LIST_CHUNK) {
+                    List<Integer> chunk = ids.subList(from, Math.min(from + IN_LIST_CHUNK, ids.size()));
+                    for (Object[] row : restaurantMapper.findSearchDocuments(em, chunk)) {
+                        found.add(toDocument(row));
+                    }
+                }
+                return found;
+            });
+
+            Set<Integer> missing = new HashSet<>(ids);
+            documents.forEach(document -> missing.remove(document.restaurantId()));
+            index.putAll(documents.stream().map(RestaurantSearchIndex::analyze).toList());
+            missing.forEach(index::remove);
+        } finally {
+            RestaurantRefreshLocks.unlock(stripes);
+        }
+    }
+
+    /**
+     * Indexe des restaurants dont la ville est chargée, sans accès à la base
+     * Destiné aux écritures qui disposent déjà des entités, comme l'import en masse
+     */
+    public void index(Collection<Restaurant> restaurants) {
+        index.putAll(restaurants.parallelStream()
+                .map(r -> new Document(r.getId(), r.getName(), r.getDescription(), r.getCity().getCityName()))
+                .map(RestaurantSearchIndex::analyze)
+                .toList());
+    }
+
+    /**
+     * Retire un restaurant de l'index
+     */
+    public void remove(int restaurantId) {
+        int[] stripes = RestaurantRefreshLocks.lock(List.of(restaurantId));
+        try {
+            index.remove(restaurantId);
+        } finally {
+            RestaurantRefreshLocks.unlock(stripes);
+        }
+    }
+
+    private static CompletableFuture<List<Analyzed>> analyzeAsync(List<Document> documents) {
+        return CompletableFuture.supplyAsync(() -> documents.stream().map(RestaurantSearchIndex::analyze).toList());
+    }
+
+    private static Document toDocument(Object[] row) {
+        return new Document((Integer) row[0], (String) row[1], (String) row[2], (String) row[3]);
+    }
+}
@@ -1,11 +1,27 @@
 package ch.hearc.ig.guideresto.services;
 
 import ch.hearc.ig.guideresto.business.*;
+import ch.hearc.ig.guideresto.persistence.jpa.Page;
+import ch.hearc.ig.guideresto.persistence.jpa.Propagation;
 import ch.hearc.ig.guideresto.persistence.jpa.RestaurantMapper;
+import ch.hearc.ig.guideresto.persistence.jpa.RestaurantStatsMapper;
+import ch.hearc.ig.guideresto.persistence.jpa.RestaurantStatsMapper.Delta;
+import ch.hearc.ig.guideresto.persistence.jpa.TransactionDefinition;
+import ch.hearc.ig.guideresto.persistence.jpa.TransactionManager;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.NoResultException;
 import jakarta.persistence.OptimisticLockException;
+import org.hibernate.StaleStateException;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Service applicatif dédié aux restaurants
@@ -13,22 +29,106 @@ import java.util.Objects;
  * La classe centralise la gestion transactionnelle des opérations de lecture et d'écriture
  * Les mises à jour et suppressions sont protégées par un verrou optimiste basé sur un champ @Version
  * Une vérification applicative de version est effectuée avant modification afin de détecter les éditions sur un état obsolète
+ * Les modifications de champs qui ne se chevauchent pas sont réappliquées automatiquement, voir {@link RetryPolicy}
+ *
+ * Chaque création, modification ou suppression validée est reportée dans l'index de recherche plein texte,
+ * voir {@link RestaurantSearchService}, et dans l'index d'autocomplétion des noms, voir {@link AutocompleteService}
+ * Le report dans ces index a lieu après le commit de la transaction englobante, s'il y en a une,
+ * une écriture annulée n'y est donc jamais publiée
  */
 public class RestaurantService extends AbstractService {
 
     private final RestaurantMapper restaurantMapper = new RestaurantMapper();
+    private final RestaurantStatsMapper statsMapper = new RestaurantStatsMapper();
+    private final RestaurantSearchService searchService = new RestaurantSearchService();
+    private final AutocompleteService autocompleteService = new AutocompleteService();
+
+    private final RetryPolicy retryPolicy;
+    private final ConflictMetrics conflictMetrics = new ConflictMetrics();
+
+    public RestaurantService() {
+        this(RetryPolicy.DEFAULT);
+    }
+
+    /**
+     * Construit le service avec une politique de nouvelle tentative spécifique pour les conflits de verrou optimiste
+     */
+    public RestaurantService(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
 
     /**
      * Retourne la liste des restaurants selon la requête nommée associée
      */
     public List<Restaurant> findAll() {
-        return doInTx(em -> restaurantMapper.findAll(em));
+        return doInReadOnlyTx(em -> restaurantMapper.findAll(em));
+    }
+
+    /**
+     * Retourne la page de restaurants qui suit la clé fournie, ou la première page si after est null
+     * Les restaurants sont triés par nom, la ville et le type sont chargés
+     */
+    public Page<Restaurant> findPage(List<?> after, int size) {
+        return doInReadOnlyTx(em -> restaurantMapper.findPage(em, after, size));
+    }
+
+    /**
+     * Recherche paginée des restaurants dont le nom contient la sous-chaîne fournie
+     * Le filtre et la limite sont appliqués en base, seule la page demandée est chargée
+     */
+    public Page<Restaurant> searchByName(String namePart, List<?> after, int size) {
+        return doInReadOnlyTx(em -> restaurantMapper.findPageByNameContains(em, namePart, after, size));
+    }
+
+    /**
+     * Recherche paginée des restaurants dont le nom de ville contient la sous-chaîne fournie
+     */
+    public Page<Restaurant> searchByCityName(String cityNamePart, List<?> after, int size) {
+        return doInReadOnlyTx(em -> restaurantMapper.findPageByCityNameContains(em, cityNamePart, after, size));
+    }
+
+    /**
+     * Recherche paginée des restaurants d'un type donné
+     */
+    public Page<Restaurant> searchByType(int typeId, List<?> after, int size) {
+        return doInReadOnlyTx(em -> restaurantMapper.findPageByTypeId(em, typeId, after, size));
+    }
+
+    /**
+     * Variante asynchrone de {@link #findAll()}
+     */
+    public CompletableFuture<List<Restaurant>> findAllAsync() {
+        return async(this::findAll);
+    }
+
+    /**
+     * Applique un traitement à chaque restaurant, en parcourant la table via un curseur et en mémoire constante
+     *
+     * Destiné aux exports, réindexations et rapports : les restaurants sont en lecture seule
+     * et ne doivent pas être conservés par le traitement, voir {@link RestaurantMapper#stream}
+     *
+     * Le parcours vide régulièrement son contexte de persistance : il s'exécute donc toujours dans sa propre
+     * transaction (REQUIRES_NEW) afin de ne pas détacher les entités d'une transaction appelante
+     *
+     * @return nombre de restaurants traités
+     */
+    public long forEachRestaurant(Consumer<Restaurant> action) {
+        return doInTx(TransactionDefinition.READ_ONLY.withPropagation(Propagation.REQUIRES_NEW), em -> {
+            long count = 0;
+            try (Stream<Restaurant> restaurants = restaurantMapper.stream(em)) {
+                for (Iterator<Restaurant> it = restaurants.iterator(); it.hasNext(); count++) {
+                    action.accept(it.next());
+                }
+            }
+            return count;
+        });
     }
 
     /**
      * Crée un restaurant en rattachant des références vers une ville et un type existants
      *
      * Les associations sont posées via getReference afin d'éviter des chargements inutiles
+     * La ligne de compteurs du restaurant est créée à zéro dans la même transaction
      */
     public Restaurant createRestaurantWithRefs(
             String name,
@@ -38,151 +138,391 @@ public class RestaurantService extends AbstractService {
             int cityId,
             int typeId
     ) {
-        return doInTx(em -> {
+        Restaurant created = doInTx(em -> {
             City city = em.getReference(City.class, cityId);
             RestaurantType type = em.getReference(RestaurantType.class, typeId);
 
             Restaurant r = new Restaurant(null, name, description, website, street, city, type);
             em.persist(r);
+            // La ligne de compteurs référence le restaurant, son INSERT doit partir avant
+            em.flush();
+            statsMapper.create(em, Delta.zero(r.getId()));
             return r;
         });
+        afterCommit(() -> searchService.refresh(List.of(created.getId())));
+        afterCommit(() -> autocompleteService.refreshRestaurants(List.of(created.getId())));
+        return created;
+    }
+
+    /**
+     * Variante asynchrone de {@link #createRestaurantWithRefs}
+     */
+    public CompletableFuture<Restaurant> createRestaurantWithRefsAsync(
+            String name,
+            String street,
+            String description,
+            String website,
+            int cityId,
+            int typeId
+    ) {
+        return async(() -> createRestaurantWithRefs(name, street, description, website, cityId, typeId));
     }
 
     /**
      * Met à jour les informations principales d'un restaurant
      *
-     * La version attendue correspond à l'état affiché au moment du début de l'édition
-     * Une divergence de version est interprétée comme un conflit de concurrence
+     * L'instance de base correspond à l'état affiché au moment du début de l'édition, sa version sert de version attendue
+     * Seuls les champs dont la valeur diffère de la base sont considérés comme modifiés par l'utilisateur
+     *
+     * Si le restaurant a été modifié entre-temps, la modification est réappliquée sur l'état courant
+     * tant que l'autre modification n'a touché aucun des mêmes champs, sinon un conflit est remonté
+     * Un échec du verrou optimiste au commit entraîne une nouvelle tentative selon la politique de retry
      */
     public void updateRestaurantDetails(
-            int restaurantId,
-            int expectedVersion,
+            Restaurant base,
             String newName,
             String newDescription,
             String newWebsite,
             Integer typeIdOrNull
     ) {
-        try {
-            doInTxVoid(em -> {
-                Restaurant r = em.find(Restaurant.class, restaurantId);
-                if (r == null) {
-                    return;
-                }
+        executeWithRetry(detailsModification(base, newName, newDescription, newWebsite, typeIdOrNull));
+    }
 
-                if (!Objects.equals(r.getVersion(), expectedVersion)) {
-                    throw new ConcurrentModificationException(
-                            "Conflit : ce restaurant a été modifié par un autre utilisateur. Recharge-le et réessaie."
-                    );
-                }
+    /**
+     * Variante asynchrone de {@link #updateRestaurantDetails}
+     * Chaque tentative est une tâche distincte, le délai avant la suivante s'écoule sans occuper d'accès base
+     */
+    public CompletableFuture<Void> updateRestaurantDetailsAsync(
+            Restaurant base,
+            String newName,
+            String newDescription,
+            String newWebsite,
+            Integer typeIdOrNull
+    ) {
+        return executeWithRetryAsync(detailsModification(base, newName, newDescription, newWebsite, typeIdOrNull));
+    }
+
+    private Modification detailsModification(
+            Restaurant base,
+            String newName,
+            String newDescription,
+            String newWebsite,
+            Integer typeIdOrNull
+    ) {
+        int restaurantId = base.getId();
+        Integer baseTypeId = base.getType() != null ? base.getType().getId() : null;
+        Integer newTypeId = typeIdOrNull != null ? typeIdOrNull : baseTypeId;
+        boolean renamed = !Objects.equals(base.getName(), newName);
+
+        return new Modification(restaurantId, (em, attempt) -> {
+            Restaurant r = em.find(Restaurant.class, restaurantId);
+            if (r == null) {
+                return;
+            }
+
+            if (!Objects.equals(r.getVersion(), base.getVersion())) {
+                Integer currentTypeId = r.getType() != null ? r.getType().getId() : null;
+                boolean overlap = overlaps(base.getName(), r.getName(), newName)
+                        || overlaps(base.getDescription(), r.getDescription(), newDescription)
+                        || overlaps(base.getWebsite(), r.getWebsite(), newWebsite)
+                        || overlaps(baseTypeId, currentTypeId, newTypeId);
+                rejectOrReapply(attempt, overlap,
+                        "Conflit : ce restaurant a été modifié par un autre utilisateur. Recharge-le et réessaie.");
+            }
 
+            if (renamed) {
                 r.setName(newName);
+            }
+            if (!Objects.equals(base.getDescription(), newDescription)) {
                 r.setDescription(newDescription);
+            }
+            if (!Objects.equals(base.getWebsite(), newWebsite)) {
                 r.setWebsite(newWebsite);
-
-                if (typeIdOrNull != null) {
-                    RestaurantType type = em.getReference(RestaurantType.class, typeIdOrNull);
-                    r.setType(type);
-                }
-            });
-        } catch (OptimisticLockException ex) {
-            throw new ConcurrentModificationException(
-                    "Conflit : mise à jour impossible car le restaurant a été modifié simultanément. Recharge-le et réessaie.",
-                    ex
-            );
-        }
+            }
+            if (!Objects.equals(baseTypeId, newTypeId)) {
+                r.setType(em.getReference(RestaurantType.class, newTypeId));
+            }
+        }, "Conflit : mise à jour impossible car le restaurant a été modifié simultanément. Recharge-le et réessaie.", () -> {
+            searchService.refresh(List.of(restaurantId));
+            if (renamed) {
+                autocompleteService.refreshRestaurants(List.of(restaurantId));
+            }
+        });
     }
 
     /**
      * Met à jour l'adresse d'un restaurant
      *
-     * La mise à jour est protégée par vérification de version et par le mécanisme @Version au commit
+     * Même principe que {@link #updateRestaurantDetails} : la modification est réappliquée automatiquement
+     * si l'autre modification concurrente n'a touché ni la rue ni la ville
      */
-    public void updateRestaurantAddress(int restaurantId, int expectedVersion, String newStreet, int newCityId) {
-        try {
-            doInTxVoid(em -> {
-                Restaurant r = em.find(Restaurant.class, restaurantId);
-                if (r == null) {
-                    return;
-                }
+    public void updateRestaurantAddress(Restaurant base, String newStreet, int newCityId) {
+        executeWithRetry(addressModification(base, newStreet, newCityId));
+    }
 
-                if (!Objects.equals(r.getVersion(), expectedVersion)) {
-                    throw new ConcurrentModificationException(
-                            "Conflit : ce restaurant a été modifié par un autre utilisateur. Recharge-le et réessaie."
-                    );
-                }
+    /**
+     * Variante asynchrone de {@link #updateRestaurantAddress}
+     * Chaque tentative est une tâche distincte, le délai avant la suivante s'écoule sans occuper d'accès base
+     */
+    public CompletableFuture<Void> updateRestaurantAddressAsync(Restaurant base, String newStreet, int newCityId) {
+        return executeWithRetryAsync(addressModification(base, newStreet, newCityId));
+    }
 
+    private Modification addressModification(Restaurant base, String newStreet, int newCityId) {
+        int restaurantId = base.getId();
+        String baseStreet = base.getAddress() != null ? base.getAddress().getStreet() : null;
+        Integer baseCityId = base.getCity() != null ? base.getCity().getId() : null;
+        boolean moved = !Objects.equals(baseCityId, newCityId);
+
+        return new Modification(restaurantId, (em, attempt) -> {
+            Restaurant r = em.find(Restaurant.class, restaurantId);
+            if (r == null) {
+                return;
+            }
+
+            if (!Objects.equals(r.getVersion(), base.getVersion())) {
+                boolean overlap = overlaps(baseStreet, r.getAddress().getStreet(), newStreet)
+                        || overlaps(baseCityId, r.getCity().getId(), newCityId);
+                rejectOrReapply(attempt, overlap,
+                        "Conflit : ce restaurant a été modifié par un autre utilisateur. Recharge-le et réessaie.");
+            }
+
+            if (!Objects.equals(baseStreet, newStreet)) {
                 r.getAddress().setStreet(newStreet);
+            }
+            if (moved) {
                 r.setCity(em.getReference(City.class, newCityId));
-            });
-        } catch (OptimisticLockException ex) {
-            throw new ConcurrentModificationException(
-                    "Conflit : mise à jour impossible car le restaurant a été modifié simultanément. Recharge-le et réessaie.",
-                    ex
-            );
-        }
+            }
+        }, "Conflit : mise à jour impossible car le restaurant a été modifié simultanément. Recharge-le et réessaie.", () -> {
+            searchService.refresh(List.of(restaurantId));
+            if (moved) {
+                autocompleteService.refreshRestaurants(List.of(restaurantId));
+            }
+        });
     }
 
     /**
      * Supprime un restaurant en contrôlant la version attendue
      *
      * Le contrôle évite la suppression d'un état obsolète et permet de remonter un message explicite en cas de conflit
+     * Une suppression n'est jamais réappliquée sur un état modifié, seul un échec du verrou optimiste au commit est retenté
      */
     public void deleteRestaurant(int restaurantId, int expectedVersion) {
+        executeWithRetry(deletion(restaurantId, expectedVersion));
+    }
+
+    /**
+     * Variante asynchrone de {@link #deleteRestaurant}
+     * Chaque tentative est une tâche distincte, le délai avant la suivante s'écoule sans occuper d'accès base
+     */
+    public CompletableFuture<Void> deleteRestaurantAsync(int restaurantId, int expectedVersion) {
+        return executeWithRetryAsync(deletion(restaurantId, expectedVersion));
+    }
+
+    private Modification deletion(int restaurantId, int expectedVersion) {
+        return new Modification(restaurantId, (em, attempt) -> {
+            Restaurant r = em.find(Restaurant.class, restaurantId);
+            if (r == null) {
+                return;
+            }
+
+            if (!Objects.equals(r.getVersion(), expectedVersion)) {
+                rejectOrReapply(attempt, true,
+                        "Conflit : ce restaurant a été modifié par un autre utilisateur. Recharge-le avant de le supprimer.");
+            }
+
+            statsMapper.deleteByRestaurantId(em, restaurantId);
+            em.remove(r);
+        }, "Conflit : suppression impossible car le restaurant a été modifié simultanément. Recharge-le et réessaie.", () -> {
+            searchService.remove(restaurantId);
+            autocompleteService.removeRestaurant(restaurantId);
+        });
+    }
+
+    /**
+     * Retourne les statistiques de conflits par restaurant
+     */
+    public ConflictMetrics getConflictMetrics() {
+        return conflictMetrics;
+    }
+
+    /**
+     * Exécute une modification en retentant après un échec du verrou optimiste au commit
+     *
+     * Chaque tentative recharge l'état courant dans une nouvelle transaction
+     * Lorsque l'appel rejoint une transaction englobante en écriture, aucune nouvelle tentative n'est possible
+     * car l'échec n'est connu qu'au commit de cette transaction
+     * Depuis une transaction en lecture seule, chaque tentative ouvre sa propre transaction et peut être retentée
+     * La publication dans les index est différée après le commit de cette transaction englobante
+     */
+    private void executeWithRetry(Modification modification) {
+        conflictMetrics.recordOperation(modification.restaurantId());
+        int maxAttempts = TransactionManager.isWriteTransactionActive() ? 1 : retryPolicy.maxAttempts();
+
+        for (int attempt = 1; !tryAttempt(modification, attempt, maxAttempts); attempt++) {
+            pause(retryPolicy.backoffMillis(attempt));
+        }
+        afterCommit(modification.publish());
+    }
+
+    /**
+     * Variante asynchrone de {@link #executeWithRetry}, hors de toute transaction de l'appelant
+     *
+     * Chaque tentative est soumise séparément à {@link DatabaseBulkhead} et restitue son accès base en se terminant
+     * La suivante n'est soumise qu'à l'échéance du délai de la politique de retry
+     */
+    private CompletableFuture<Void> executeWithRetryAsync(Modification modification) {
+        conflictMetrics.recordOperation(modification.restaurantId());
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        submitAttempt(modification, 1, result);
+        return result;
+    }
+
+    private void submitAttempt(Modification modification, int attempt, CompletableFuture<Void> result) {
+        async(() -> {
+            boolean done = tryAttempt(modification, attempt, retryPolicy.maxAttempts());
+            if (done) {
+                modification.publish().run();
+            }
+            return done;
+        }).whenComplete((done, ex) -> {
+            if (ex != null) {
+                result.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+            } else if (done) {
+                result.complete(null);
+            } else {
+                CompletableFuture.delayedExecutor(retryPolicy.backoffMillis(attempt), TimeUnit.MILLISECONDS)
+                        .execute(() -> submitAttempt(modification, attempt + 1, result));
+            }
+        });
+    }
+
+    /**
+     * Exécute une tentative de la modification dans sa propre transaction, ou dans la transaction englobante
+     * Au plus un conflit est compté par tentative, qu'il soit détecté au chargement, au commit, ou aux deux
+     *
+     * @return true si la modification est validée, false si une nouvelle tentative est à faire
+     * @throws ConcurrentModificationException si le conflit ne peut être résolu ou que les tentatives sont épuisées
+     */
+    private boolean tryAttempt(Modification modification, int attempt, int maxAttempts) {
+        int restaurantId = modification.restaurantId();
+        Attempt state = new Attempt(restaurantId);
         try {
-            doInTxVoid(em -> {
-                Restaurant r = em.find(Restaurant.class, restaurantId);
-                if (r == null) {
-                    return;
-                }
+            doInTxVoid(em -> modification.work().accept(em, state));
+            return true;
+        } catch (RuntimeException ex) {
+            if (!isOptimisticLockFailure(ex)) {
+                throw ex;
+            }
+            recordConflict(state);
+            if (attempt >= maxAttempts) {
+                conflictMetrics.recordFailure(restaurantId);
+                throw new ConcurrentModificationException(modification.exhaustedMessage(), ex);
+            }
+            conflictMetrics.recordRetry(restaurantId);
+            return false;
+        }
+    }
 
-                if (!Objects.equals(r.getVersion(), expectedVersion)) {
-                    throw new ConcurrentModificationException(
-                            "Conflit : ce restaurant a été modifié par un autre utilisateur. Recharge-le avant de le supprimer."
-                    );
-                }
+    /**
+     * Traite une divergence de version détectée au chargement
+     * Remonte un conflit si les modifications se chevauchent, sinon la comptabilise comme réappliquée
+     */
+    private void rejectOrReapply(Attempt attempt, boolean overlap, String message) {
+        recordConflict(attempt);
+        if (overlap) {
+            conflictMetrics.recordFailure(attempt.restaurantId);
+            throw new ConcurrentModificationException(message);
+        }
+        conflictMetrics.recordReapplied(attempt.restaurantId);
+    }
+
+    private void recordConflict(Attempt attempt) {
+        if (!attempt.conflictRecorded) {
+            attempt.conflictRecorded = true;
+            conflictMetrics.recordConflict(attempt.restaurantId);
+        }
+    }
+
+    /**
+     * Indique si un champ que l'utilisateur modifie a aussi été modifié par un autre utilisateur, avec une autre valeur
+     */
+    private static boolean overlaps(Object baseValue, Object currentValue, Object newValue) {
+        boolean changedByUser = !Objects.equals(baseValue, newValue);
+        boolean changedByOther = !Objects.equals(baseValue, currentValue);
+        return changedByUser && changedByOther && !Objects.equals(currentValue, newValue);
+    }
+
+    /**
+     * Recherche un échec de verrou optimiste dans la chaîne des causes
+     * Selon le moment de la détection, Hibernate le remonte directement ou encapsulé
+     */
+    private static boolean isOptimisticLockFailure(Throwable ex) {
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            if (t instanceof OptimisticLockException || t instanceof StaleStateException) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-                em.remove(r);
-            });
-        } catch (OptimisticLockException ex) {
-            throw new ConcurrentModificationException(
-                    "Conflit : suppression impossible car le restaurant a été modifié simultanément. Recharge-le et réessaie.",
-                    ex
-            );
+    private static void pause(long millis) {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrentModificationException("Modification interrompue", ex);
         }
     }
 
     /**
      * Recharge un restaurant avec les associations nécessaires à l'affichage console
      *
-     * Les jointures fetch préchargent la ville, le type et les évaluations
-     * Les sous-graphes Grade et EvaluationCriteria sont initialisés afin d'éviter des LazyInitializationException hors transaction
+     * Le chargement suit {@link RestaurantMapper#DISPLAY} : une seule requête, quel que soit le nombre d'évaluations
+     * Les compteurs sont fournis par {@link EvaluationService#getRatingSummary},
+     * les évaluations complètes page par page par {@link EvaluationService#findReviewPage}
+     *
+     * @throws jakarta.persistence.NoResultException si le restaurant n'existe pas
      */
     public Restaurant loadRestaurantForDisplay(int restaurantId) {
-        return doInTx(em -> {
-            Restaurant r = em.createQuery(
-                            "select distinct r " +
-                                    "from Restaurant r " +
-                                    "join fetch r.city " +
-                                    "join fetch r.restaurantType " +
-                                    "left join fetch r.basicEvaluations " +
-                                    "left join fetch r.completeEvaluations " +
-                                    "where r.id = :id",
-                            Restaurant.class
-                    )
-                    .setParameter("id", restaurantId)
-                    .getSingleResult();
-
-            for (Evaluation e : r.getEvaluations()) {
-                if (e instanceof CompleteEvaluation ce) {
-                    ce.getGrades().size();
-                    for (Grade g : ce.getGrades()) {
-                        if (g.getCriteria() != null) {
-                            g.getCriteria().getName();
-                        }
-                    }
-                }
+        return doInReadOnlyTx(em -> {
+            Restaurant r = restaurantMapper.findById(em, restaurantId, RestaurantMapper.DISPLAY);
+            if (r == null) {
+                throw new NoResultException("Restaurant introuvable id=" + restaurantId);
             }
             return r;
         });
     }
+
+    /**
+     * Variante asynchrone de {@link #loadRestaurantForDisplay}
+     */
+    public CompletableFuture<Restaurant> loadRestaurantForDisplayAsync(int restaurantId) {
+        return async(() -> loadRestaurantForDisplay(restaurantId));
+    }
+
+    /**
+     * Modification d'un restaurant rejouable à chaque tentative
+     * work reçoit l'EntityManager et l'état de la tentative, publish reporte la modification validée dans les index
+     */
+    private record Modification(
+            int restaurantId,
+            BiConsumer<EntityManager, Attempt> work,
+            String exhaustedMessage,
+            Runnable publish
+    ) {}
+
+    /**
+     * État d'une tentative : un conflit déjà compté n'est pas compté de nouveau au commit
+     */
+    private static final class Attempt {
+
+        private final int restaurantId;
+        private boolean conflictRecorded;
+
+        private Attempt(int restaurantId) {
+            this.restaurantId = restaurantId;
+        }
+    }
 }
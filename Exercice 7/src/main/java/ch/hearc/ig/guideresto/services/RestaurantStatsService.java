@@ -0,0 +1,211 @@
+package ch.hearc.ig.guideresto.services;
+
+import ch.hearc.ig.guideresto.business.RestaurantStats;
+import ch.hearc.ig.guideresto.persistence.jpa.RestaurantMapper;
+import ch.hearc.ig.guideresto.persistence.jpa.RestaurantStatsMapper;
+import ch.hearc.ig.guideresto.persistence.jpa.RestaurantStatsMapper.Delta;
+import jakarta.persistence.EntityManager;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Service applicatif dédié aux compteurs d'évaluations de la table RESTAURANT_STATS
+ *
+ * Les compteurs sont incrémentés par {@link EvaluationService} et {@link BulkImportService} dans la transaction
+ * qui écrit les évaluations. Les lire ne coûte donc qu'une ligne par restaurant, quel que soit le nombre d'évaluations
+ *
+ * La réconciliation recalcule les compteurs à partir de LIKES, COMMENTAIRES et NOTES, par paquets de restaurants
+ * parcourus par identifiant croissant, chaque paquet dans sa propre transaction
+ * Les lignes existantes du paquet sont verrouillées avant le recalcul : un ajout d'évaluation concurrent attend
+ * la fin du paquet, ou le paquet attend la fin de l'ajout et le compte alors dans les tables de base
+ */
+public class RestaurantStatsService extends AbstractService {
+
+    private static final Logger logger = LogManager.getLogger(RestaurantStatsService.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    /**
+     * Taille maximale d'un paquet, Oracle refusant plus de 1000 éléments dans une liste IN
+     */
+    private static final int MAX_CHUNK_SIZE = 1000;
+
+    private final RestaurantStatsMapper statsMapper = new RestaurantStatsMapper();
+    private final RestaurantMapper restaurantMapper = new RestaurantMapper();
+    private final int chunkSize;
+
+    public RestaurantStatsService() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    public RestaurantStatsService(int chunkSize) {
+        if (chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Taille de paquet invalide : " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Retourne les compteurs de tous les restaurants, triés par identifiant
+     */
+    public List<RestaurantStats> findAll() {
+        return doInReadOnlyTx(em -> statsMapper.findAll(em));
+    }
+
+    /**
+     * Retourne les compteurs des restaurants fournis, dans l'ordre des identifiants
+     * Un restaurant sans ligne figure dans le résultat avec des compteurs à zéro
+     */
+    public Map<Integer, RestaurantStats> getStats(Collection<Integer> restaurantIds) {
+        List<Integer> ids = List.copyOf(new LinkedHashSet<>(restaurantIds));
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+
+        return doInReadOnlyTx(em -> {
+            Map<Integer, RestaurantStats> found = new HashMap<>();
+            for (int from = 0; from < ids.size(); from += chunkSize) {
+                for (RestaurantStats s : statsMapper.findByRestaurantIds(em, ids.subList(from, Math.min(from + chunkSize, ids.size())))) {
+                    found.put(s.getRestaurantId(), s);
+                }
+            }
+
+            Map<Integer, RestaurantStats> stats = new LinkedHashMap<>();
+            for (Integer id : ids) {
+                stats.put(id, found.getOrDefault(id, new RestaurantStats(id, 0, 0, 0, 0, 0)));
+            }
+            return stats;
+        });
+    }
+
+    /**
+     * Recalcule tous les compteurs à partir des tables de base et corrige les écarts
+     * Chaque écart est journalisé avec les valeurs attendues et trouvées
+     */
+    public ReconciliationReport reconcile() {
+        long start = System.nanoTime();
+        long restaurants = 0;
+        long drifted = 0;
+        long created = 0;
+
+        int after = 0;
+        while (true) {
+            int from = after;
+            ChunkResult result = doInTx(em -> reconcileChunk(em, from));
+            if (result.checked() == 0) {
+                break;
+            }
+            restaurants += result.checked();
+            drifted += result.drifted();
+            created += result.created();
+            after = result.lastId();
+        }
+
+        ReconciliationReport report = new ReconciliationReport(restaurants, drifted, created, (System.nanoTime() - start) / 1_000_000);
+        if (report.isConsistent()) {
+            logger.info("Réconciliation des statistiques terminée, aucun écart. {}", report);
+        } else {
+            logger.warn("Réconciliation des statistiques terminée avec écarts. {}", report);
+        }
+        return report;
+    }
+
+    /**
+     * Variante asynchrone de {@link #reconcile()}
+     */
+    public CompletableFuture<ReconciliationReport> reconcileAsync() {
+        return async(this::reconcile);
+    }
+
+    /**
+     * Réconcilie le paquet des chunkSize restaurants qui suivent l'identifiant after
+     */
+    private ChunkResult reconcileChunk(EntityManager em, int after) {
+        List<Integer> ids = restaurantMapper.findIdsAfter(em, after, chunkSize);
+        if (ids.isEmpty()) {
+            return new ChunkResult(0, 0, 0, after);
+        }
+
+        // Verrou avant le recalcul, afin que les comptages voient tous les incréments déjà appliqués
+        Map<Integer, RestaurantStats> current = new HashMap<>();
+        for (RestaurantStats s : statsMapper.lockByRestaurantIds(em, ids)) {
+            current.put(s.getRestaurantId(), s);
+        }
+        List<Integer> missing = ids.stream().filter(id -> !current.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            // Une ligne absente n'est créée que sous le verrou de son restaurant, comme dans RestaurantStatsMapper#increment
+            // Une ligne créée entre-temps est relue et verrouillée, les autres ne peuvent plus l'être avant la fin du paquet
+            statsMapper.lockRestaurants(em, missing);
+            for (RestaurantStats s : statsMapper.lockByRestaurantIds(em, missing)) {
+                current.put(s.getRestaurantId(), s);
+            }
+        }
+        Map<Integer, Delta> expected = computeFromBaseTables(em, ids);
+
+        int drifted = 0;
+        int created = 0;
+        for (Integer id : ids) {
+            Delta e = expected.getOrDefault(id, Delta.zero(id));
+            RestaurantStats s = current.get(id);
+            if (s == null) {
+                logger.warn("Statistiques absentes pour le restaurant {}, attendu {}", id, e);
+                statsMapper.create(em, e);
+                created++;
+            } else if (s.getLikes() != e.likes() || s.getDislikes() != e.dislikes() || s.getReviews() != e.reviews()
+                    || s.getGrades() != e.grades() || s.getGradeSum() != e.gradeSum()) {
+                logger.warn("Écart sur les statistiques du restaurant {} : trouvé {}, attendu {}", id, s, e);
+                s.setLikes(e.likes());
+                s.setDislikes(e.dislikes());
+                s.setReviews(e.reviews());
+                s.setGrades(e.grades());
+                s.setGradeSum(e.gradeSum());
+                drifted++;
+            }
+        }
+        return new ChunkResult(ids.size(), drifted, created, ids.getLast());
+    }
+
+    /**
+     * Compte les évaluations des restaurants fournis avec trois requêtes groupées sur LIKES, COMMENTAIRES et NOTES
+     */
+    private Map<Integer, Delta> computeFromBaseTables(EntityManager em, List<Integer> ids) {
+        Map<Integer, Delta> expected = new HashMap<>();
+
+        for (Object[] row : em.createNamedQuery("BasicEvaluation.countByRestaurant", Object[].class)
+                .setParameter("liked", true)
+                .setParameter("restaurantIds", ids)
+                .getResultList()) {
+            int id = (Integer) row[0];
+            long likes = ((Number) row[1]).longValue();
+            expected.merge(id, new Delta(id, likes, ((Number) row[2]).longValue() - likes, 0, 0, 0), Delta::plus);
+        }
+
+        for (Object[] row : em.createNamedQuery("CompleteEvaluation.countByRestaurant", Object[].class)
+                .setParameter("restaurantIds", ids)
+                .getResultList()) {
+            int id = (Integer) row[0];
+            expected.merge(id, new Delta(id, 0, 0, ((Number) row[1]).longValue(), 0, 0), Delta::plus);
+        }
+
+        for (Object[] row : em.createNamedQuery("Grade.sumByRestaurant", Object[].class)
+                .setParameter("restaurantIds", ids)
+                .getResultList()) {
+            int id = (Integer) row[0];
+            expected.merge(id, new Delta(id, 0, 0, 0, ((Number) row[1]).longValue(), ((Number) row[2]).longValue()), Delta::plus);
+        }
+        return expected;
+    }
+
+    /**
+     * Résultat de la réconciliation d'un paquet
+     */
+    private record ChunkResult(int checked, int drifted, int created, int lastId) {}
+}
@@ -4,6 +4,7 @@ import ch.hearc.ig.guideresto.business.RestaurantType;
 import ch.hearc.ig.guideresto.persistence.jpa.RestaurantTypeMapper;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service applicatif dédié aux types gastronomiques
@@ -19,6 +20,13 @@ public class RestaurantTypeService extends AbstractService {
      * Retourne la liste complète des types de restaurant, ordonnée selon la requête nommée associée
      */
     public List<RestaurantType> findAll() {
-        return doInTx(em -> typeMapper.findAll(em));
+        return doInReadOnlyTx(em -> typeMapper.findAll(em));
+    }
+
+    /**
+     * Variante asynchrone de {@link #findAll()}
+     */
+    public CompletableFuture<List<RestaurantType>> findAllAsync() {
+        return async(this::findAll);
     }
 }
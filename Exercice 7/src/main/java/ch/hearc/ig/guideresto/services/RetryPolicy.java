@@ -0,0 +1,35 @@
+package ch.hearc.ig.guideresto.services;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Politique de nouvelle tentative pour les conflits de verrou optimiste
+ *
+ * - maxAttempts : nombre total de tentatives, la première comprise
+ * - baseDelayMs : délai de base doublé à chaque nouvelle tentative
+ * - maxDelayMs : plafond du délai avant tirage aléatoire
+ *
+ * Le délai effectif est tiré uniformément entre 0 et le délai plafonné (full jitter)
+ * afin que des éditeurs concurrents ne retentent pas tous au même instant
+ */
+public record RetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs) {
+
+    /**
+     * Politique par défaut : 4 tentatives, délai de base 20 ms, plafond 500 ms
+     */
+    public static final RetryPolicy DEFAULT = new RetryPolicy(4, 20, 500);
+
+    public RetryPolicy {
+        if (maxAttempts < 1 || baseDelayMs < 0 || maxDelayMs < baseDelayMs) {
+            throw new IllegalArgumentException("Politique de nouvelle tentative invalide");
+        }
+    }
+
+    /**
+     * Délai à observer après l'échec de la tentative indiquée (à partir de 1)
+     */
+    public long backoffMillis(int failedAttempt) {
+        long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(failedAttempt - 1, 20));
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+}
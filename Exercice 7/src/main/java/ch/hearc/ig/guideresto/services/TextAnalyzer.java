@@ -0,0 +1,80 @@
+package ch.hearc.ig.guideresto.services;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Découpage et normalisation des textes indexés et recherchés
+ *
+ * - repli : minuscules, accents et signes diacritiques retirés, ligatures développées ("Neuchâtel" devient "neuchatel")
+ * - découpage : suites de lettres et de chiffres, tout autre caractère sépare deux mots
+ * - filtrage : mots vides français courants et lettres isolées ignorés, les nombres sont conservés (NPA, années)
+ *
+ * Le même traitement est appliqué aux documents et aux requêtes, un mot trouvé ne dépend donc ni de la casse ni des accents
+ */
+final class TextAnalyzer {
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "au", "aux", "avec", "ce", "ces", "dans", "de", "des", "du", "en", "est", "et", "il", "la", "le", "les",
+            "leur", "mais", "ou", "par", "pas", "pour", "qui", "que", "sa", "se", "ses", "son", "sur", "un", "une", "vos", "votre"
+    );
+
+    private TextAnalyzer() {
+    }
+
+    /**
+     * Replie le texte : minuscules, sans accents ni ligatures
+     */
+    static String fold(String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        boolean ascii = true;
+        for (int i = 0; i < lower.length() && ascii; i++) {
+            ascii = lower.charAt(i) < 0x80;
+        }
+        if (ascii) {
+            return lower;
+        }
+        String expanded = lower.replace("œ", "oe").replace("æ", "ae").replace("ß", "ss");
+        StringBuilder folded = new StringBuilder(expanded.length());
+        for (char c : Normalizer.normalize(expanded, Normalizer.Form.NFD).toCharArray()) {
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                folded.append(c);
+            }
+        }
+        return folded.toString();
+    }
+
+    /**
+     * Retourne les mots indexables du texte, dans l'ordre, doublons compris
+     */
+    static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        String folded = fold(text);
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean wordChar = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                addToken(tokens, folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static void addToken(List<String> tokens, String token) {
+        if (token.length() == 1 && !Character.isDigit(token.charAt(0))) {
+            return;
+        }
+        if (!STOP_WORDS.contains(token)) {
+            tokens.add(token);
+        }
+    }
+}
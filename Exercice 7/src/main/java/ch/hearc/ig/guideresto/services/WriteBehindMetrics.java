@@ -0,0 +1,113 @@
+package ch.hearc.ig.guideresto.services;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métriques de l'écriture différée des likes
+ *
+ * - accepted / rejected : likes acceptés dans la file, ou refusés car la file est pleine ou fermée
+ * - committed / dropped : likes écrits en base, ou abandonnés car leur restaurant n'existe pas
+ * - batches / failedBatches : transactions groupées validées, ou en échec et reprises au cycle suivant
+ * - lag : délai entre l'acceptation d'un like et la validation de la transaction qui l'écrit
+ *
+ * Les compteurs sont mis à jour sans verrou via des LongAdder, comme pour le cloisonnement asynchrone
+ */
+public class WriteBehindMetrics {
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder committed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAccumulator lagMaxMillis = new LongAccumulator(Long::max, 0L);
+    private volatile long lastLagMillis;
+
+    void recordAccepted() {
+        accepted.increment();
+    }
+
+    void recordRejected() {
+        rejected.increment();
+    }
+
+    void recordDropped() {
+        dropped.increment();
+    }
+
+    void recordFailedBatch() {
+        failedBatches.increment();
+    }
+
+    /**
+     * Enregistre une transaction groupée validée, oldestAcceptedAt étant l'acceptation du plus ancien like du lot
+     */
+    void recordBatch(int size, long oldestAcceptedAt) {
+        long lag = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldestAcceptedAt);
+        committed.add(size);
+        batches.increment();
+        lastLagMillis = lag;
+        lagMaxMillis.accumulate(lag);
+    }
+
+    /**
+     * Construit un instantané immuable des métriques
+     * L'état de la file est fourni par l'appelant car il n'est pas maintenu ici
+     */
+    Snapshot snapshot(int pending, long oldestPendingMillis) {
+        return new Snapshot(
+                pending,
+                oldestPendingMillis,
+                accepted.sum(),
+                rejected.sum(),
+                committed.sum(),
+                dropped.sum(),
+                batches.sum(),
+                failedBatches.sum(),
+                lastLagMillis,
+                lagMaxMillis.get()
+        );
+    }
+
+    /**
+     * Instantané des métriques de l'écriture différée
+     * pending est la profondeur de la file, oldestPendingMillis l'âge du plus ancien like en attente
+     */
+    public record Snapshot(
+            int pending,
+            long oldestPendingMillis,
+            long accepted,
+            long rejected,
+            long committed,
+            long dropped,
+            long batches,
+            long failedBatches,
+            long lastLagMillis,
+            long maxLagMillis
+    ) {
+
+        /**
+         * Nombre moyen de likes par transaction groupée
+         */
+        public double meanBatchSize() {
+            return batches == 0 ? 0.0 : (double) committed / batches;
+        }
+
+        @Override
+        public String toString() {
+            return "pending=" + pending
+                    + ", oldestPendingMs=" + oldestPendingMillis
+                    + ", accepted=" + accepted
+                    + ", rejected=" + rejected
+                    + ", committed=" + committed
+                    + ", dropped=" + dropped
+                    + ", batches=" + batches
+                    + ", failedBatches=" + failedBatches
+                    + ", meanBatch=" + String.format("%.1f", meanBatchSize())
+                    + ", lastLagMs=" + lastLagMillis
+                    + ", maxLagMs=" + maxLagMillis;
+        }
+    }
+}
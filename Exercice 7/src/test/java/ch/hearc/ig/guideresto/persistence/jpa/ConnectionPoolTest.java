@@ -0,0 +1,132 @@
+package ch.hearc.ig.guideresto.persistence.jpa;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Plafonnement du pool de connexions et mesure des attentes, sur une base H2 en mémoire
+ *
+ * Plus de threads que de connexions tiennent chacun une connexion pendant HOLD_MS :
+ * les threads en surnombre attendent qu'une connexion soit restituée
+ */
+class ConnectionPoolTest {
+
+    private static final int MAX_SIZE = 2;
+    private static final int THREADS = 6;
+    private static final long HOLD_MS = 200;
+
+    @BeforeAll
+    static void configure() {
+        JpaUtils.configure(Map.of(
+                "jakarta.persistence.jdbc.url", "jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1",
+                "jakarta.persistence.jdbc.user", "sa",
+                "jakarta.persistence.jdbc.password", "",
+                "jakarta.persistence.jdbc.driver", "org.h2.Driver",
+                "hibernate.hbm2ddl.auto", "create",
+                "guideresto.pool.maxSize", String.valueOf(MAX_SIZE),
+                "guideresto.pool.minSize", "1",
+                "guideresto.pool.validationQuery", ""
+        ));
+        JpaUtils.startAsync().join();
+    }
+
+    @AfterAll
+    static void close() {
+        JpaUtils.close();
+    }
+
+    @Test
+    void activeConnectionsNeverExceedMaxSizeAndWaitsAreRecorded() throws Exception {
+        assertEquals(MAX_SIZE, JpaUtils.getMaxConnections());
+        PoolMetrics.Snapshot before = JpaUtils.getPoolMetrics();
+        assertNotNull(before);
+
+        AtomicInteger holders = new AtomicInteger();
+        AtomicInteger maxHolders = new AtomicInteger();
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        int maxActive = 0;
+        int maxWaiting = 0;
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(threads.submit(() -> {
+                    start.await();
+                    holdConnection(holders, maxHolders);
+                    return null;
+                }));
+            }
+            // Échantillonne l'état du pool tant que des threads tiennent ou attendent une connexion
+            while (futures.stream().anyMatch(future -> !future.isDone())) {
+                PoolMetrics.Snapshot current = JpaUtils.getPoolMetrics();
+                maxActive = Math.max(maxActive, current.active());
+                maxWaiting = Math.max(maxWaiting, current.waitingThreads());
+                Thread.sleep(10);
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        assertTrue(maxHolders.get() <= MAX_SIZE, "connexions tenues simultanément : " + maxHolders.get());
+        assertTrue(maxActive <= MAX_SIZE, "connexions actives : " + maxActive);
+        assertTrue(maxWaiting > 0, "aucun thread en attente d'une connexion");
+
+        PoolMetrics.Snapshot after = JpaUtils.getPoolMetrics();
+        assertEquals(0, after.timeouts() - before.timeouts());
+        assertTrue(after.acquireCount() - before.acquireCount() >= THREADS, "emprunts : " + after);
+        // Les threads en surnombre attendent au moins une restitution, soit de l'ordre de HOLD_MS
+        assertTrue(waitsAtLeast(before, after, HOLD_MS * 1000 / 2) >= THREADS - MAX_SIZE, "histogramme : " + after);
+        assertTrue(after.acquireMaxMicros() >= HOLD_MS * 1000 / 2, "attente maximale : " + after);
+    }
+
+    /**
+     * Tient une connexion du pool pendant HOLD_MS, dans une transaction
+     */
+    private static void holdConnection(AtomicInteger holders, AtomicInteger maxHolders) throws InterruptedException {
+        EntityManager em = JpaUtils.getEntityManager();
+        try {
+            em.getTransaction().begin();
+            // La requête force l'emprunt d'une connexion, conservée jusqu'à la fin de la transaction
+            em.createNativeQuery("select 1").getSingleResult();
+            maxHolders.accumulateAndGet(holders.incrementAndGet(), Math::max);
+            Thread.sleep(HOLD_MS);
+            holders.decrementAndGet();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Nombre d'emprunts enregistrés entre deux instantanés dans les seaux dont la borne inférieure atteint minMicros
+     */
+    private static long waitsAtLeast(PoolMetrics.Snapshot before, PoolMetrics.Snapshot after, long minMicros) {
+        long count = 0;
+        for (int i = 0; i < after.bucketCounts().length; i++) {
+            long lowerBound = i == 0 ? 0 : PoolMetrics.BUCKET_BOUNDS_MICROS[i - 1];
+            if (lowerBound >= minMicros) {
+                count += after.bucketCounts()[i] - before.bucketCounts()[i];
+            }
+        }
+        return count;
+    }
+}
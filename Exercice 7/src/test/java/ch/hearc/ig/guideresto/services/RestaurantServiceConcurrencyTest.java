@@ -0,0 +1,198 @@
+package ch.hearc.ig.guideresto.services;
+
+import ch.hearc.ig.guideresto.business.City;
+import ch.hearc.ig.guideresto.business.Restaurant;
+import ch.hearc.ig.guideresto.business.RestaurantType;
+import ch.hearc.ig.guideresto.persistence.jpa.JpaUtils;
+import ch.hearc.ig.guideresto.persistence.jpa.TransactionDefinition;
+import ch.hearc.ig.guideresto.persistence.jpa.TransactionManager;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Modifications concurrentes d'un même restaurant, sur une base H2 en mémoire
+ *
+ * À chaque tour, tous les éditeurs chargent le restaurant puis le modifient en même temps :
+ * tous sauf un rencontrent un conflit, au chargement ou au commit
+ * Chaque éditeur modifie son propre champ : les modifications ne se chevauchent jamais,
+ * un conflit n'aboutit donc à un échec que lorsqu'il est détecté au commit et que les tentatives sont épuisées
+ */
+class RestaurantServiceConcurrencyTest {
+
+    private static final Logger logger = LogManager.getLogger(RestaurantServiceConcurrencyTest.class);
+
+    private static final int EDITORS = 3;
+    private static final int ROUNDS = 20;
+
+    private static final AtomicInteger zipCodes = new AtomicInteger(2000);
+
+    @BeforeAll
+    static void configure() {
+        JpaUtils.configure(Map.of(
+                "jakarta.persistence.jdbc.url", "jdbc:h2:mem:concurrency;DB_CLOSE_DELAY=-1",
+                "jakarta.persistence.jdbc.user", "sa",
+                "jakarta.persistence.jdbc.password", "",
+                "jakarta.persistence.jdbc.driver", "org.h2.Driver",
+                "hibernate.hbm2ddl.auto", "create",
+                // Une écriture appelée depuis une transaction en lecture seule tient deux connexions
+                "guideresto.pool.maxSize", String.valueOf(2 * EDITORS),
+                "guideresto.pool.minSize", "1",
+                "guideresto.pool.validationQuery", ""
+        ));
+    }
+
+    @AfterAll
+    static void close() {
+        DatabaseBulkhead.closeShared();
+        JpaUtils.close();
+    }
+
+    @Test
+    void retryFailsLessThanNoRetry() throws Exception {
+        compareRetryWithNoRetry(Mode.SYNC);
+    }
+
+    @Test
+    void asyncRetryFailsLessThanNoRetry() throws Exception {
+        compareRetryWithNoRetry(Mode.ASYNC);
+    }
+
+    @Test
+    void editsCalledFromReadOnlyTransactionAreRetried() throws Exception {
+        compareRetryWithNoRetry(Mode.IN_READ_ONLY_TRANSACTION);
+    }
+
+    /**
+     * Exécute la même charge sans nouvelle tentative puis avec, sur deux restaurants distincts
+     * Chaque éditeur modifiant son propre champ, seuls les conflits détectés au commit échouent sans nouvelle tentative
+     * Le débit, en modifications validées par seconde, est journalisé et non vérifié : il dépend de la machine
+     */
+    private static void compareRetryWithNoRetry(Mode mode) throws Exception {
+        RestaurantService noRetryService = new RestaurantService(new RetryPolicy(1, 0, 0));
+        int noRetryId = createRestaurant(noRetryService);
+        Outcome noRetry = edit(noRetryService, noRetryId, mode);
+        assertOutcome(noRetryService, noRetryId, noRetry);
+        assertEquals(0, noRetryService.getConflictMetrics().get(noRetryId).retries());
+
+        RestaurantService retryService = new RestaurantService(new RetryPolicy(8, 1, 20));
+        int retryId = createRestaurant(retryService);
+        Outcome retry = edit(retryService, retryId, mode);
+        assertOutcome(retryService, retryId, retry);
+        // Les conflits détectés au commit, qui font échouer la charge sans nouvelle tentative, sont ici retentés
+        assertTrue(retryService.getConflictMetrics().get(retryId).retries() > 0, "aucune nouvelle tentative");
+
+        logger.info("{} : sans nouvelle tentative {} échec(s), {} modification(s)/s ; avec {} échec(s), {} modification(s)/s",
+                mode, noRetry.failed(), String.format("%.0f", noRetry.throughput()),
+                retry.failed(), String.format("%.0f", retry.throughput()));
+        assertTrue(retry.failed() < noRetry.failed(),
+                "échecs avec nouvelle tentative : " + retry.failed() + ", sans : " + noRetry.failed());
+    }
+
+    /**
+     * Vérifie les compteurs d'un restaurant après les modifications concurrentes
+     */
+    private static void assertOutcome(RestaurantService service, int restaurantId, Outcome outcome) {
+        ConflictMetrics.Snapshot metrics = service.getConflictMetrics().get(restaurantId);
+        int operations = EDITORS * ROUNDS;
+
+        assertEquals(operations, metrics.operations());
+        assertEquals(operations, outcome.succeeded() + outcome.failed());
+        assertEquals(outcome.failed(), metrics.failures());
+        // Tous les éditeurs d'un tour partent de la même version, un seul passe sans conflit
+        assertTrue(metrics.conflicts() >= (long) (EDITORS - 1) * ROUNDS, "conflits : " + metrics);
+        // Au plus un conflit par tentative, une tentative par opération plus une par nouvelle tentative
+        assertTrue(metrics.conflicts() <= metrics.operations() + metrics.retries(), "conflits : " + metrics);
+        assertTrue(metrics.reapplied() <= metrics.conflicts(), "réapplications : " + metrics);
+        // Chaque modification validée change une valeur, et donc la version
+        Restaurant current = service.loadRestaurantForDisplay(restaurantId);
+        assertEquals(outcome.initialVersion() + outcome.succeeded(), current.getVersion());
+    }
+
+    /**
+     * Lance ROUNDS tours de modifications par EDITORS éditeurs, l'éditeur i modifiant le champ i
+     */
+    private static Outcome edit(RestaurantService service, int restaurantId, Mode mode) throws Exception {
+        int initialVersion = service.loadRestaurantForDisplay(restaurantId).getVersion();
+        long start = System.nanoTime();
+        CyclicBarrier loaded = new CyclicBarrier(EDITORS);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        ExecutorService editors = Executors.newFixedThreadPool(EDITORS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int e = 0; e < EDITORS; e++) {
+                int editor = e;
+                futures.add(editors.submit(() -> {
+                    for (int round = 0; round < ROUNDS; round++) {
+                        Restaurant base = service.loadRestaurantForDisplay(restaurantId);
+                        loaded.await();
+                        String value = editor + "-" + round;
+                        String name = editor == 0 ? "Nom " + value : base.getName();
+                        String description = editor == 1 ? "Description " + value : base.getDescription();
+                        String website = editor == 2 ? "https://" + value : base.getWebsite();
+                        try {
+                            switch (mode) {
+                                case SYNC -> service.updateRestaurantDetails(base, name, description, website, null);
+                                case ASYNC -> service.updateRestaurantDetailsAsync(base, name, description, website, null).join();
+                                case IN_READ_ONLY_TRANSACTION -> TransactionManager.execute(TransactionDefinition.READ_ONLY, em -> {
+                                    service.updateRestaurantDetails(base, name, description, website, null);
+                                    return null;
+                                });
+                            }
+                            succeeded.incrementAndGet();
+                        } catch (ConcurrentModificationException ex) {
+                            failed.incrementAndGet();
+                        } catch (CompletionException ex) {
+                            if (!(ex.getCause() instanceof ConcurrentModificationException)) {
+                                throw ex;
+                            }
+                            failed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            editors.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return new Outcome(initialVersion, succeeded.get(), failed.get(), succeeded.get() / seconds);
+    }
+
+    private static int createRestaurant(RestaurantService service) {
+        String zipCode = String.valueOf(zipCodes.getAndIncrement());
+        int[] references = JpaUtils.inTransactionResult(em -> {
+            City city = new City(zipCode, "Ville " + zipCode);
+            RestaurantType type = new RestaurantType("Type " + zipCode, "Description");
+            em.persist(city);
+            em.persist(type);
+            return new int[]{city.getId(), type.getId()};
+        });
+        return service.createRestaurantWithRefs("Restaurant " + zipCode, "Rue du Test 1", "Description", "https://test",
+                references[0], references[1]).getId();
+    }
+
+    private enum Mode { SYNC, ASYNC, IN_READ_ONLY_TRANSACTION }
+
+    private record Outcome(int initialVersion, int succeeded, int failed, double throughput) {}
+}
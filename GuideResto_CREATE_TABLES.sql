@@ -33,6 +33,8 @@ BEGIN EXECUTE IMMEDIATE 'DROP TABLE NOTES CASCADE CONSTRAINTS'; EXCEPTION WHEN O
 /
 BEGIN EXECUTE IMMEDIATE 'DROP TABLE CRITERES_EVALUATION CASCADE CONSTRAINTS'; EXCEPTION WHEN OTHERS THEN IF SQLCODE != -942 THEN RAISE; END IF; END;
 /
+BEGIN EXECUTE IMMEDIATE 'DROP TABLE RESTAURANT_STATS CASCADE CONSTRAINTS'; EXCEPTION WHEN OTHERS THEN IF SQLCODE != -942 THEN RAISE; END IF; END;
+/
 
 -- Sequences (ORA-02289 = sequence does not exist)
 BEGIN EXECUTE IMMEDIATE 'DROP SEQUENCE SEQ_RESTAURANTS'; EXCEPTION WHEN OTHERS THEN IF SQLCODE != -2289 THEN RAISE; END IF; END;
@@ -112,23 +114,58 @@ CREATE TABLE NOTES (
                        PRIMARY KEY (numero)
 );
 
+-- Compteurs d'évaluations par restaurant, incrémentés dans la transaction qui ajoute l'évaluation
+CREATE TABLE RESTAURANT_STATS (
+                                  fk_rest number(10) NOT NULL,
+                                  nb_likes number(10) DEFAULT 0 NOT NULL,
+                                  nb_dislikes number(10) DEFAULT 0 NOT NULL,
+                                  nb_evaluations number(10) DEFAULT 0 NOT NULL,
+                                  nb_notes number(10) DEFAULT 0 NOT NULL,
+                                  somme_notes number(12) DEFAULT 0 NOT NULL,
+                                  PRIMARY KEY (fk_rest)
+);
+
 ALTER TABLE RESTAURANTS ADD CONSTRAINT FK_REST_TYPE FOREIGN KEY (fk_type) REFERENCES TYPES_GASTRONOMIQUES (numero);
 ALTER TABLE RESTAURANTS ADD CONSTRAINT FK_REST_VILL FOREIGN KEY (fk_vill) REFERENCES VILLES (numero);
 ALTER TABLE COMMENTAIRES ADD CONSTRAINT FK_COMM_REST FOREIGN KEY (fk_rest) REFERENCES RESTAURANTS (numero);
 ALTER TABLE NOTES ADD CONSTRAINT FK_NOTE_COMM FOREIGN KEY (fk_comm) REFERENCES COMMENTAIRES (numero);
 ALTER TABLE NOTES ADD CONSTRAINT FK_NOTE_CRIT FOREIGN KEY (fk_crit) REFERENCES CRITERES_EVALUATION (numero);
 ALTER TABLE LIKES ADD CONSTRAINT FK_LIKE_REST FOREIGN KEY (fk_rest) REFERENCES RESTAURANTS (numero);
+ALTER TABLE RESTAURANT_STATS ADD CONSTRAINT FK_STATS_REST FOREIGN KEY (fk_rest) REFERENCES RESTAURANTS (numero);
+
+-- Index des listes paginées par clé (keyset), dans l'ordre exact des tris de l'application
+CREATE INDEX IX_RESTAURANTS_NOM_NUMERO ON RESTAURANTS (nom, numero);
+CREATE INDEX IX_VILLES_CP_NOM_NUMERO ON VILLES (code_postal, nom_ville, numero);
+
+-- Index des recherches par ville et par type, même ordre de tri que la liste complète
+CREATE INDEX IX_RESTAURANTS_VILLE_NOM ON RESTAURANTS (fk_vill, nom, numero);
+CREATE INDEX IX_RESTAURANTS_TYPE_NOM ON RESTAURANTS (fk_type, nom, numero);
+
+-- Index des synthèses d'évaluations, les comptages et moyennes sont lus dans l'index sans accès aux tables
+-- Les évaluations complètes sont comptées dans IX_COMMENTAIRES_REST_DATE, qui commence par fk_rest et contient numero
+CREATE INDEX IX_LIKES_REST_APPR ON LIKES (fk_rest, appreciation);
+CREATE INDEX IX_NOTES_COMM_CRIT ON NOTES (fk_comm, fk_crit, note);
+
+-- Index des évaluations d'un restaurant paginées par clé, des plus récentes aux plus anciennes (parcours descendant)
+-- Il remplace l'index (fk_rest, numero) des synthèses, dont il couvre les comptages et la jointure vers NOTES
+CREATE INDEX IX_COMMENTAIRES_REST_DATE ON COMMENTAIRES (fk_rest, date_eval, numero);
+
+-- Index du fil d'activité, chaque table est lue par un parcours descendant borné
+CREATE INDEX IX_LIKES_DATE ON LIKES (date_eval, numero);
+CREATE INDEX IX_COMMENTAIRES_DATE ON COMMENTAIRES (date_eval, numero);
 
 /* =========================
    3) SEQUENCES
    ========================= */
 
-CREATE SEQUENCE SEQ_RESTAURANTS;
-CREATE SEQUENCE SEQ_TYPES_GASTRONOMIQUES;
-CREATE SEQUENCE SEQ_VILLES;
-CREATE SEQUENCE SEQ_EVAL;
-CREATE SEQUENCE SEQ_NOTES;
-CREATE SEQUENCE SEQ_CRITERES_EVALUATION;
+-- Incrément de 50 aligné sur allocationSize = 50 (optimiseur pooled-lo côté Hibernate)
+-- Une ligne insérée sans identifiant reçoit du trigger la première valeur d'un bloc (1, 51, 101...)
+CREATE SEQUENCE SEQ_RESTAURANTS INCREMENT BY 50;
+CREATE SEQUENCE SEQ_TYPES_GASTRONOMIQUES INCREMENT BY 50;
+CREATE SEQUENCE SEQ_VILLES INCREMENT BY 50;
+CREATE SEQUENCE SEQ_EVAL INCREMENT BY 50;
+CREATE SEQUENCE SEQ_NOTES INCREMENT BY 50;
+CREATE SEQUENCE SEQ_CRITERES_EVALUATION INCREMENT BY 50;
 
 /* =========================
    4) TRIGGERS
@@ -1,3 +1,6 @@
+-- Les cls trangres sont rsolues par leur cl naturelle : les identifiants attribus par les triggers
+-- dpendent de l'incrment des squences et ne sont pas connus  l'avance
+
 INSERT INTO TYPES_GASTRONOMIQUES(libelle, description) VALUES ('Cuisine suisse', 'Cuisine classique et plats typiquement suisses');
 INSERT INTO TYPES_GASTRONOMIQUES(libelle, description) VALUES ('Restaurant gastronomique', 'Restaurant gastronomique de haut standing');
 INSERT INTO TYPES_GASTRONOMIQUES(libelle, description) VALUES ('Pizzeria', 'Pizzas et autres spcialits italiennes');
@@ -11,34 +14,47 @@ COMMIT;
 INSERT INTO VILLES(code_postal, nom_ville) VALUES ('2000', 'Neuchtel');
 COMMIT;
 
-INSERT INTO RESTAURANTS(nom, adresse, description, site_web, fk_type, fk_vill) VALUES ('Fleur-de-Lys', 'Rue du Bassin 10', 'Pizzeria au centre de Neuchtel', 'http://www.pizzeria-neuchatel.ch', 3, 1);
-INSERT INTO RESTAURANTS(nom, adresse, description, site_web, fk_type, fk_vill) VALUES ('La Maison du Prussien', 'Rue des Tunnels 11', 'Restaurant gastronomique renomm de Neuchtel', 'www.hotel-prussien.ch', 2, 1);
+INSERT INTO RESTAURANTS(nom, adresse, description, site_web, fk_type, fk_vill) VALUES ('Fleur-de-Lys', 'Rue du Bassin 10', 'Pizzeria au centre de Neuchtel', 'http://www.pizzeria-neuchatel.ch',
+       (SELECT numero FROM TYPES_GASTRONOMIQUES WHERE libelle = 'Pizzeria'), (SELECT numero FROM VILLES WHERE code_postal = '2000' AND nom_ville = 'Neuchtel'));
+INSERT INTO RESTAURANTS(nom, adresse, description, site_web, fk_type, fk_vill) VALUES ('La Maison du Prussien', 'Rue des Tunnels 11', 'Restaurant gastronomique renomm de Neuchtel', 'www.hotel-prussien.ch',
+       (SELECT numero FROM TYPES_GASTRONOMIQUES WHERE libelle = 'Restaurant gastronomique'), (SELECT numero FROM VILLES WHERE code_postal = '2000' AND nom_ville = 'Neuchtel'));
+COMMIT;
+
+INSERT INTO COMMENTAIRES(date_eval, commentaire, nom_utilisateur, fk_rest) VALUES (sysdate, 'Gnial !', 'Toto', (SELECT numero FROM RESTAURANTS WHERE nom = 'Fleur-de-Lys'));
+INSERT INTO COMMENTAIRES(date_eval, commentaire, nom_utilisateur, fk_rest) VALUES (sysdate, 'Trs bon', 'Titi', (SELECT numero FROM RESTAURANTS WHERE nom = 'Fleur-de-Lys'));
+INSERT INTO COMMENTAIRES(date_eval, commentaire, nom_utilisateur, fk_rest) VALUES (sysdate, 'Un rgal !', 'Dupont', (SELECT numero FROM RESTAURANTS WHERE nom = 'La Maison du Prussien'));
+INSERT INTO COMMENTAIRES(date_eval, commentaire, nom_utilisateur, fk_rest) VALUES (sysdate, 'Rien  dire, le top !', 'Dupasquier', (SELECT numero FROM RESTAURANTS WHERE nom = 'La Maison du Prussien'));
 COMMIT;
 
-INSERT INTO COMMENTAIRES(date_eval, commentaire, nom_utilisateur, fk_rest) VALUES (sysdate, 'Gnial !', 'Toto', 1);
-INSERT INTO COMMENTAIRES(date_eval, commentaire, nom_utilisateur, fk_rest) VALUES (sysdate, 'Trs bon', 'Titi', 1);
-INSERT INTO COMMENTAIRES(date_eval, commentaire, nom_utilisateur, fk_rest) VALUES (sysdate, 'Un rgal !', 'Dupont', 2);
-INSERT INTO COMMENTAIRES(date_eval, commentaire, nom_utilisateur, fk_rest) VALUES (sysdate, 'Rien  dire, le top !', 'Dupasquier', 2);
+INSERT INTO NOTES(note, fk_comm, fk_crit) VALUES (4, (SELECT numero FROM COMMENTAIRES WHERE nom_utilisateur = 'Toto'), (SELECT numero FROM CRITERES_EVALUATION WHERE nom = 'Service'));
+INSERT INTO NOTES(note, fk_comm, fk_crit) VALUES (5, (SELECT numero FROM COMMENTAIRES WHERE nom_utilisateur = 'Toto'), (SELECT numero FROM CRITERES_EVALUATION WHERE nom = 'Cuisine'));
+INSERT INTO NOTES(note, fk_comm, fk_crit) VALUES (4, (SELECT numero FROM COMMENTAIRES WHERE nom_utilisateur = 'Toto'), (SELECT numero FROM CRITERES_EVALUATION WHERE nom = 'Cadre'));
+INSERT INTO NOTES(note, fk_comm, fk_crit) VALUES (4, (SELECT numero FROM COMMENTAIRES WHERE nom_utilisateur = 'Titi'), (SELECT numero FROM CRITERES_EVALUATION WHERE nom = 'Service'));
+INSERT INTO NOTES(note, fk_comm, fk_crit) VALUES (4, (SELECT numero FROM COMMENTAIRES WHERE nom_utilisateur = 'Titi'), (SELECT numero FROM CRITERES_EVALUATION WHERE nom = 'Cuisine'));
+INSERT INTO NOTES(note, fk_comm, fk_crit) VALUES (4, (SELECT numero FROM COMMENTAIRES WHERE nom_utilisateur = 'Titi'), (SELECT numero FROM CRITERES_EVALUATION WHERE nom = 'Cadre'));
+INSERT INTO NOTES(note, fk_comm, fk_crit) VALUES (5, (SELECT numero FROM COMMENTAIRES WHERE nom_utilisateur = 'Dupont'), (SELECT numero FROM CRITERES_EVALUATION WHERE nom = 'Service'));
+INSERT INTO NOTES(note, fk_comm, fk_crit) VALUES (5, (SELECT numero FROM COMMENTAIRES WHERE nom_utilisateur = 'Dupont'), (SELECT numero FROM CRITERES_EVALUATION WHERE nom = 'Cuisine'));
+INSERT INTO NOTES(note, fk_comm, fk_crit) VALUES (5, (SELECT numero FROM COMMENTAIRES WHERE nom_utilisateur = 'Dupont'), (SELECT numero FROM CRITERES_EVALUATION WHERE nom = 'Cadre'));
+INSERT INTO NOTES(note, fk_comm, fk_crit) VALUES (5, (SELECT numero FROM COMMENTAIRES WHERE nom_utilisateur = 'Dupasquier'), (SELECT numero FROM CRITERES_EVALUATION WHERE nom = 'Service'));
+INSERT INTO NOTES(note, fk_comm, fk_crit) VALUES (5, (SELECT numero FROM COMMENTAIRES WHERE nom_utilisateur = 'Dupasquier'), (SELECT numero FROM CRITERES_EVALUATION WHERE nom = 'Cuisine'));
+INSERT INTO NOTES(note, fk_comm, fk_crit) VALUES (5, (SELECT numero FROM COMMENTAIRES WHERE nom_utilisateur = 'Dupasquier'), (SELECT numero FROM CRITERES_EVALUATION WHERE nom = 'Cadre'));
 COMMIT;
 
-INSERT INTO NOTES(note, fk_comm, fk_crit) VALUES (4, 1, 1);
-INSERT INTO NOTES(note, fk_comm, fk_crit) VALUES (5, 1, 2);
-INSERT INTO NOTES(note, fk_comm, fk_crit) VALUES (4, 1, 3);
-INSERT INTO NOTES(note, fk_comm, fk_crit) VALUES (4, 2, 1);
-INSERT INTO NOTES(note, fk_comm, fk_crit) VALUES (4, 2, 2);
-INSERT INTO NOTES(note, fk_comm, fk_crit) VALUES (4, 2, 3);
-INSERT INTO NOTES(note, fk_comm, fk_crit) VALUES (5, 3, 1);
-INSERT INTO NOTES(note, fk_comm, fk_crit) VALUES (5, 3, 2);
-INSERT INTO NOTES(note, fk_comm, fk_crit) VALUES (5, 3, 3);
-INSERT INTO NOTES(note, fk_comm, fk_crit) VALUES (5, 4, 1);
-INSERT INTO NOTES(note, fk_comm, fk_crit) VALUES (5, 4, 2);
-INSERT INTO NOTES(note, fk_comm, fk_crit) VALUES (5, 4, 3);
+INSERT INTO LIKES(appreciation, date_eval, adresse_ip, fk_rest) VALUES ('T', sysdate, '1.2.3.4', (SELECT numero FROM RESTAURANTS WHERE nom = 'Fleur-de-Lys'));
+INSERT INTO LIKES(appreciation, date_eval, adresse_ip, fk_rest) VALUES ('T', sysdate, '1.2.3.5', (SELECT numero FROM RESTAURANTS WHERE nom = 'Fleur-de-Lys'));
+INSERT INTO LIKES(appreciation, date_eval, adresse_ip, fk_rest) VALUES ('F', sysdate, '1.2.3.6', (SELECT numero FROM RESTAURANTS WHERE nom = 'Fleur-de-Lys'));
+INSERT INTO LIKES(appreciation, date_eval, adresse_ip, fk_rest) VALUES ('T', sysdate, '1.2.3.7', (SELECT numero FROM RESTAURANTS WHERE nom = 'La Maison du Prussien'));
+INSERT INTO LIKES(appreciation, date_eval, adresse_ip, fk_rest) VALUES ('T', sysdate, '1.2.3.8', (SELECT numero FROM RESTAURANTS WHERE nom = 'La Maison du Prussien'));
+INSERT INTO LIKES(appreciation, date_eval, adresse_ip, fk_rest) VALUES ('T', sysdate, '1.2.3.9', (SELECT numero FROM RESTAURANTS WHERE nom = 'La Maison du Prussien'));
 COMMIT;
 
-INSERT INTO LIKES(appreciation, date_eval, adresse_ip, fk_rest) VALUES ('T', sysdate, '1.2.3.4', 1);
-INSERT INTO LIKES(appreciation, date_eval, adresse_ip, fk_rest) VALUES ('T', sysdate, '1.2.3.5', 1);
-INSERT INTO LIKES(appreciation, date_eval, adresse_ip, fk_rest) VALUES ('F', sysdate, '1.2.3.6', 1);
-INSERT INTO LIKES(appreciation, date_eval, adresse_ip, fk_rest) VALUES ('T', sysdate, '1.2.3.7', 2);
-INSERT INTO LIKES(appreciation, date_eval, adresse_ip, fk_rest) VALUES ('T', sysdate, '1.2.3.8', 2);
-INSERT INTO LIKES(appreciation, date_eval, adresse_ip, fk_rest) VALUES ('T', sysdate, '1.2.3.9', 2);
+-- Compteurs initiaux de RESTAURANT_STATS, l'application les tient ensuite a jour
+INSERT INTO RESTAURANT_STATS (fk_rest, nb_likes, nb_dislikes, nb_evaluations, nb_notes, somme_notes)
+SELECT r.numero,
+       (SELECT COUNT(*) FROM LIKES l WHERE l.fk_rest = r.numero AND l.appreciation = 'T'),
+       (SELECT COUNT(*) FROM LIKES l WHERE l.fk_rest = r.numero AND l.appreciation <> 'T'),
+       (SELECT COUNT(*) FROM COMMENTAIRES c WHERE c.fk_rest = r.numero),
+       (SELECT COUNT(*) FROM NOTES n JOIN COMMENTAIRES c ON c.numero = n.fk_comm WHERE c.fk_rest = r.numero),
+       (SELECT NVL(SUM(n.note), 0) FROM NOTES n JOIN COMMENTAIRES c ON c.numero = n.fk_comm WHERE c.fk_rest = r.numero)
+FROM RESTAURANTS r;
 COMMIT;
\ No newline at end of file
@@ -0,0 +1,11 @@
+/* =========================
+   MIGRATION : INDEX DU FIL D'ACTIVITÉ
+   =========================
+
+   A exécuter une seule fois sur une base créée avant l'ajout du fil d'activité
+   Le fil lit LIKES et COMMENTAIRES séparément, triés par (date_eval, numero) décroissants et limités à une page,
+   chaque lecture est alors un parcours descendant de l'index qui s'arrête une fois la page remplie
+   ========================= */
+
+CREATE INDEX IX_LIKES_DATE ON LIKES (date_eval, numero);
+CREATE INDEX IX_COMMENTAIRES_DATE ON COMMENTAIRES (date_eval, numero);
@@ -0,0 +1,11 @@
+/* =========================
+   MIGRATION : INDEX DES LISTES PAGINÉES
+   =========================
+
+   A exécuter une seule fois sur une base créée avant l'ajout de la pagination par clé (keyset)
+   Chaque page est lue par un parcours d'index borné qui reprend après la clé du dernier élément affiché,
+   sans tri ni lecture des pages précédentes
+   ========================= */
+
+CREATE INDEX IX_RESTAURANTS_NOM_NUMERO ON RESTAURANTS (nom, numero);
+CREATE INDEX IX_VILLES_CP_NOM_NUMERO ON VILLES (code_postal, nom_ville, numero);
@@ -0,0 +1,12 @@
+/* =========================
+   MIGRATION : INDEX DES SYNTHÈSES D'ÉVALUATIONS
+   =========================
+
+   A exécuter une seule fois sur une base créée avant le calcul des synthèses d'évaluations en base
+   Les likes, dislikes, nombres d'évaluations et moyennes par critère d'un restaurant sont calculés
+   par des requêtes groupées qui ne lisent que ces index
+   ========================= */
+
+CREATE INDEX IX_LIKES_REST_APPR ON LIKES (fk_rest, appreciation);
+CREATE INDEX IX_COMMENTAIRES_REST ON COMMENTAIRES (fk_rest, numero);
+CREATE INDEX IX_NOTES_COMM_CRIT ON NOTES (fk_comm, fk_crit, note);
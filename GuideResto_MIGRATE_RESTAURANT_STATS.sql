@@ -0,0 +1,32 @@
+/* =========================
+   MIGRATION : COMPTEURS D'ÉVALUATIONS PAR RESTAURANT
+   =========================
+
+   A exécuter une seule fois sur une base créée avant l'ajout de la table RESTAURANT_STATS
+   La table est créée puis alimentée à partir de LIKES, COMMENTAIRES et NOTES
+   Ensuite, l'application la tient à jour à chaque évaluation ajoutée
+   La réconciliation de l'application (menu principal) recalcule les compteurs et signale les écarts
+   ========================= */
+
+CREATE TABLE RESTAURANT_STATS (
+                                  fk_rest number(10) NOT NULL,
+                                  nb_likes number(10) DEFAULT 0 NOT NULL,
+                                  nb_dislikes number(10) DEFAULT 0 NOT NULL,
+                                  nb_evaluations number(10) DEFAULT 0 NOT NULL,
+                                  nb_notes number(10) DEFAULT 0 NOT NULL,
+                                  somme_notes number(12) DEFAULT 0 NOT NULL,
+                                  PRIMARY KEY (fk_rest)
+);
+
+ALTER TABLE RESTAURANT_STATS ADD CONSTRAINT FK_STATS_REST FOREIGN KEY (fk_rest) REFERENCES RESTAURANTS (numero);
+
+INSERT INTO RESTAURANT_STATS (fk_rest, nb_likes, nb_dislikes, nb_evaluations, nb_notes, somme_notes)
+SELECT r.numero,
+       (SELECT COUNT(*) FROM LIKES l WHERE l.fk_rest = r.numero AND l.appreciation = 'T'),
+       (SELECT COUNT(*) FROM LIKES l WHERE l.fk_rest = r.numero AND l.appreciation <> 'T'),
+       (SELECT COUNT(*) FROM COMMENTAIRES c WHERE c.fk_rest = r.numero),
+       (SELECT COUNT(*) FROM NOTES n JOIN COMMENTAIRES c ON c.numero = n.fk_comm WHERE c.fk_rest = r.numero),
+       (SELECT NVL(SUM(n.note), 0) FROM NOTES n JOIN COMMENTAIRES c ON c.numero = n.fk_comm WHERE c.fk_rest = r.numero)
+FROM RESTAURANTS r;
+
+COMMIT;
@@ -0,0 +1,17 @@
+/* =========================
+   MIGRATION : INDEX DE PAGINATION DES ÉVALUATIONS
+   =========================
+
+   A exécuter une seule fois sur une base créée avant la pagination des évaluations sur la fiche d'un restaurant
+   Les évaluations d'un restaurant sont lues par pages triées par (date_eval, numero) décroissants,
+   chaque page est alors un parcours descendant borné de cet index
+
+   Le nouvel index commence par fk_rest et contient numero : il couvre aussi les comptages des synthèses
+   d'évaluations et leur jointure vers NOTES, l'index IX_COMMENTAIRES_REST (fk_rest, numero) devient redondant
+   ========================= */
+
+CREATE INDEX IX_COMMENTAIRES_REST_DATE ON COMMENTAIRES (fk_rest, date_eval, numero);
+
+-- ORA-01418 = index does not exist, sur une base qui n'a pas reçu la migration des synthèses
+BEGIN EXECUTE IMMEDIATE 'DROP INDEX IX_COMMENTAIRES_REST'; EXCEPTION WHEN OTHERS THEN IF SQLCODE != -1418 THEN RAISE; END IF; END;
+/
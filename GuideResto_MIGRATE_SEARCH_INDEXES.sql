@@ -0,0 +1,12 @@
+/* =========================
+   MIGRATION : INDEX DES RECHERCHES
+   =========================
+
+   A exécuter une seule fois sur une base créée avant le passage des recherches en base
+   Les recherches par ville et par type lisent les restaurants d'une ville ou d'un type déjà triés par nom,
+   chaque page de résultats est donc lue par un parcours d'index borné
+   La recherche par nom contient un joker en tête de motif et s'appuie sur IX_RESTAURANTS_NOM_NUMERO
+   ========================= */
+
+CREATE INDEX IX_RESTAURANTS_VILLE_NOM ON RESTAURANTS (fk_vill, nom, numero);
+CREATE INDEX IX_RESTAURANTS_TYPE_NOM ON RESTAURANTS (fk_type, nom, numero);
@@ -0,0 +1,25 @@
+/* =========================
+   MIGRATION : ALLOCATION DES IDENTIFIANTS PAR BLOCS
+   =========================
+
+   A exécuter une seule fois sur une base créée avec des séquences incrémentées de 1
+   Les entités déclarent allocationSize = 50 et Hibernate utilise l'optimiseur pooled-lo :
+   chaque NEXTVAL réserve le bloc [valeur, valeur + 49]
+
+   Après modification de l'incrément, le prochain NEXTVAL vaut la valeur courante + 50,
+   le bloc obtenu est donc entièrement au-delà des identifiants déjà attribués
+   Les triggers TR_BIF_* n'appellent NEXTVAL que pour les lignes insérées sans identifiant :
+   la ligne reçoit la première valeur du bloc obtenu, les 49 suivantes restent inutilisées,
+   sans risque de collision avec les blocs réservés par l'application
+   Les identifiants attribués par les triggers ne se suivent donc plus (1, 51, 101...) :
+   les scripts de données résolvent leurs clés étrangères par clé naturelle
+
+   L'application doit être arrêtée pendant la migration, puis redémarrée avec allocationSize = 50
+   ========================= */
+
+ALTER SEQUENCE SEQ_RESTAURANTS INCREMENT BY 50;
+ALTER SEQUENCE SEQ_TYPES_GASTRONOMIQUES INCREMENT BY 50;
+ALTER SEQUENCE SEQ_VILLES INCREMENT BY 50;
+ALTER SEQUENCE SEQ_EVAL INCREMENT BY 50;
+ALTER SEQUENCE SEQ_NOTES INCREMENT BY 50;
+ALTER SEQUENCE SEQ_CRITERES_EVALUATION INCREMENT BY 50;